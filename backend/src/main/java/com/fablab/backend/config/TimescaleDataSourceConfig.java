@@ -0,0 +1,49 @@
+package com.fablab.backend.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Second DataSource for printer telemetry, bound to {@code timescale.datasource.*}.
+ * <p>
+ * Its beans are not default candidates: the auto-configured DataSource, JPA
+ * and JdbcTemplate keep using the main database, and telemetry code asks for
+ * the TimescaleDB beans explicitly with {@code @Qualifier("timescale")}.
+ */
+@Configuration
+public class TimescaleDataSourceConfig {
+
+    public static final String QUALIFIER = "timescale";
+
+    @Bean(defaultCandidate = false)
+    @Qualifier(QUALIFIER)
+    @ConfigurationProperties("timescale.datasource")
+    DataSourceProperties timescaleDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean(defaultCandidate = false)
+    @Qualifier(QUALIFIER)
+    @ConfigurationProperties("timescale.datasource.hikari")
+    HikariDataSource timescaleDataSource(@Qualifier(QUALIFIER) DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("timescale");
+        return dataSource;
+    }
+
+    @Bean(defaultCandidate = false)
+    @Qualifier(QUALIFIER)
+    JdbcTemplate timescaleJdbcTemplate(@Qualifier(QUALIFIER) DataSource dataSource) {
+        return new JdbcTemplate(dataSource);
+    }
+}
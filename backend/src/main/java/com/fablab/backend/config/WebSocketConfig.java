@@ -0,0 +1,41 @@
+package com.fablab.backend.config;
+
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+import com.fablab.backend.printer.motion.MotionWebSocketHandler;
+
+/**
+ * Registers the WebSocket endpoints. The upgrade request goes through the
+ * security chain like any other {@code /api/printers/**} call; since a browser
+ * cannot set headers on it, the JWT travels as the {@code access_token} query
+ * parameter (see {@link com.fablab.backend.security.JwtAuthenticationFilter}).
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final MotionWebSocketHandler motionHandler;
+
+    @Value("${CORS_ORIGINS:http://localhost:3000}")
+    private String corsOrigins;
+
+    public WebSocketConfig(MotionWebSocketHandler motionHandler) {
+        this.motionHandler = motionHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        String[] origins = Arrays.stream(corsOrigins.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toArray(String[]::new);
+        registry.addHandler(motionHandler, "/api/printers/*/motion")
+                .setAllowedOrigins(origins);
+    }
+}
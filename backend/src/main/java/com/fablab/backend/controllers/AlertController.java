@@ -5,10 +5,13 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -19,12 +22,16 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fablab.backend.dto.AlertBacktestDTO;
+import com.fablab.backend.dto.AlertBacktestRequest;
 import com.fablab.backend.dto.AlertDTO;
 import com.fablab.backend.models.Alert;
 import com.fablab.backend.models.User;
 import com.fablab.backend.models.printer.Printer;
+import com.fablab.backend.printer.alert.AlertBacktester;
 import com.fablab.backend.repositories.AlertRepository;
 import com.fablab.backend.repositories.UserRepository;
 import com.fablab.backend.repositories.printer.PrinterRepository;
@@ -37,11 +44,14 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class AlertController {
 
+    private static final Logger log = LoggerFactory.getLogger(AlertController.class);
+
     private final AlertRepository alertRepository;
     private final UserRepository userRepo;
     private final JavaMailSender mailSender;
     private final AlertModuleService alertService;
     private final PrinterRepository printerRepository;
+    private final AlertBacktester backtester;
 
     /**
      * Checks if the current authenticated user has admin or superadmin role.
@@ -203,10 +213,8 @@ public class AlertController {
         else if(status == Alert.Status.IN_PROGRESS)
             newStatus = Alert.Status.RESOLVED;
         alert.setStatus(newStatus);
-        System.err.println("STATUS = "+status+", NEW STATUS = "+newStatus);
-
         Alert saved = alertRepository.save(alert);
-        System.err.println("NEW ALERT "+saved);
+        log.debug("Alert {} moved from {} to {}", id, status, newStatus);
         return ResponseEntity.ok(AlertDTO.from(saved));
     }
 
@@ -249,18 +257,41 @@ public class AlertController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Replays stored printer history through a rule set (the current rules by
+     * default) and reports the alerts it would have raised. Writes no alert.
+     * Only admin and superadmin users can run a backtest.
+     *
+     * @param req range, printers and rules to replay
+     * @return hits, latencies and sample alerts per rule, 403 Forbidden if user
+     *         is not admin, or 429 Too Many Requests if too many backtests are running
+     */
+    @PostMapping("/backtest")
+    public ResponseEntity<AlertBacktestDTO> backtest(@Validated @RequestBody AlertBacktestRequest req) {
+        if (!isCurrentUserAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(backtester.run(req));
+        } catch (AlertBacktester.BusyException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+    }
+
     @GetMapping("/bed_level")
-    public void checkBedLeveling(){
+    public void checkBedLeveling(@RequestParam UUID printerId){
+        AlertModuleService.PrinterError result = alertService.checkBedLeveling(printerId, null);
         Alert alert = Alert.builder()
                     .userId(null)
                     .title("BED_LEVEL")
-                    .details(alertService.checkBedLeveling(null).toString())
+                    .printerId(printerId)
+                    .details(result.toString())
                     .category("LEVELING")
                     .severity(Alert.Severity.INFO)
                     .priority(Alert.Priority.MEDIUM)
                     .status(Alert.Status.UNRESOLVED)
                     .build();
             alertRepository.save(alert);
-        System.out.println(alertService.checkBedLeveling(null));
+        log.info("Bed leveling check of printer {}: {}", printerId, result);
     }
 }
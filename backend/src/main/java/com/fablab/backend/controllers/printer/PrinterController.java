@@ -2,17 +2,30 @@ package com.fablab.backend.controllers.printer;
 
 import com.fablab.backend.dto.PrinterCommandRequest;
 import com.fablab.backend.dto.CreatePrinterRequest;
+import com.fablab.backend.dto.HeaterThermalDTO;
+import com.fablab.backend.dto.HistoryGranularity;
+import com.fablab.backend.dto.PrinterConnectionDTO;
+import com.fablab.backend.dto.TelemetryTierDTO;
 import com.fablab.backend.models.User;
+import com.fablab.backend.models.printer.HeaterModelSample;
 import com.fablab.backend.models.printer.Printer;
 import com.fablab.backend.models.printer.PrinterSnapshot;
+import com.fablab.backend.printer.history.HistoryStream;
+import com.fablab.backend.printer.polling.PrinterPollingService;
+import com.fablab.backend.printer.retention.TelemetryRetentionService;
+import com.fablab.backend.printer.stream.TelemetryStreamHub;
+import com.fablab.backend.printer.thermal.HeaterThermalService;
 import com.fablab.backend.services.printer.PrinterService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.Instant;
 import java.util.List;
@@ -24,6 +37,10 @@ import java.util.UUID;
 public class PrinterController {
 
     private final PrinterService printerService;
+    private final PrinterPollingService pollingService;
+    private final TelemetryRetentionService retentionService;
+    private final TelemetryStreamHub streamHub;
+    private final HeaterThermalService thermalService;
 
     @GetMapping
     public ResponseEntity<List<Printer>> listPrinters() {
@@ -52,13 +69,108 @@ public class PrinterController {
         return ResponseEntity.ok(printerService.getLatestStoredSnapshot(id));
     }
 
+    /**
+     * Printer history, newest first. {@code granularity} is raw, 10s, 1m, 15m, 1h
+     * or auto (default, chosen from the window). Raw returns snapshots, the other
+     * granularities return one aggregated point per time bucket. With {@code maxPoints},
+     * raw history is downsampled (LTTB) to one series per metric instead.
+     */
     @GetMapping("/{id}/history")
-    public ResponseEntity<List<PrinterSnapshot>> getHistory(
+    public ResponseEntity<List<?>> getHistory(
+            @PathVariable UUID id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String granularity,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) List<String> metrics
+    ) {
+        if (maxPoints != null) {
+            return ResponseEntity.ok(printerService.getDownsampledHistory(
+                    id, from, to, HistoryGranularity.fromParam(granularity), maxPoints, metrics));
+        }
+        return ResponseEntity.ok(printerService.getHistory(id, from, to, HistoryGranularity.fromParam(granularity)));
+    }
+
+    /**
+     * Raw history streamed as NDJSON, oldest first. {@code fields} selects the
+     * columns (e.g. {@code ts,nozzleTemp,bedTemp}); pass the {@code ts} and
+     * {@code id} of the last line as {@code after=<ts>_<id>} to resume.
+     */
+    @GetMapping(value = "/{id}/history/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamHistory(
             @PathVariable UUID id,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit
+    ) {
+        HistoryStream stream = printerService.openHistoryStream(id, from, to, fields, after, limit);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(stream::writeTo);
+    }
+
+    /**
+     * Live telemetry of every printer as Server-Sent Events ({@code event: state}).
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamFleet(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return streamHub.subscribe(null, lastEventId);
+    }
+
+    /**
+     * Live telemetry of one printer as Server-Sent Events ({@code event: state}).
+     */
+    @GetMapping(value = "/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPrinter(@PathVariable UUID id,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        printerService.getPrinter(id);
+        return streamHub.subscribe(id, lastEventId);
+    }
+
+    /**
+     * Thermal model of each heater: time to target, power margin and drift
+     * of the fitted constants against the baseline weeks.
+     */
+    @GetMapping("/{id}/thermal")
+    public ResponseEntity<List<HeaterThermalDTO>> getThermalModels(@PathVariable UUID id) {
+        return ResponseEntity.ok(thermalService.getModels(id));
+    }
+
+    /**
+     * Recorded constants of one heater (NOZZLE or BED), oldest first. Defaults
+     * to the baseline weeks up to now.
+     */
+    @GetMapping("/{id}/thermal/history")
+    public ResponseEntity<List<HeaterModelSample>> getThermalHistory(
+            @PathVariable UUID id,
+            @RequestParam HeaterModelSample.Heater heater,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to
     ) {
-        return ResponseEntity.ok(printerService.getHistory(id, from, to));
+        return ResponseEntity.ok(thermalService.getHistory(id, heater, from, to));
+    }
+
+    /**
+     * Telemetry storage per retention tier (raw, compressed, rollups).
+     */
+    @GetMapping("/storage")
+    public ResponseEntity<List<TelemetryTierDTO>> getStorage() {
+        return ResponseEntity.ok(retentionService.getTierStats());
+    }
+
+    /**
+     * Connection health of every polled printer (circuit breaker state).
+     */
+    @GetMapping("/connections")
+    public ResponseEntity<List<PrinterConnectionDTO>> getConnections() {
+        return ResponseEntity.ok(pollingService.getConnections());
+    }
+
+    @GetMapping("/{id}/connection")
+    public ResponseEntity<PrinterConnectionDTO> getConnection(@PathVariable UUID id) {
+        return ResponseEntity.of(pollingService.getConnection(id));
     }
 
     @PostMapping("/{id}/command")
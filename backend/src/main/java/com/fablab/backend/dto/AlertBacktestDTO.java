@@ -0,0 +1,44 @@
+package com.fablab.backend.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import com.fablab.backend.models.Alert;
+
+/**
+ * Alerts a rule set would have raised over stored printer history.
+ *
+ * @param from start of the replayed range
+ * @param to end of the replayed range
+ * @param printers number of printers replayed
+ * @param snapshots number of snapshots replayed
+ * @param elapsedMs time taken by the replay
+ * @param rules outcome of each rule, in rule set order
+ */
+public record AlertBacktestDTO(Instant from, Instant to, int printers, long snapshots, long elapsedMs,
+                               List<RuleResult> rules) {
+
+    /**
+     * @param id rule id
+     * @param code alert code
+     * @param category alert category
+     * @param severity alert severity
+     * @param hits alerts the rule would have raised
+     * @param printers number of printers with at least one hit
+     * @param firstFire time of the earliest hit, null without hits
+     * @param meanLatencyMs mean delay between the condition turning true and the alert, null without hits
+     * @param maxLatencyMs longest such delay, null without hits
+     * @param samples earliest alerts, with their message
+     */
+    public record RuleResult(String id, String code, String category, Alert.Severity severity, long hits,
+                             int printers, Instant firstFire, Long meanLatencyMs, Long maxLatencyMs,
+                             List<Sample> samples) {
+    }
+
+    /**
+     * One alert the rule would have raised.
+     */
+    public record Sample(UUID printerId, Instant ts, String message) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.fablab.backend.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Replay of stored printer history through a set of alert rules.
+ */
+@Getter
+@Setter
+public class AlertBacktestRequest {
+
+    // Defaults to the last 30 days
+    private Instant from;
+
+    // Defaults to now
+    private Instant to;
+
+    // Printers to replay, all of them when empty
+    private List<UUID> printerIds;
+
+    // Rules in the alert-rules.yml format, the current rules when blank
+    private String rules;
+
+    // Example alerts returned per rule
+    @Min(0)
+    @Max(100)
+    private Integer samples;
+}
@@ -0,0 +1,37 @@
+package com.fablab.backend.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import com.fablab.backend.models.printer.HeaterModelSample;
+
+/**
+ * Thermal model of one heater fitted from its live telemetry.
+ * Model-derived values are null until the fit has converged.
+ *
+ * @param printerId identifier of the printer
+ * @param heater heater the model describes
+ * @param updatedAt time of the last fitted sample
+ * @param samples samples fitted so far
+ * @param converged whether the fit is trusted
+ * @param temperature last measured temperature (°C)
+ * @param target current target (°C), 0 when off
+ * @param power last duty cycle, 0 to 1
+ * @param gain heating rate at full power (°C/s)
+ * @param loss cooling rate per degree above ambient (1/s)
+ * @param ambient temperature reached with the heater off (°C)
+ * @param maxTemperature temperature reached at full power (°C)
+ * @param residual RMS prediction error of dT/dt (°C/s), high for a noisy or loose thermistor
+ * @param timeToTargetSeconds predicted time to reach the target, null when off or unreachable
+ * @param targetReachable false when the target is above the maximum temperature
+ * @param holdPower duty cycle needed to hold the target
+ * @param powerMargin share of the heater power left when holding the target
+ * @param gainDrift relative change of the gain against the baseline weeks, null without baseline
+ * @param lossDrift relative change of the loss against the baseline weeks, null without baseline
+ */
+public record HeaterThermalDTO(UUID printerId, HeaterModelSample.Heater heater, Instant updatedAt, long samples,
+                               boolean converged, double temperature, double target, double power,
+                               Double gain, Double loss, Double ambient, Double maxTemperature, Double residual,
+                               Double timeToTargetSeconds, Boolean targetReachable, Double holdPower,
+                               Double powerMargin, Double gainDrift, Double lossDrift) {
+}
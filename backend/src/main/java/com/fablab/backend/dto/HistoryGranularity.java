@@ -0,0 +1,81 @@
+package com.fablab.backend.dto;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Resolution of a printer history query.
+ * Each rollup is read from a TimescaleDB continuous aggregate of {@code printer_snapshots}.
+ */
+public enum HistoryGranularity {
+
+    /** Every stored snapshot (about one per second while printing) */
+    RAW("raw", null, Duration.ofSeconds(1)),
+
+    TEN_SECONDS("10s", "printer_snapshots_10s", Duration.ofSeconds(10)),
+
+    ONE_MINUTE("1m", "printer_snapshots_1m", Duration.ofMinutes(1)),
+
+    FIFTEEN_MINUTES("15m", "printer_snapshots_15m", Duration.ofMinutes(15)),
+
+    ONE_HOUR("1h", "printer_snapshots_1h", Duration.ofHours(1));
+
+    /** Upper bound of points returned when the granularity is chosen automatically */
+    public static final int MAX_AUTO_POINTS = 1000;
+
+    private final String param;
+    private final String view;
+    private final Duration bucket;
+
+    HistoryGranularity(String param, String view, Duration bucket) {
+        this.param = param;
+        this.view = view;
+        this.bucket = bucket;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    /**
+     * Continuous aggregate holding this rollup, null for RAW.
+     */
+    public String getView() {
+        return view;
+    }
+
+    public Duration getBucket() {
+        return bucket;
+    }
+
+    /**
+     * Parse the {@code granularity} request parameter ("raw", "10s", "1m", "15m", "1h").
+     *
+     * @return the granularity, or null for "auto" / no value
+     * @throws IllegalArgumentException for an unknown value
+     */
+    public static HistoryGranularity fromParam(String value) {
+        if (value == null || value.isBlank() || value.equalsIgnoreCase("auto")) {
+            return null;
+        }
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        for (HistoryGranularity granularity : values()) {
+            if (granularity.param.equals(normalized)) {
+                return granularity;
+            }
+        }
+        throw new IllegalArgumentException("Unknown granularity: " + value + " (expected raw, 10s, 1m, 15m, 1h or auto)");
+    }
+
+    /**
+     * Finest granularity that keeps a window under {@link #MAX_AUTO_POINTS} points.
+     */
+    public static HistoryGranularity forWindow(Duration window) {
+        for (HistoryGranularity granularity : values()) {
+            if (window.dividedBy(granularity.bucket) <= MAX_AUTO_POINTS) {
+                return granularity;
+            }
+        }
+        return ONE_HOUR;
+    }
+}
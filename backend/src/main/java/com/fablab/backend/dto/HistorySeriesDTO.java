@@ -0,0 +1,11 @@
+package com.fablab.backend.dto;
+
+/**
+ * Downsampled series of one metric, as parallel arrays ready for a chart.
+ *
+ * @param metric snapshot column name (e.g. nozzle_temp)
+ * @param timestamps epoch milliseconds of the kept points
+ * @param values values of the kept points
+ */
+public record HistorySeriesDTO(String metric, long[] timestamps, double[] values) {
+}
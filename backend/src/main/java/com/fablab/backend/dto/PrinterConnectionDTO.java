@@ -0,0 +1,20 @@
+package com.fablab.backend.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Connection health of a printer, as seen by the polling circuit breaker.
+ *
+ * @param printerId identifier of the printer
+ * @param state breaker state (CLOSED, OPEN, HALF_OPEN)
+ * @param consecutiveFailures failed polls or probes in a row
+ * @param lastSuccess last successful poll or probe (nullable)
+ * @param openedAt when the breaker opened (nullable)
+ * @param nextProbeAt next probe while the breaker is open (nullable)
+ * @param backoffMs current wait between two probes (0 when closed)
+ * @param lastError message of the last failure (nullable)
+ */
+public record PrinterConnectionDTO(UUID printerId, String state, int consecutiveFailures, Instant lastSuccess,
+                                   Instant openedAt, Instant nextProbeAt, long backoffMs, String lastError) {
+}
@@ -0,0 +1,31 @@
+package com.fablab.backend.dto;
+
+import java.time.Instant;
+
+/**
+ * One time bucket of a printer history rollup.
+ *
+ * @param bucket start of the time bucket
+ * @param samples number of snapshots aggregated in the bucket
+ * @param bedTemp bed temperature statistics
+ * @param nozzleTemp nozzle temperature statistics
+ * @param chamberTemp chamber temperature statistics
+ * @param partFanSpeed part cooling fan speed statistics (0-1)
+ * @param hotendFanSpeed hotend fan speed statistics (0-1)
+ * @param liveVelocity toolhead velocity statistics
+ * @param targetBed last bed target in the bucket
+ * @param targetNozzle last nozzle target in the bucket
+ * @param state last printer state in the bucket
+ * @param progress last print progress in the bucket
+ */
+public record PrinterHistoryPointDTO(Instant bucket, long samples,
+                                     Stats bedTemp, Stats nozzleTemp, Stats chamberTemp,
+                                     Stats partFanSpeed, Stats hotendFanSpeed, Stats liveVelocity,
+                                     Double targetBed, Double targetNozzle, String state, Double progress) {
+
+    /**
+     * Average, minimum and maximum of a metric over a bucket (null when not reported).
+     */
+    public record Stats(Double avg, Double min, Double max) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.fablab.backend.dto;
+
+import java.time.Instant;
+
+/**
+ * Storage statistics of one telemetry retention tier.
+ *
+ * @param tier tier name ("raw", "compressed", "10s", "1m", "15m" or "1h")
+ * @param relation hypertable or continuous aggregate holding the tier
+ * @param retentionDays days before data leaves the tier, null when kept forever
+ * @param chunks number of chunks in the tier
+ * @param bytes size on disk, indexes included
+ * @param uncompressedBytes size before compression (compressed tier only)
+ * @param oldest start of the oldest chunk, null when the tier is empty
+ */
+public record TelemetryTierDTO(String tier, String relation, Integer retentionDays,
+                               long chunks, long bytes, Long uncompressedBytes, Instant oldest) {
+}
@@ -0,0 +1,64 @@
+package com.fablab.backend.models.printer;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Fitted thermal constants of a heater at a point in time, kept to follow
+ * their drift over weeks.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "heater_model_samples",
+        indexes = @Index(name = "idx_heater_model_samples_printer", columnList = "printer_id, heater, recorded_at"))
+public class HeaterModelSample {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "printer_id", nullable = false)
+    private UUID printerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Heater heater;
+
+    @Column(name = "recorded_at", nullable = false)
+    private Instant recordedAt;
+
+    // Heating rate at full power (°C/s)
+    @Column(nullable = false)
+    private double gain;
+
+    // Cooling rate per degree above ambient (1/s)
+    @Column(nullable = false)
+    private double loss;
+
+    // Temperature reached with the heater off (°C)
+    @Column(nullable = false)
+    private double ambient;
+
+    // RMS prediction error of dT/dt (°C/s)
+    @Column(nullable = false)
+    private double residual;
+
+    // Samples fitted since the model started
+    @Column(nullable = false)
+    private long samples;
+
+    public enum Heater {
+        NOZZLE, BED
+    }
+}
@@ -4,5 +4,7 @@ package com.fablab.backend.models.printer;
  * Enumerates the supported printer backends so that connectors can be resolved dynamically.
  */
 public enum PrinterType {
-    MOONRAKER
+    MOONRAKER,
+    /** Moonraker printer whose state is pushed over a WebSocket subscription instead of polled over HTTP. */
+    MOONRAKER_WS
 }
\ No newline at end of file
@@ -0,0 +1,342 @@
+package com.fablab.backend.printer.alert;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import com.fablab.backend.dto.AlertBacktestDTO;
+import com.fablab.backend.dto.AlertBacktestRequest;
+import com.fablab.backend.models.printer.Printer;
+import com.fablab.backend.models.printer.PrinterSnapshot;
+import com.fablab.backend.models.printer.PrinterType;
+import com.fablab.backend.repositories.printer.PrinterRepository;
+import com.fablab.backend.repositories.printer.PrinterTelemetryRepository;
+
+/**
+ * Replays stored printer history through a set of alert rules and counts the
+ * alerts they would have raised. Nothing is written to {@code alerts}.
+ * <p>
+ * The history is split in partitions of one printer over
+ * {@code printer.alert.backtest.chunk-hours}; a fork-join pool replays them in
+ * parallel, each streaming its rows from TimescaleDB through a cursor. Rules
+ * are evaluated as in the {@link AlertEngine} (same compiled conditions, same
+ * {@link ConditionTracker} debounce). A partition starts reading before its
+ * range, by the longest hold plus a margin, so conditions spanning a boundary
+ * are neither lost nor counted twice.
+ * <p>
+ * A backtest reads a lot of history, so requests are bounded: at most
+ * {@code max-range-days} of history, {@code max-printers} printers and
+ * {@code max-concurrent} backtests running at once; further ones are refused
+ * with a {@link BusyException} rather than queued.
+ */
+@Component
+public class AlertBacktester {
+
+    private static final Logger log = LoggerFactory.getLogger(AlertBacktester.class);
+
+    private static final Duration DEFAULT_RANGE = Duration.ofDays(30);
+    private static final int DEFAULT_SAMPLES = 5;
+    // Read before each partition on top of the longest hold, to rebuild the rule state
+    private static final long WARMUP_MARGIN_MS = 60_000;
+    /** Not used by rules and heavy to read */
+    private static final Set<String> SKIPPED_COLUMNS = Set.of("raw_payload", "bed_mesh_matrix");
+
+    private record Partition(UUID printerId, PrinterType type, Instant from, Instant to, boolean last) {
+    }
+
+    private final AlertRuleSource ruleSource;
+    private final PrinterRepository printerRepository;
+    private final PrinterTelemetryRepository telemetryRepository;
+    private final Duration chunk;
+    private final ForkJoinPool pool;
+    private final Duration maxRange;
+    private final int maxPrinters;
+    private final Semaphore running;
+
+    public AlertBacktester(
+            AlertRuleSource ruleSource,
+            PrinterRepository printerRepository,
+            PrinterTelemetryRepository telemetryRepository,
+            @Value("${printer.alert.backtest.chunk-hours:24}") int chunkHours,
+            @Value("${printer.alert.backtest.parallelism:4}") int parallelism,
+            @Value("${printer.alert.backtest.max-range-days:90}") int maxRangeDays,
+            @Value("${printer.alert.backtest.max-printers:50}") int maxPrinters,
+            @Value("${printer.alert.backtest.max-concurrent:2}") int maxConcurrent) {
+        this.ruleSource = ruleSource;
+        this.printerRepository = printerRepository;
+        this.telemetryRepository = telemetryRepository;
+        this.chunk = Duration.ofHours(Math.max(1, chunkHours));
+        this.maxRange = Duration.ofDays(Math.max(1, maxRangeDays));
+        this.maxPrinters = Math.max(1, maxPrinters);
+        this.running = new Semaphore(Math.max(1, maxConcurrent));
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ForkJoinPool(Math.max(1, parallelism), forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("alert-backtest-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * @throws IllegalArgumentException for an invalid or too long range, unknown
+     *         or too many printers, or invalid rules
+     * @throws BusyException when {@code max-concurrent} backtests are already running
+     */
+    public AlertBacktestDTO run(AlertBacktestRequest request) {
+        Instant to = request.getTo() != null ? request.getTo() : Instant.now();
+        Instant from = request.getFrom() != null ? request.getFrom() : to.minus(DEFAULT_RANGE);
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (Duration.between(from, to).compareTo(maxRange) > 0) {
+            throw new IllegalArgumentException("Range longer than " + maxRange.toDays() + " days");
+        }
+        List<AlertRule> rules = request.getRules() == null || request.getRules().isBlank()
+                ? ruleSource.rules()
+                : parseRules(request.getRules());
+        List<Printer> printers = printers(request.getPrinterIds());
+        if (printers.size() > maxPrinters) {
+            throw new IllegalArgumentException("More than " + maxPrinters + " printers, select fewer printerIds");
+        }
+
+        if (!running.tryAcquire()) {
+            throw new BusyException("Too many backtests running, retry later");
+        }
+        try {
+            return replayAll(from, to, rules, printers, request.getSamples());
+        } finally {
+            running.release();
+        }
+    }
+
+    private AlertBacktestDTO replayAll(Instant from, Instant to, List<AlertRule> rules, List<Printer> printers,
+                                       Integer requestedSamples) {
+        int samples = requestedSamples != null ? requestedSamples : DEFAULT_SAMPLES;
+
+        List<Partition> partitions = new ArrayList<>();
+        for (Printer printer : printers) {
+            for (Instant start = from; start.isBefore(to); start = start.plus(chunk)) {
+                Instant end = start.plus(chunk);
+                boolean last = !end.isBefore(to);
+                partitions.add(new Partition(printer.getId(), printer.getType(), start, last ? to : end, last));
+            }
+        }
+
+        long started = System.nanoTime();
+        Tally tally = partitions.isEmpty()
+                ? new Tally(samples)
+                : pool.invoke(new ReplayTask(partitions, 0, partitions.size(), rules, samples));
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        log.info("Backtested {} rules on {} snapshots of {} printers in {} ms",
+                rules.size(), tally.snapshots, printers.size(), elapsedMs);
+
+        List<AlertBacktestDTO.RuleResult> results = new ArrayList<>(rules.size());
+        for (AlertRule rule : rules) {
+            RuleTally ruleTally = tally.rules.get(rule.id());
+            results.add(ruleTally == null
+                    ? new AlertBacktestDTO.RuleResult(rule.id(), rule.code(), rule.category(), rule.severity(),
+                            0, 0, null, null, null, List.of())
+                    : ruleTally.toResult(rule));
+        }
+        return new AlertBacktestDTO(from, to, printers.size(), tally.snapshots, elapsedMs, results);
+    }
+
+    private static List<AlertRule> parseRules(String yaml) {
+        AtomicInteger keys = new AtomicInteger();
+        return AlertRuleSource.parse(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)),
+                id -> keys.getAndIncrement());
+    }
+
+    private List<Printer> printers(List<UUID> printerIds) {
+        if (printerIds == null || printerIds.isEmpty()) {
+            return printerRepository.findAll();
+        }
+        Set<UUID> ids = new HashSet<>(printerIds);
+        List<Printer> printers = printerRepository.findAllById(ids);
+        if (printers.size() != ids.size()) {
+            printers.forEach(printer -> ids.remove(printer.getId()));
+            throw new IllegalArgumentException("Unknown printer: " + ids.iterator().next());
+        }
+        return printers;
+    }
+
+    /**
+     * Refusal of a backtest because {@code max-concurrent} ones are already running.
+     */
+    public static class BusyException extends RuntimeException {
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Replays the partitions {@code [from, to)}, splitting them in halves down to one.
+     */
+    private final class ReplayTask extends RecursiveTask<Tally> {
+
+        private final List<Partition> partitions;
+        private final int from;
+        private final int to;
+        private final List<AlertRule> rules;
+        private final int samples;
+
+        private ReplayTask(List<Partition> partitions, int from, int to, List<AlertRule> rules, int samples) {
+            this.partitions = partitions;
+            this.from = from;
+            this.to = to;
+            this.rules = rules;
+            this.samples = samples;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from == 1) {
+                return replay(partitions.get(from), rules, samples);
+            }
+            int middle = (from + to) >>> 1;
+            ReplayTask left = new ReplayTask(partitions, from, middle, rules, samples);
+            left.fork();
+            Tally right = new ReplayTask(partitions, middle, to, rules, samples).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    private Tally replay(Partition partition, List<AlertRule> allRules, int samples) {
+        AlertRule[] rules = allRules.stream()
+                .filter(rule -> partition.type() == null ? rule.printerTypes().isEmpty() : rule.appliesTo(partition.type()))
+                .toArray(AlertRule[]::new);
+        Tally tally = new Tally(samples);
+        long warmupMs = WARMUP_MARGIN_MS + Arrays.stream(rules).mapToLong(AlertRule::holdMs).max().orElse(0);
+        long countFrom = partition.from().toEpochMilli();
+        long countTo = partition.to().toEpochMilli();
+        ConditionTracker.Segment segment = new ConditionTracker(1).segment(0);
+        long[] onsets = new long[rules.length];
+        Arrays.fill(onsets, -1);
+        PrinterSnapshot[] previous = new PrinterSnapshot[1];
+
+        telemetryRepository.streamSnapshots(partition.printerId(), partition.from().minusMillis(warmupMs),
+                partition.to(), SKIPPED_COLUMNS, snapshot -> {
+                    long now = snapshot.getTimestamp().toEpochMilli();
+                    boolean counted = now >= countFrom && (now < countTo || partition.last());
+                    if (counted) {
+                        tally.snapshots++;
+                    }
+                    for (int i = 0; i < rules.length; i++) {
+                        AlertRule rule = rules[i];
+                        boolean active;
+                        try {
+                            active = rule.condition().test(snapshot, previous[0]);
+                        } catch (RuntimeException e) {
+                            active = false;
+                        }
+                        if (!active) {
+                            onsets[i] = -1;
+                        } else if (onsets[i] < 0) {
+                            onsets[i] = now;
+                        }
+                        ConditionTracker.Transition transition;
+                        synchronized (segment) {
+                            transition = segment.observe(0, rule.key(), active, now, rule.holdMs());
+                        }
+                        if (transition == ConditionTracker.Transition.FIRED && counted) {
+                            tally.fire(rule, partition.printerId(), snapshot, now - onsets[i]);
+                        }
+                    }
+                    previous[0] = snapshot;
+                });
+        return tally;
+    }
+
+    /**
+     * Outcome of one or more partitions.
+     */
+    private static final class Tally {
+        private final int samples;
+        private final Map<String, RuleTally> rules = new LinkedHashMap<>();
+        private long snapshots;
+
+        private Tally(int samples) {
+            this.samples = samples;
+        }
+
+        private void fire(AlertRule rule, UUID printerId, PrinterSnapshot snapshot, long latencyMs) {
+            RuleTally tally = rules.computeIfAbsent(rule.id(), id -> new RuleTally());
+            tally.hits++;
+            tally.printers.add(printerId);
+            tally.latencySum += latencyMs;
+            tally.latencyMax = Math.max(tally.latencyMax, latencyMs);
+            Instant ts = snapshot.getTimestamp();
+            if (tally.firstFire == null || ts.isBefore(tally.firstFire)) {
+                tally.firstFire = ts;
+            }
+            // Partitions replay in time order: the first hits are the earliest
+            if (tally.samples.size() < samples) {
+                tally.samples.add(new AlertBacktestDTO.Sample(printerId, ts, rule.message().apply(snapshot)));
+            }
+        }
+
+        private Tally merge(Tally other) {
+            snapshots += other.snapshots;
+            other.rules.forEach((id, tally) -> rules.merge(id, tally, (mine, theirs) -> mine.merge(theirs, samples)));
+            return this;
+        }
+    }
+
+    private static final class RuleTally {
+        private final Set<UUID> printers = new HashSet<>();
+        private List<AlertBacktestDTO.Sample> samples = new ArrayList<>();
+        private long hits;
+        private long latencySum;
+        private long latencyMax;
+        private Instant firstFire;
+
+        private RuleTally merge(RuleTally other, int limit) {
+            hits += other.hits;
+            printers.addAll(other.printers);
+            latencySum += other.latencySum;
+            latencyMax = Math.max(latencyMax, other.latencyMax);
+            if (firstFire == null || (other.firstFire != null && other.firstFire.isBefore(firstFire))) {
+                firstFire = other.firstFire;
+            }
+            samples.addAll(other.samples);
+            samples.sort(Comparator.comparing(AlertBacktestDTO.Sample::ts));
+            if (samples.size() > limit) {
+                samples = new ArrayList<>(samples.subList(0, limit));
+            }
+            return this;
+        }
+
+        private AlertBacktestDTO.RuleResult toResult(AlertRule rule) {
+            return new AlertBacktestDTO.RuleResult(rule.id(), rule.code(), rule.category(), rule.severity(),
+                    hits, printers.size(), firstFire, latencySum / hits, latencyMax, List.copyOf(samples));
+        }
+    }
+}
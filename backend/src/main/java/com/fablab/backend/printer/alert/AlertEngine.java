@@ -0,0 +1,162 @@
+package com.fablab.backend.printer.alert;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import com.fablab.backend.models.Alert;
+import com.fablab.backend.models.printer.PrinterSnapshot;
+import com.fablab.backend.models.printer.PrinterType;
+import com.fablab.backend.printer.board.PrinterStateBoard;
+import com.fablab.backend.services.AlertModuleService;
+
+/**
+ * Evaluates the alert rules of every printer each time a new state reaches
+ * the {@link PrinterStateBoard}.
+ * <p>
+ * Nothing runs while printers are quiet: the board listener only records the
+ * new snapshot and, when the printer has no evaluation pending, schedules one
+ * on a small shared pool. Snapshots arriving while an evaluation is queued
+ * replace the pending one, so a burst costs a single evaluation and each
+ * printer is evaluated by one thread at a time.
+ * <p>
+ * Rules come from the {@link AlertRuleSource}, already compiled and grouped
+ * by printer type. Hold durations and report-once are tracked by a
+ * {@link ConditionTracker} keyed by (printer slot, rule key), so the state of
+ * a rule survives reloads and the steady state allocates nothing.
+ * <p>
+ * The same evaluation feeds the {@link AnomalyDetector}, whose series are
+ * debounced by the tracker under keys that no rule uses.
+ */
+@Component
+public class AlertEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(AlertEngine.class);
+
+    // Lock stripes of the condition tracker, well above the evaluation threads
+    private static final int TRACKER_SEGMENTS = 64;
+
+    private final AlertModuleService alertService;
+    private final AlertRuleSource ruleSource;
+    private final AnomalyDetector anomalyDetector;
+    private final Map<UUID, PrinterAlertState> states = new ConcurrentHashMap<>();
+    private final ConditionTracker tracker = new ConditionTracker(TRACKER_SEGMENTS);
+    private final AtomicInteger printerSlots = new AtomicInteger();
+    private final ExecutorService executor;
+
+    public AlertEngine(
+            PrinterStateBoard stateBoard,
+            AlertModuleService alertService,
+            AlertRuleSource ruleSource,
+            AnomalyDetector anomalyDetector,
+            @Value("${printer.alert.threads:2}") int threads) {
+        this.alertService = alertService;
+        this.ruleSource = ruleSource;
+        this.anomalyDetector = anomalyDetector;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "alert-engine-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        stateBoard.addSnapshotListener(this::onSnapshot);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Called on the ingest thread: hand the snapshot over without evaluating it.
+     */
+    private void onSnapshot(UUID printerId, PrinterSnapshot snapshot) {
+        PrinterAlertState state = states.computeIfAbsent(printerId, id -> new PrinterAlertState(printerSlots.getAndIncrement()));
+        if (state.pending.getAndSet(snapshot) == null) {
+            executor.execute(() -> drain(printerId, state));
+        }
+    }
+
+    /**
+     * Evaluate the pending snapshot of a printer, then any newer one published meanwhile.
+     */
+    private void drain(UUID printerId, PrinterAlertState state) {
+        PrinterSnapshot snapshot = state.pending.get();
+        while (snapshot != null) {
+            evaluate(printerId, state, snapshot);
+            if (state.pending.compareAndSet(snapshot, null)) {
+                return;
+            }
+            snapshot = state.pending.get();
+        }
+    }
+
+    private void evaluate(UUID printerId, PrinterAlertState state, PrinterSnapshot snapshot) {
+        long now = snapshot.getTimestamp() != null ? snapshot.getTimestamp().toEpochMilli() : System.currentTimeMillis();
+        PrinterType type = snapshot.getPrinter() != null ? snapshot.getPrinter().getType() : null;
+        AlertRule[] rules = ruleSource.rulesFor(type);
+        PrinterSnapshot previous = state.previous;
+        ConditionTracker.Segment segment = tracker.segment(state.slot);
+        for (AlertRule rule : rules) {
+            boolean active;
+            try {
+                active = rule.condition().test(snapshot, previous);
+            } catch (RuntimeException e) {
+                log.debug("Alert rule {} failed for printer {}: {}", rule.id(), printerId, e.getMessage());
+                active = false;
+            }
+            ConditionTracker.Transition transition;
+            synchronized (segment) {
+                transition = segment.observe(state.slot, rule.key(), active, now, rule.holdMs());
+            }
+            if (transition == ConditionTracker.Transition.FIRED) {
+                alertService.recordAlertAndAudit(printerId, null, rule.code(), rule.message().apply(snapshot),
+                        rule.category(), rule.severity());
+            }
+        }
+        if (anomalyDetector.isEnabled()) {
+            detectAnomalies(printerId, state, snapshot, now, segment);
+        }
+        state.previous = snapshot;
+    }
+
+    private void detectAnomalies(UUID printerId, PrinterAlertState state, PrinterSnapshot snapshot, long now,
+                                 ConditionTracker.Segment segment) {
+        for (AnomalyDetector.Metric metric : AnomalyDetector.METRICS) {
+            boolean active = anomalyDetector.update(state.series, metric, snapshot);
+            ConditionTracker.Transition transition;
+            synchronized (segment) {
+                transition = segment.observe(state.slot, metric.key(), active, now, anomalyDetector.holdMs());
+            }
+            if (transition == ConditionTracker.Transition.FIRED) {
+                alertService.recordAlertAndAudit(printerId, null, metric.code, anomalyDetector.describe(state.series, metric),
+                        metric.category, Alert.Severity.WARNING);
+            }
+        }
+    }
+
+    /**
+     * Evaluation state of one printer. Only touched by the thread evaluating it.
+     */
+    private static final class PrinterAlertState {
+        private final AtomicReference<PrinterSnapshot> pending = new AtomicReference<>();
+        private final int slot;
+        private final double[] series = AnomalyDetector.newState();
+        private PrinterSnapshot previous;
+
+        private PrinterAlertState(int slot) {
+            this.slot = slot;
+        }
+    }
+}
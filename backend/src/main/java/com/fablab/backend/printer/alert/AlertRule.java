@@ -0,0 +1,46 @@
+package com.fablab.backend.printer.alert;
+
+import java.util.Set;
+import java.util.function.Function;
+
+import com.fablab.backend.models.Alert;
+import com.fablab.backend.models.printer.PrinterSnapshot;
+import com.fablab.backend.models.printer.PrinterType;
+
+/**
+ * One alert condition evaluated by the {@link AlertEngine} on every new
+ * printer state. The alert is raised once the condition has held for
+ * {@code holdMs} (measured on snapshot timestamps) and raised again only
+ * after the condition has cleared.
+ *
+ * @param key small integer standing for {@code id}, stable across reloads
+ * @param id stable rule identifier, unique among the rules
+ * @param code alert code recorded with the alert (e.g. CB2565)
+ * @param category alert category (HEATBED, AXIS, ...)
+ * @param severity alert severity
+ * @param holdMs how long the condition must hold before the alert is raised
+ * @param printerTypes printer types the rule applies to, empty for all
+ * @param condition the compiled condition
+ * @param message alert message built from the snapshot that raised it
+ */
+public record AlertRule(int key, String id, String code, String category, Alert.Severity severity, long holdMs,
+                        Set<PrinterType> printerTypes, Condition condition,
+                        Function<PrinterSnapshot, String> message) {
+
+    /**
+     * Condition on the current state of a printer.
+     */
+    @FunctionalInterface
+    public interface Condition {
+
+        /**
+         * @param current the state being evaluated
+         * @param previous the state evaluated before it for the same printer, null for the first one
+         */
+        boolean test(PrinterSnapshot current, PrinterSnapshot previous);
+    }
+
+    public boolean appliesTo(PrinterType type) {
+        return printerTypes.isEmpty() || printerTypes.contains(type);
+    }
+}
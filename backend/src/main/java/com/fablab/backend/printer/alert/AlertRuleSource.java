@@ -0,0 +1,191 @@
+package com.fablab.backend.printer.alert;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yaml.snakeyaml.Yaml;
+
+import com.fablab.backend.models.Alert;
+import com.fablab.backend.models.printer.PrinterType;
+
+/**
+ * Alert rules loaded from YAML and compiled with {@link RuleExpression}.
+ * <p>
+ * The rules bundled in {@code alert-rules.yml} are used unless
+ * {@code printer.alert.rules-file} points to another file. That file is
+ * checked every {@code printer.alert.rules-reload-ms} and reloaded when it
+ * changes; a file that does not compile is reported and the current rules
+ * stay in place.
+ * <p>
+ * Rules are grouped per printer type once per load, so the engine gets the
+ * array of rules of a printer with a single lookup.
+ */
+@Component
+public class AlertRuleSource {
+
+    private static final Logger log = LoggerFactory.getLogger(AlertRuleSource.class);
+    private static final String BUNDLED_RULES = "alert-rules.yml";
+
+    private final Path rulesFile;
+    // Key of every rule id ever loaded, so debounce state survives reloads (guarded by load)
+    private final Map<String, Integer> ruleKeys = new HashMap<>();
+    private volatile List<AlertRule> rules;
+    private volatile Map<PrinterType, AlertRule[]> rulesByType;
+    private volatile AlertRule[] untypedRules;
+    private long loadedModified;
+
+    public AlertRuleSource(@Value("${printer.alert.rules-file:}") String rulesFile) {
+        this.rulesFile = rulesFile == null || rulesFile.isBlank() ? null : Path.of(rulesFile);
+        load();
+    }
+
+    /**
+     * Rules applying to a printer type. The same array is returned until the rules are reloaded.
+     *
+     * @param type printer type, null when unknown: only the rules without scope apply
+     */
+    public AlertRule[] rulesFor(PrinterType type) {
+        return type == null ? untypedRules : rulesByType.get(type);
+    }
+
+    /**
+     * All the rules currently loaded, in file order.
+     */
+    public List<AlertRule> rules() {
+        return rules;
+    }
+
+    /**
+     * Reload the rules file when it was modified since the last load.
+     */
+    @Scheduled(fixedDelayString = "${printer.alert.rules-reload-ms:5000}")
+    public void reloadIfChanged() {
+        if (rulesFile == null) {
+            return;
+        }
+        try {
+            if (Files.getLastModifiedTime(rulesFile).toMillis() != loadedModified) {
+                load();
+            }
+        } catch (IOException e) {
+            log.debug("Alert rules file {} not readable: {}", rulesFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Load and compile the rules. The bundled rules must compile; an invalid
+     * external file keeps the rules already loaded, or the bundled ones at startup.
+     */
+    private synchronized void load() {
+        if (rulesFile != null) {
+            try {
+                // Remembered even when invalid: the file is read again only once edited
+                loadedModified = Files.getLastModifiedTime(rulesFile).toMillis();
+                try (InputStream in = Files.newInputStream(rulesFile)) {
+                    apply(parse(in, this::keyOf), rulesFile.toString());
+                }
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.error("Alert rules not loaded from {}: {}", rulesFile, e.getMessage());
+                if (rulesByType != null) {
+                    return;
+                }
+            }
+        }
+        try (InputStream in = new ClassPathResource(BUNDLED_RULES).getInputStream()) {
+            apply(parse(in, this::keyOf), BUNDLED_RULES);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Invalid bundled alert rules: " + e.getMessage(), e);
+        }
+    }
+
+    private void apply(List<AlertRule> rules, String origin) {
+        Map<PrinterType, AlertRule[]> byType = new EnumMap<>(PrinterType.class);
+        for (PrinterType type : PrinterType.values()) {
+            byType.put(type, rules.stream().filter(rule -> rule.appliesTo(type)).toArray(AlertRule[]::new));
+        }
+        rulesByType = byType;
+        untypedRules = rules.stream().filter(rule -> rule.printerTypes().isEmpty()).toArray(AlertRule[]::new);
+        this.rules = List.copyOf(rules);
+        log.info("Loaded {} alert rules from {}", rules.size(), origin);
+    }
+
+    private int keyOf(String ruleId) {
+        return ruleKeys.computeIfAbsent(ruleId, id -> ruleKeys.size());
+    }
+
+    /**
+     * @param keys gives the key of a rule id
+     * @throws IllegalArgumentException on an invalid rule, naming it
+     */
+    static List<AlertRule> parse(InputStream in, ToIntFunction<String> keys) {
+        Object document = new Yaml().load(in);
+        if (!(document instanceof Map<?, ?> root) || !(root.get("rules") instanceof List<?> entries)) {
+            throw new IllegalArgumentException("a 'rules' list is expected");
+        }
+        List<AlertRule> rules = new ArrayList<>(entries.size());
+        Set<String> ids = new HashSet<>();
+        for (Object entry : entries) {
+            if (!(entry instanceof Map<?, ?> definition)) {
+                throw new IllegalArgumentException("each rule must be a mapping");
+            }
+            String id = text(definition, "id");
+            try {
+                if (!ids.add(id)) {
+                    throw new IllegalArgumentException("duplicate id");
+                }
+                RuleExpression.Compiled compiled = RuleExpression.compile(text(definition, "when"));
+                rules.add(new AlertRule(
+                        keys.applyAsInt(id),
+                        id,
+                        text(definition, "code"),
+                        text(definition, "category"),
+                        Alert.Severity.valueOf(text(definition, "severity").toUpperCase(Locale.ROOT)),
+                        compiled.holdMs(),
+                        printerTypes(definition.get("printer-types")),
+                        compiled.condition(),
+                        RuleExpression.compileMessage(text(definition, "message"))));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("rule " + id + ": " + e.getMessage(), e);
+            }
+        }
+        return rules;
+    }
+
+    private static String text(Map<?, ?> definition, String key) {
+        Object value = definition.get(key);
+        if (value == null || value.toString().isBlank()) {
+            throw new IllegalArgumentException("'" + key + "' is required");
+        }
+        return value.toString().trim();
+    }
+
+    private static Set<PrinterType> printerTypes(Object value) {
+        if (value == null) {
+            return Set.of();
+        }
+        Set<PrinterType> types = EnumSet.noneOf(PrinterType.class);
+        for (Object type : value instanceof List<?> list ? list : List.of(value)) {
+            types.add(PrinterType.valueOf(type.toString().trim().toUpperCase(Locale.ROOT)));
+        }
+        return Set.copyOf(types);
+    }
+}
@@ -0,0 +1,206 @@
+package com.fablab.backend.printer.alert;
+
+import java.util.Locale;
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fablab.backend.models.printer.PrinterSnapshot;
+
+/**
+ * Streaming anomaly detection on printer telemetry series.
+ * <p>
+ * Each (printer, metric) series keeps an exponentially weighted mean and
+ * variance, plus a much slower weighted baseline. Every sample is scored
+ * before being folded in: the series is anomalous when its z-score against
+ * the mean exceeds {@code z-limit} (sudden jump), or when a two-sided CUSUM
+ * of its deviation from the baseline exceeds {@code cusum-h} (slow drift
+ * that the mean follows and no single sample gives away). The state of a
+ * series is a fixed stride of doubles, so memory is O(1) per series and a
+ * sample costs a few arithmetic operations.
+ * <p>
+ * A series only runs in a steady regime: heaters at their target, the part
+ * fan at a constant command, motion while printing. When the regime changes
+ * the series starts over and stays silent for {@code warmup} samples, so
+ * heating up or changing the fan speed is not reported as an anomaly.
+ */
+@Component
+public class AnomalyDetector {
+
+    /**
+     * Monitored series.
+     */
+    enum Metric {
+        NOZZLE_TEMP("AN0001", "EXTRUDER AND TOOLHEAD", "température buse", 0.3,
+                s -> value(s.getNozzleTemp()), s -> value(s.getTargetNozzle()), 5),
+        BED_TEMP("AN0002", "HEATBED", "température lit", 0.2,
+                s -> value(s.getBedTemp()), s -> value(s.getTargetBed()), 3),
+        CHAMBER_TEMP("AN0003", "CHAMBER", "température enceinte", 1,
+                s -> value(s.getChamberTemp()), null, Double.NaN),
+        PART_FAN_RPM("AN0004", "FAN", "vitesse ventilateur pièce (RPM)", 50,
+                s -> value(s.getPartFanRPM()), s -> value(s.getPartFanSpeed()), Double.NaN),
+        LIVE_VELOCITY("AN0005", "AXIS", "vitesse de la tête", 5,
+                s -> value(s.getLiveVelocity()), s -> "printing".equals(s.getState()) ? 1 : 0, Double.NaN);
+
+        final String code;
+        final String category;
+        final String label;
+        // Floor of the standard deviation: sensor resolution, avoids infinite z on flat series
+        final double minStd;
+        final ToDoubleFunction<PrinterSnapshot> value;
+        // Regime the series runs in (target, fan command, printing flag); <= 0 pauses it, null: always on
+        final ToDoubleFunction<PrinterSnapshot> regime;
+        // Maximum distance between the value and the regime to be settled, NaN when not applicable
+        final double settleBand;
+
+        Metric(String code, String category, String label, double minStd, ToDoubleFunction<PrinterSnapshot> value,
+               ToDoubleFunction<PrinterSnapshot> regime, double settleBand) {
+            this.code = code;
+            this.category = category;
+            this.label = label;
+            this.minStd = minStd;
+            this.value = value;
+            this.regime = regime;
+            this.settleBand = settleBand;
+        }
+
+        /**
+         * Tracker key of the series, apart from the rule keys which are never negative.
+         */
+        int key() {
+            return -1 - ordinal();
+        }
+    }
+
+    static final Metric[] METRICS = Metric.values();
+
+    // Layout of one series in the state array
+    private static final int MEAN = 0;
+    private static final int VARIANCE = 1;
+    private static final int BASELINE = 2;
+    private static final int CUSUM_HIGH = 3;
+    private static final int CUSUM_LOW = 4;
+    private static final int REGIME = 5;
+    private static final int COUNT = 6;
+    private static final int LAST_VALUE = 7;
+    private static final int LAST_Z = 8;
+    private static final int STRIDE = 9;
+
+    private final boolean enabled;
+    private final double alpha;
+    private final double baselineAlpha;
+    private final double zLimit;
+    private final double cusumK;
+    private final double cusumH;
+    private final int warmup;
+    private final long holdMs;
+
+    public AnomalyDetector(
+            @Value("${printer.anomaly.enabled:true}") boolean enabled,
+            @Value("${printer.anomaly.alpha:0.05}") double alpha,
+            @Value("${printer.anomaly.baseline-alpha:0.005}") double baselineAlpha,
+            @Value("${printer.anomaly.z-limit:6}") double zLimit,
+            @Value("${printer.anomaly.cusum-k:0.5}") double cusumK,
+            @Value("${printer.anomaly.cusum-h:15}") double cusumH,
+            @Value("${printer.anomaly.warmup:30}") int warmup,
+            @Value("${printer.anomaly.hold-ms:0}") long holdMs) {
+        this.enabled = enabled;
+        this.alpha = alpha;
+        this.baselineAlpha = baselineAlpha;
+        this.zLimit = zLimit;
+        this.cusumK = cusumK;
+        this.cusumH = cusumH;
+        this.warmup = Math.max(1, warmup);
+        this.holdMs = holdMs;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * How long a series must stay anomalous before it is reported.
+     */
+    long holdMs() {
+        return holdMs;
+    }
+
+    /**
+     * State of all the series of one printer.
+     */
+    static double[] newState() {
+        return new double[METRICS.length * STRIDE];
+    }
+
+    /**
+     * Score a snapshot on one series and fold it in.
+     *
+     * @return true when the sample is anomalous
+     */
+    boolean update(double[] state, Metric metric, PrinterSnapshot snapshot) {
+        int base = metric.ordinal() * STRIDE;
+        double value = metric.value.applyAsDouble(snapshot);
+        double regime = metric.regime != null ? metric.regime.applyAsDouble(snapshot) : 1;
+        if (Double.isNaN(value) || !(regime > 0)
+                || (!Double.isNaN(metric.settleBand) && Math.abs(value - regime) > metric.settleBand)) {
+            state[base + COUNT] = 0;
+            return false;
+        }
+        if (state[base + COUNT] == 0 || state[base + REGIME] != regime) {
+            state[base + MEAN] = value;
+            state[base + VARIANCE] = 0;
+            state[base + BASELINE] = value;
+            state[base + CUSUM_HIGH] = 0;
+            state[base + CUSUM_LOW] = 0;
+            state[base + REGIME] = regime;
+            state[base + COUNT] = 1;
+            return false;
+        }
+
+        double mean = state[base + MEAN];
+        double variance = state[base + VARIANCE];
+        double baseline = state[base + BASELINE];
+        double std = Math.sqrt(Math.max(variance, metric.minStd * metric.minStd));
+        double z = (value - mean) / std;
+        boolean anomalous = false;
+        if (state[base + COUNT] >= warmup) {
+            double drift = (value - baseline) / std;
+            double high = Math.max(0, state[base + CUSUM_HIGH] + drift - cusumK);
+            double low = Math.max(0, state[base + CUSUM_LOW] - drift - cusumK);
+            state[base + CUSUM_HIGH] = high;
+            state[base + CUSUM_LOW] = low;
+            anomalous = Math.abs(z) > zLimit || high > cusumH || low > cusumH;
+        }
+        state[base + LAST_VALUE] = value;
+        state[base + LAST_Z] = z;
+
+        // EWMA mean and variance (West's incremental form)
+        double diff = value - mean;
+        double increment = alpha * diff;
+        state[base + MEAN] = mean + increment;
+        state[base + VARIANCE] = (1 - alpha) * (variance + diff * increment);
+        if (state[base + COUNT] < warmup) {
+            // The baseline starts from the settled mean rather than from the first samples
+            state[base + BASELINE] = mean + increment;
+            state[base + COUNT]++;
+        } else {
+            state[base + BASELINE] = baseline + baselineAlpha * (value - baseline);
+        }
+        return anomalous;
+    }
+
+    /**
+     * Alert message for the last sample of a series.
+     */
+    String describe(double[] state, Metric metric) {
+        int base = metric.ordinal() * STRIDE;
+        return String.format(Locale.ROOT, "Anomalie sur %s : %.1f (moyenne %.1f, référence %.1f, z=%.1f, CUSUM +%.1f/-%.1f)",
+                metric.label, state[base + LAST_VALUE], state[base + MEAN], state[base + BASELINE], state[base + LAST_Z],
+                state[base + CUSUM_HIGH], state[base + CUSUM_LOW]);
+    }
+
+    private static double value(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+}
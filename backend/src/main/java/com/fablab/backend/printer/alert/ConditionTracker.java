@@ -0,0 +1,184 @@
+package com.fablab.backend.printer.alert;
+
+/**
+ * Debounce state of alert conditions, keyed by (printer slot, rule key).
+ * <p>
+ * Implements "true for N ms", "report once" and "clear on recovery": a
+ * condition that becomes true is remembered with the time it started, fires
+ * once it has held long enough, and is forgotten as soon as it is false
+ * again. Only conditions currently true are stored, so the tables stay small
+ * whatever the number of printers and rules.
+ * <p>
+ * Entries live in open-addressing tables of primitive arrays (linear
+ * probing, backward-shift deletion), split in segments by printer so printers
+ * evaluated on different threads rarely share a lock. Observing a condition
+ * allocates nothing; tables only grow when more conditions hold at once than
+ * ever before.
+ */
+final class ConditionTracker {
+
+    /**
+     * What an observation did to a condition.
+     */
+    enum Transition {
+        /** False and not tracked */
+        IDLE,
+        /** True, not held long enough yet */
+        PENDING,
+        /** Held long enough: report it now */
+        FIRED,
+        /** True and already reported */
+        REPORTED,
+        /** False again after being reported */
+        RECOVERED
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Segment[] segments;
+
+    /**
+     * @param segments number of lock segments, rounded up to a power of two
+     */
+    ConditionTracker(int segments) {
+        int count = Integer.highestOneBit(Math.max(1, segments - 1)) << 1;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Segment holding the conditions of a printer. Callers lock it
+     * ({@code synchronized (segment)}) around their observations.
+     */
+    Segment segment(int printerSlot) {
+        return segments[mix(printerSlot) & (segments.length - 1)];
+    }
+
+    /**
+     * Number of conditions currently true, across all printers.
+     */
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    static final class Segment {
+        // key 0 marks a free slot: keys are built with printerSlot + 1
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private long[] since = new long[INITIAL_CAPACITY];
+        private boolean[] reported = new boolean[INITIAL_CAPACITY];
+        private int size;
+
+        /**
+         * Record the value of a condition at {@code now} (epoch ms).
+         * Must be called while holding the segment's monitor.
+         */
+        Transition observe(int printerSlot, int ruleKey, boolean active, long now, long holdMs) {
+            long key = ((long) (printerSlot + 1) << 32) | (ruleKey & 0xFFFFFFFFL);
+            int index = find(key);
+            if (!active) {
+                if (index < 0) {
+                    return Transition.IDLE;
+                }
+                boolean wasReported = reported[index];
+                delete(index);
+                return wasReported ? Transition.RECOVERED : Transition.IDLE;
+            }
+            if (index < 0) {
+                index = insert(key, now);
+            }
+            if (reported[index]) {
+                return Transition.REPORTED;
+            }
+            if (now - since[index] >= holdMs) {
+                reported[index] = true;
+                return Transition.FIRED;
+            }
+            return Transition.PENDING;
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                long current = keys[i];
+                if (current == key) {
+                    return i;
+                }
+                if (current == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        private int insert(long key, long now) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            since[i] = now;
+            reported[i] = false;
+            size++;
+            return i;
+        }
+
+        /**
+         * Remove a slot and shift back the entries of its probe chain, so lookups need no tombstones.
+         */
+        private void delete(int index) {
+            int mask = keys.length - 1;
+            int hole = index;
+            for (int i = (hole + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+                int home = mix(keys[i]) & mask;
+                // Move the entry into the hole unless its home lies in (hole, i]
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    since[hole] = since[i];
+                    reported[hole] = reported[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = 0;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            long[] oldSince = since;
+            boolean[] oldReported = reported;
+            keys = new long[capacity];
+            since = new long[capacity];
+            reported = new boolean[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != 0) {
+                    int i = mix(oldKeys[j]) & mask;
+                    while (keys[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    since[i] = oldSince[j];
+                    reported[i] = oldReported[j];
+                }
+            }
+        }
+    }
+
+    private static int mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+}
@@ -0,0 +1,594 @@
+package com.fablab.backend.printer.alert;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+import com.fablab.backend.models.printer.PrinterSnapshot;
+import com.fablab.backend.repositories.printer.SnapshotColumns;
+
+/**
+ * Compiler of the alert rule language.
+ * <p>
+ * A condition is an expression over snapshot fields, optionally followed by a
+ * hold duration:
+ * <pre>
+ * targetBed &gt; 0 &amp;&amp; bedTemp &lt; targetBed - 10 for 10s
+ * has(filename) &amp;&amp; state != 'printing' &amp;&amp; (progress &gt; 0 || printDuration &gt; 0) for 10s
+ * liveVelocity &gt; 0.1 &amp;&amp; norm(delta(livePositionX), delta(livePositionY), delta(livePositionZ)) &lt; 0.1 for 1s
+ * </pre>
+ * Fields are the snapshot fields in camelCase (or their column names);
+ * {@code prev.field} reads the previously evaluated snapshot. Operators:
+ * {@code || && ! == != < <= > >= + - * /}. Functions: {@code abs, sqrt,
+ * min, max, norm(a, b, ...)}, {@code delta(field)} (change since the previous
+ * snapshot), {@code rate(field)} (change per second) and {@code has(field)}
+ * (present and, for text, not empty). Durations take {@code ms, s, m} or
+ * {@code h}.
+ * <p>
+ * A comparison involving a missing value is false, so a rule never fires on
+ * a field the printer does not report; test it explicitly with
+ * {@code == null}. Missing booleans read as false.
+ * <p>
+ * The result is a tree of small evaluator objects built once per rule:
+ * evaluating it reads the snapshot getters and works on primitives only.
+ */
+final class RuleExpression {
+
+    /**
+     * @param condition the compiled condition
+     * @param holdMs the {@code for} duration, 0 when absent
+     */
+    record Compiled(AlertRule.Condition condition, long holdMs) {
+    }
+
+    @FunctionalInterface
+    interface NumberNode {
+        double eval(PrinterSnapshot current, PrinterSnapshot previous);
+    }
+
+    @FunctionalInterface
+    interface TextNode {
+        String eval(PrinterSnapshot current, PrinterSnapshot previous);
+    }
+
+    private enum Type { NUMBER, BOOLEAN, TEXT, NULL }
+
+    private static final AlertRule.Condition NEVER = (current, previous) -> false;
+
+    /**
+     * Typed operand during compilation.
+     *
+     * @param node a {@link NumberNode}, {@link AlertRule.Condition} or {@link TextNode}
+     * @param missing true when the value is missing
+     * @param constant constant value of a number literal, NaN otherwise
+     */
+    private record Operand(Type type, Object node, AlertRule.Condition missing, double constant) {
+
+        static Operand number(NumberNode node) {
+            return new Operand(Type.NUMBER, node, (c, p) -> Double.isNaN(node.eval(c, p)), Double.NaN);
+        }
+
+        static Operand constant(double value) {
+            return new Operand(Type.NUMBER, (NumberNode) (c, p) -> value, NEVER, value);
+        }
+
+        static Operand bool(AlertRule.Condition node) {
+            return new Operand(Type.BOOLEAN, node, NEVER, Double.NaN);
+        }
+
+        boolean isConstant() {
+            return !Double.isNaN(constant);
+        }
+    }
+
+    private final String source;
+    private final List<Token> tokens;
+    private int pos;
+
+    private RuleExpression(String source) {
+        this.source = source;
+        this.tokens = tokenize(source);
+    }
+
+    /**
+     * @throws IllegalArgumentException when the expression is invalid
+     */
+    static Compiled compile(String source) {
+        RuleExpression parser = new RuleExpression(source);
+        AlertRule.Condition condition = parser.condition(parser.or());
+        long holdMs = 0;
+        if (parser.peekWord("for")) {
+            parser.pos++;
+            holdMs = parser.duration();
+        }
+        if (parser.peek().kind != Kind.END) {
+            throw parser.error("unexpected '" + parser.peek().text + "'");
+        }
+        return new Compiled(condition, holdMs);
+    }
+
+    /**
+     * Compile a message template where {@code {field}} is replaced by the snapshot value.
+     *
+     * @throws IllegalArgumentException for an unknown field
+     */
+    static Function<PrinterSnapshot, String> compileMessage(String template) {
+        List<Object> parts = new ArrayList<>();
+        int from = 0;
+        int open;
+        while ((open = template.indexOf('{', from)) >= 0) {
+            int close = template.indexOf('}', open);
+            if (close < 0) {
+                break;
+            }
+            String column = SnapshotColumns.columnOf(template.substring(open + 1, close).trim());
+            if (column == null) {
+                throw new IllegalArgumentException("Unknown field in message: " + template.substring(open, close + 1));
+            }
+            parts.add(template.substring(from, open));
+            parts.add(SnapshotColumns.getterOf(column));
+            from = close + 1;
+        }
+        if (parts.isEmpty()) {
+            return snapshot -> template;
+        }
+        parts.add(template.substring(from));
+        return snapshot -> {
+            StringBuilder message = new StringBuilder(template.length() + 16);
+            for (Object part : parts) {
+                if (part instanceof String text) {
+                    message.append(text);
+                } else {
+                    @SuppressWarnings("unchecked")
+                    Function<PrinterSnapshot, Object> getter = (Function<PrinterSnapshot, Object>) part;
+                    message.append(getter.apply(snapshot));
+                }
+            }
+            return message.toString();
+        };
+    }
+
+    // ===== GRAMMAR =====
+
+    private Operand or() {
+        Operand left = and();
+        while (peekSymbol("||")) {
+            pos++;
+            AlertRule.Condition a = condition(left);
+            AlertRule.Condition b = condition(and());
+            left = Operand.bool((c, p) -> a.test(c, p) || b.test(c, p));
+        }
+        return left;
+    }
+
+    private Operand and() {
+        Operand left = not();
+        while (peekSymbol("&&")) {
+            pos++;
+            AlertRule.Condition a = condition(left);
+            AlertRule.Condition b = condition(not());
+            left = Operand.bool((c, p) -> a.test(c, p) && b.test(c, p));
+        }
+        return left;
+    }
+
+    private Operand not() {
+        if (peekSymbol("!")) {
+            pos++;
+            AlertRule.Condition a = condition(not());
+            return Operand.bool((c, p) -> !a.test(c, p));
+        }
+        return comparison();
+    }
+
+    private Operand comparison() {
+        Operand left = additive();
+        Token token = peek();
+        if (token.kind != Kind.SYMBOL || !List.of("==", "!=", "<", "<=", ">", ">=").contains(token.text)) {
+            return left;
+        }
+        pos++;
+        Operand right = additive();
+        String op = token.text;
+
+        if (left.type == Type.NULL || right.type == Type.NULL) {
+            if (!op.equals("==") && !op.equals("!=")) {
+                throw error("null can only be compared with == or !=");
+            }
+            AlertRule.Condition missing = left.type == Type.NULL ? right.missing : left.missing;
+            return Operand.bool(op.equals("==") ? missing : (c, p) -> !missing.test(c, p));
+        }
+        if (left.type != right.type) {
+            throw error("cannot compare " + name(left.type) + " with " + name(right.type));
+        }
+        if (left.type == Type.NUMBER) {
+            NumberNode a = (NumberNode) left.node;
+            NumberNode b = (NumberNode) right.node;
+            // NaN (missing) makes every comparison false, != included
+            return Operand.bool(switch (op) {
+                case "==" -> (c, p) -> a.eval(c, p) == b.eval(c, p);
+                case "!=" -> (c, p) -> {
+                    double x = a.eval(c, p);
+                    double y = b.eval(c, p);
+                    return x == x && y == y && x != y;
+                };
+                case "<" -> (c, p) -> a.eval(c, p) < b.eval(c, p);
+                case "<=" -> (c, p) -> a.eval(c, p) <= b.eval(c, p);
+                case ">" -> (c, p) -> a.eval(c, p) > b.eval(c, p);
+                default -> (c, p) -> a.eval(c, p) >= b.eval(c, p);
+            });
+        }
+        if (!op.equals("==") && !op.equals("!=")) {
+            throw error(name(left.type) + " values can only be compared with == or !=");
+        }
+        boolean equal = op.equals("==");
+        AlertRule.Condition leftMissing = left.missing;
+        AlertRule.Condition rightMissing = right.missing;
+        if (left.type == Type.TEXT) {
+            TextNode a = (TextNode) left.node;
+            TextNode b = (TextNode) right.node;
+            return Operand.bool((c, p) -> {
+                String x = a.eval(c, p);
+                String y = b.eval(c, p);
+                return x != null && y != null && x.equals(y) == equal;
+            });
+        }
+        AlertRule.Condition a = (AlertRule.Condition) left.node;
+        AlertRule.Condition b = (AlertRule.Condition) right.node;
+        return Operand.bool((c, p) -> !leftMissing.test(c, p) && !rightMissing.test(c, p)
+                && (a.test(c, p) == b.test(c, p)) == equal);
+    }
+
+    private Operand additive() {
+        Operand left = multiplicative();
+        while (peekSymbol("+") || peekSymbol("-")) {
+            String op = tokens.get(pos++).text;
+            left = arithmetic(op, left, multiplicative());
+        }
+        return left;
+    }
+
+    private Operand multiplicative() {
+        Operand left = unary();
+        while (peekSymbol("*") || peekSymbol("/")) {
+            String op = tokens.get(pos++).text;
+            left = arithmetic(op, left, unary());
+        }
+        return left;
+    }
+
+    private Operand unary() {
+        if (peekSymbol("-")) {
+            pos++;
+            Operand operand = unary();
+            if (operand.isConstant()) {
+                return Operand.constant(-operand.constant);
+            }
+            NumberNode a = number(operand);
+            return Operand.number((c, p) -> -a.eval(c, p));
+        }
+        return primary();
+    }
+
+    private Operand primary() {
+        Token token = tokens.get(pos++);
+        switch (token.kind) {
+            case NUMBER:
+                return Operand.constant(Double.parseDouble(token.text));
+            case STRING: {
+                String value = token.text;
+                return new Operand(Type.TEXT, (TextNode) (c, p) -> value, NEVER, Double.NaN);
+            }
+            case WORD:
+                break;
+            default:
+                if (token.text.equals("(")) {
+                    Operand inner = or();
+                    expectSymbol(")");
+                    return inner;
+                }
+                throw error("unexpected '" + token.text + "'", token);
+        }
+        switch (token.text) {
+            case "true":
+                return Operand.bool((c, p) -> true);
+            case "false":
+                return Operand.bool(NEVER);
+            case "null":
+                return new Operand(Type.NULL, null, NEVER, Double.NaN);
+            case "prev":
+                expectSymbol(".");
+                return field(tokens.get(pos++), true);
+            default:
+                if (peekSymbol("(")) {
+                    pos++;
+                    return function(token);
+                }
+                return field(token, false);
+        }
+    }
+
+    private Operand function(Token name) {
+        List<Operand> args = new ArrayList<>();
+        // Arguments made of a single token: their token, null otherwise
+        List<Token> argTokens = new ArrayList<>();
+        if (!peekSymbol(")")) {
+            do {
+                int start = pos;
+                args.add(or());
+                argTokens.add(pos - start == 1 ? tokens.get(start) : null);
+            } while (acceptSymbol(","));
+        }
+        expectSymbol(")");
+
+        switch (name.text) {
+            case "abs", "sqrt" -> {
+                NumberNode a = number(single(name, args));
+                return Operand.number(name.text.equals("abs")
+                        ? (c, p) -> Math.abs(a.eval(c, p))
+                        : (c, p) -> Math.sqrt(a.eval(c, p)));
+            }
+            case "min", "max" -> {
+                if (args.size() != 2) {
+                    throw error(name.text + "() takes 2 arguments", name);
+                }
+                NumberNode a = number(args.get(0));
+                NumberNode b = number(args.get(1));
+                return Operand.number(name.text.equals("min")
+                        ? (c, p) -> Math.min(a.eval(c, p), b.eval(c, p))
+                        : (c, p) -> Math.max(a.eval(c, p), b.eval(c, p)));
+            }
+            case "norm" -> {
+                if (args.isEmpty()) {
+                    throw error("norm() takes at least 1 argument", name);
+                }
+                NumberNode[] parts = new NumberNode[args.size()];
+                for (int i = 0; i < parts.length; i++) {
+                    parts[i] = number(args.get(i));
+                }
+                return Operand.number((c, p) -> {
+                    double sum = 0;
+                    for (NumberNode part : parts) {
+                        double value = part.eval(c, p);
+                        sum += value * value;
+                    }
+                    return Math.sqrt(sum);
+                });
+            }
+            case "delta", "rate" -> {
+                Function<PrinterSnapshot, Object> getter = numericGetter(fieldArgument(name, argTokens, args));
+                if (name.text.equals("delta")) {
+                    return Operand.number((c, p) -> p == null ? Double.NaN : value(getter.apply(c)) - value(getter.apply(p)));
+                }
+                return Operand.number((c, p) -> {
+                    if (p == null || c.getTimestamp() == null || p.getTimestamp() == null) {
+                        return Double.NaN;
+                    }
+                    long dtMs = c.getTimestamp().toEpochMilli() - p.getTimestamp().toEpochMilli();
+                    return dtMs > 0 ? (value(getter.apply(c)) - value(getter.apply(p))) * 1000.0 / dtMs : Double.NaN;
+                });
+            }
+            case "has" -> {
+                String column = fieldArgument(name, argTokens, args);
+                Function<PrinterSnapshot, Object> getter = SnapshotColumns.getterOf(column);
+                return Operand.bool((c, p) -> {
+                    Object value = getter.apply(c);
+                    return value != null && !(value instanceof String text && text.isEmpty())
+                            && !(value instanceof Double number && number.isNaN());
+                });
+            }
+            default -> throw error("unknown function " + name.text + "()", name);
+        }
+    }
+
+    private Operand field(Token token, boolean previous) {
+        if (token.kind != Kind.WORD) {
+            throw error("field name expected", token);
+        }
+        String column = SnapshotColumns.columnOf(token.text);
+        Integer sqlType = column != null ? SnapshotColumns.sqlTypeOf(column) : null;
+        if (sqlType == null || sqlType == Types.OTHER || sqlType == Types.TIMESTAMP) {
+            throw error("unknown field '" + token.text + "'", token);
+        }
+        Function<PrinterSnapshot, Object> getter = SnapshotColumns.getterOf(column);
+        AlertRule.Condition missing = previous
+                ? (c, p) -> p == null || getter.apply(p) == null
+                : (c, p) -> getter.apply(c) == null;
+        if (SnapshotColumns.isNumeric(column)) {
+            NumberNode node = previous
+                    ? (c, p) -> p == null ? Double.NaN : value(getter.apply(p))
+                    : (c, p) -> value(getter.apply(c));
+            return Operand.number(node);
+        }
+        if (sqlType == Types.BOOLEAN) {
+            AlertRule.Condition node = previous
+                    ? (c, p) -> p != null && Boolean.TRUE.equals(getter.apply(p))
+                    : (c, p) -> Boolean.TRUE.equals(getter.apply(c));
+            return new Operand(Type.BOOLEAN, node, missing, Double.NaN);
+        }
+        TextNode node = previous
+                ? (c, p) -> p == null ? null : (String) getter.apply(p)
+                : (c, p) -> (String) getter.apply(c);
+        return new Operand(Type.TEXT, node, missing, Double.NaN);
+    }
+
+    /**
+     * Column named by the single argument of delta(), rate() or has()
+     */
+    private String fieldArgument(Token name, List<Token> argTokens, List<Operand> args) {
+        single(name, args);
+        Token arg = argTokens.get(0);
+        String column = arg != null && arg.kind == Kind.WORD ? SnapshotColumns.columnOf(arg.text) : null;
+        if (column == null) {
+            throw error(name.text + "() takes a field name", name);
+        }
+        return column;
+    }
+
+    private Function<PrinterSnapshot, Object> numericGetter(String column) {
+        if (!SnapshotColumns.isNumeric(column)) {
+            throw error("'" + SnapshotColumns.fieldName(column) + "' is not a number");
+        }
+        return SnapshotColumns.getterOf(column);
+    }
+
+    private Operand single(Token name, List<Operand> args) {
+        if (args.size() != 1) {
+            throw error(name.text + "() takes 1 argument", name);
+        }
+        return args.get(0);
+    }
+
+    private Operand arithmetic(String op, Operand left, Operand right) {
+        if (left.isConstant() && right.isConstant()) {
+            return Operand.constant(apply(op, left.constant, right.constant));
+        }
+        NumberNode a = number(left);
+        NumberNode b = number(right);
+        return Operand.number(switch (op) {
+            case "+" -> (c, p) -> a.eval(c, p) + b.eval(c, p);
+            case "-" -> (c, p) -> a.eval(c, p) - b.eval(c, p);
+            case "*" -> (c, p) -> a.eval(c, p) * b.eval(c, p);
+            default -> (c, p) -> a.eval(c, p) / b.eval(c, p);
+        });
+    }
+
+    private static double apply(String op, double a, double b) {
+        return switch (op) {
+            case "+" -> a + b;
+            case "-" -> a - b;
+            case "*" -> a * b;
+            default -> a / b;
+        };
+    }
+
+    private long duration() {
+        Token amount = tokens.get(pos++);
+        if (amount.kind != Kind.NUMBER) {
+            throw error("duration expected after 'for'", amount);
+        }
+        double value = Double.parseDouble(amount.text);
+        String unit = peek().kind == Kind.WORD ? tokens.get(pos++).text : "s";
+        double factor = switch (unit) {
+            case "ms" -> 1;
+            case "s" -> 1_000;
+            case "m" -> 60_000;
+            case "h" -> 3_600_000;
+            default -> throw error("unknown duration unit '" + unit + "'");
+        };
+        return Math.round(value * factor);
+    }
+
+    private NumberNode number(Operand operand) {
+        if (operand.type != Type.NUMBER) {
+            throw error("number expected, got " + name(operand.type));
+        }
+        return (NumberNode) operand.node;
+    }
+
+    private AlertRule.Condition condition(Operand operand) {
+        if (operand.type != Type.BOOLEAN) {
+            throw error("condition expected, got " + name(operand.type));
+        }
+        return (AlertRule.Condition) operand.node;
+    }
+
+    private static double value(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        return Double.NaN;
+    }
+
+    private static String name(Type type) {
+        return type.name().toLowerCase(Locale.ROOT);
+    }
+
+    // ===== TOKENS =====
+
+    private enum Kind { NUMBER, STRING, WORD, SYMBOL, END }
+
+    private record Token(Kind kind, String text, int offset) {
+    }
+
+    private Token peek() {
+        return tokens.get(pos);
+    }
+
+    private boolean peekSymbol(String symbol) {
+        Token token = peek();
+        return token.kind == Kind.SYMBOL && token.text.equals(symbol);
+    }
+
+    private boolean peekWord(String word) {
+        Token token = peek();
+        return token.kind == Kind.WORD && token.text.equals(word);
+    }
+
+    private boolean acceptSymbol(String symbol) {
+        if (peekSymbol(symbol)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expectSymbol(String symbol) {
+        if (!acceptSymbol(symbol)) {
+            throw error("'" + symbol + "' expected");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return error(message, peek());
+    }
+
+    private IllegalArgumentException error(String message, Token token) {
+        return new IllegalArgumentException(message + " at position " + (token.offset + 1) + " in: " + source);
+    }
+
+    private static List<Token> tokenize(String source) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < source.length()) {
+            char ch = source.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                i++;
+            } else if (Character.isDigit(ch) || (ch == '.' && i + 1 < source.length() && Character.isDigit(source.charAt(i + 1)))) {
+                int start = i;
+                while (i < source.length() && (Character.isDigit(source.charAt(i)) || source.charAt(i) == '.')) {
+                    i++;
+                }
+                tokens.add(new Token(Kind.NUMBER, source.substring(start, i), start));
+            } else if (Character.isLetter(ch) || ch == '_') {
+                int start = i;
+                while (i < source.length() && (Character.isLetterOrDigit(source.charAt(i)) || source.charAt(i) == '_')) {
+                    i++;
+                }
+                tokens.add(new Token(Kind.WORD, source.substring(start, i), start));
+            } else if (ch == '\'' || ch == '"') {
+                int end = source.indexOf(ch, i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated string at position " + (i + 1) + " in: " + source);
+                }
+                tokens.add(new Token(Kind.STRING, source.substring(i + 1, end), i));
+                i = end + 1;
+            } else {
+                String two = i + 1 < source.length() ? source.substring(i, i + 2) : "";
+                if (List.of("&&", "||", "==", "!=", "<=", ">=").contains(two)) {
+                    tokens.add(new Token(Kind.SYMBOL, two, i));
+                    i += 2;
+                } else if ("!<>+-*/(),.".indexOf(ch) >= 0) {
+                    tokens.add(new Token(Kind.SYMBOL, String.valueOf(ch), i));
+                    i++;
+                } else {
+                    throw new IllegalArgumentException("Unexpected '" + ch + "' at position " + (i + 1) + " in: " + source);
+                }
+            }
+        }
+        tokens.add(new Token(Kind.END, "end of rule", source.length()));
+        return tokens;
+    }
+}
@@ -0,0 +1,164 @@
+package com.fablab.backend.printer.board;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+import com.fablab.backend.models.printer.Printer;
+import com.fablab.backend.models.printer.PrinterSnapshot;
+import com.fablab.backend.models.printer.PrinterStatus;
+import com.fablab.backend.repositories.printer.PrinterRepository;
+import com.fablab.backend.repositories.printer.PrinterTelemetryRepository;
+
+/**
+ * In-memory board holding the current state of every printer: its status and
+ * its latest snapshot.
+ * <p>
+ * Each printer owns one slot whose value is an immutable {@link Entry}. The
+ * ingest path publishes a new entry with a compare-and-set on the slot, so
+ * readers never lock and always see a complete entry; an older snapshot
+ * arriving late never replaces a newer one. The board is warmed at startup
+ * with the printer statuses and one {@code DISTINCT ON (printer_id)} query,
+ * then latest-state reads, alert evaluation and dashboard counts are served
+ * without touching the database.
+ * <p>
+ * Published snapshots are shared: readers must not modify them. Listeners
+ * registered with {@link #addSnapshotListener} see every accepted snapshot
+ * on the publishing thread and must return quickly.
+ */
+@Component
+public class PrinterStateBoard {
+
+    private static final Logger log = LoggerFactory.getLogger(PrinterStateBoard.class);
+
+    /**
+     * Current state of one printer.
+     *
+     * @param status last known status, null until the printer is polled
+     * @param snapshot latest snapshot, null when none was ever stored
+     */
+    public record Entry(PrinterStatus status, PrinterSnapshot snapshot) {
+
+        private static final Entry EMPTY = new Entry(null, null);
+
+        Entry withStatus(PrinterStatus status) {
+            return status == this.status ? this : new Entry(status, snapshot);
+        }
+
+        Entry withSnapshot(PrinterSnapshot snapshot) {
+            if (this.snapshot != null && this.snapshot.getTimestamp() != null && snapshot.getTimestamp() != null
+                    && snapshot.getTimestamp().isBefore(this.snapshot.getTimestamp())) {
+                return this;
+            }
+            return new Entry(status, snapshot);
+        }
+    }
+
+    private final PrinterRepository printerRepository;
+    private final PrinterTelemetryRepository telemetryRepository;
+    private final Map<UUID, AtomicReference<Entry>> slots = new ConcurrentHashMap<>();
+    private final List<BiConsumer<UUID, PrinterSnapshot>> snapshotListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean warm;
+
+    public PrinterStateBoard(PrinterRepository printerRepository, PrinterTelemetryRepository telemetryRepository) {
+        this.printerRepository = printerRepository;
+        this.telemetryRepository = telemetryRepository;
+    }
+
+    /**
+     * Load printer statuses and the latest snapshot of every printer.
+     * If the databases are not reachable yet, the board fills up from ingest.
+     */
+    @PostConstruct
+    public void warm() {
+        try {
+            for (Printer printer : printerRepository.findAll()) {
+                publishStatus(printer.getId(), printer.getStatus());
+            }
+            List<PrinterSnapshot> latest = telemetryRepository.findLatestPerPrinter();
+            for (PrinterSnapshot snapshot : latest) {
+                publishSnapshot(snapshot.getPrinter().getId(), snapshot);
+            }
+            warm = true;
+            log.info("Printer state board warmed: {} printers, {} snapshots", slots.size(), latest.size());
+        } catch (Exception e) {
+            log.warn("Printer state board not warmed, filling from ingest: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Whether the board was loaded from the database: a missing snapshot then means there is none.
+     */
+    public boolean isWarm() {
+        return warm;
+    }
+
+    public void publishSnapshot(UUID printerId, PrinterSnapshot snapshot) {
+        Entry entry = slot(printerId).updateAndGet(current -> current.withSnapshot(snapshot));
+        if (entry.snapshot() != snapshot) {
+            return;
+        }
+        for (BiConsumer<UUID, PrinterSnapshot> listener : snapshotListeners) {
+            try {
+                listener.accept(printerId, snapshot);
+            } catch (Exception e) {
+                log.warn("Snapshot listener failed for printer {}: {}", printerId, e.getMessage());
+            }
+        }
+    }
+
+    public void addSnapshotListener(BiConsumer<UUID, PrinterSnapshot> listener) {
+        snapshotListeners.add(listener);
+    }
+
+    public void publishStatus(UUID printerId, PrinterStatus status) {
+        slot(printerId).updateAndGet(entry -> entry.withStatus(status));
+    }
+
+    public Optional<Entry> get(UUID printerId) {
+        AtomicReference<Entry> slot = slots.get(printerId);
+        return slot == null ? Optional.empty() : Optional.of(slot.get());
+    }
+
+    public Optional<PrinterSnapshot> getLatestSnapshot(UUID printerId) {
+        return get(printerId).map(Entry::snapshot);
+    }
+
+    public void forEach(BiConsumer<UUID, Entry> action) {
+        slots.forEach((printerId, slot) -> action.accept(printerId, slot.get()));
+    }
+
+    public long countByStatus(PrinterStatus status) {
+        long count = 0;
+        for (AtomicReference<Entry> slot : slots.values()) {
+            if (slot.get().status() == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Drop the printers that no longer exist.
+     */
+    public void retainAll(Set<UUID> printerIds) {
+        slots.keySet().retainAll(printerIds);
+    }
+
+    private AtomicReference<Entry> slot(UUID printerId) {
+        AtomicReference<Entry> slot = slots.get(printerId);
+        return slot != null ? slot : slots.computeIfAbsent(printerId, id -> new AtomicReference<>(Entry.EMPTY));
+    }
+}
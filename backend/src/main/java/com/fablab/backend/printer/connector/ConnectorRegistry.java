@@ -6,6 +6,7 @@ import org.springframework.stereotype.Component;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * Registry used to resolve the appropriate connector from the printer type.
@@ -26,4 +27,11 @@ public class ConnectorRegistry {
         }
         return connector;
     }
-}
\ No newline at end of file
+
+    /**
+     * Let every connector release what it keeps for a deleted printer.
+     */
+    public void release(UUID printerId) {
+        connectors.values().forEach(connector -> connector.release(printerId));
+    }
+}
@@ -1,27 +1,72 @@
 package com.fablab.backend.printer.connector;
 
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedReader;
-import java.io.OutputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Low-level HTTP client for Moonraker API communication.
  * Handles HTTP requests with API key authentication.
+ * <p>
+ * Built on a single shared {@link HttpClient}: connections to each printer are
+ * kept alive and reused between polls and commands, replies may be gzip
+ * compressed, and bodies are read as bytes. The number of requests in flight
+ * to one printer is bounded so a burst of commands cannot starve its polling;
+ * a request that cannot get a slot within {@code PERMIT_TIMEOUT} fails instead
+ * of queueing forever, and a printer's slots are forgotten once it has no
+ * request left. Every call exists in a blocking and a {@link CompletableFuture}
+ * flavour; the blocking one never waits longer than the slot and request timeouts.
  */
 @Component
 public class MoonrakerClient {
 
     private static final Logger log = LoggerFactory.getLogger(MoonrakerClient.class);
-    private static final int CONNECT_TIMEOUT_MS = 5000;
-    private static final int READ_TIMEOUT_MS = 10000;
-    private static final int COMMAND_READ_TIMEOUT_MS = 60000; // 60s for commands like G28
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration COMMAND_READ_TIMEOUT = Duration.ofSeconds(60); // 60s for commands like G28
+    private static final Duration PERMIT_TIMEOUT = Duration.ofSeconds(10);
+    // Slack for reading and decoding the body once the response has started
+    private static final Duration AWAIT_MARGIN = Duration.ofSeconds(5);
+    private static final String USER_AGENT = "FabLab-DigitalTwin/1.0";
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .executor(executor)
+            .build();
+
+    // Requests waiting or in flight per printer (key = base URL), removed when none is left
+    private final Map<String, HostPermits> hostPermits = new ConcurrentHashMap<>();
+    private final int maxRequestsPerPrinter;
+
+    public MoonrakerClient(@Value("${moonraker.max-requests-per-printer:4}") int maxRequestsPerPrinter) {
+        this.maxRequestsPerPrinter = maxRequestsPerPrinter;
+    }
 
     /**
      * Execute a GET request to the Moonraker API.
@@ -33,25 +78,33 @@ public class MoonrakerClient {
      * @throws Exception if request fails
      */
     public String get(String baseUrl, String apiKey, String endpoint) throws Exception {
-        String fullUrl = baseUrl + endpoint;
-        log.debug("GET request to: {}", fullUrl);
-
-        HttpURLConnection conn = openConnection(fullUrl, apiKey);
-
-        try {
-            conn.setRequestMethod("GET");
-            int status = conn.getResponseCode();
+        return new String(getBytes(baseUrl, apiKey, endpoint), StandardCharsets.UTF_8);
+    }
 
-            if (status >= 200 && status < 300) {
-                return readResponse(conn.getInputStream());
-            }
+    /**
+     * Execute a GET request and return the raw (decompressed) response body.
+     *
+     * @param baseUrl Base URL (e.g., "http://192.168.1.100:7125")
+     * @param apiKey  API key for authentication
+     * @param endpoint API endpoint (e.g., "/printer/objects/query?extruder")
+     * @return Raw JSON response bytes (UTF-8)
+     * @throws Exception if request fails
+     */
+    public byte[] getBytes(String baseUrl, String apiKey, String endpoint) throws Exception {
+        return await(getAsync(baseUrl, apiKey, endpoint), READ_TIMEOUT);
+    }
 
-            String errorBody = readResponse(conn.getErrorStream());
-            log.warn("HTTP {} from {}: {}", status, fullUrl, errorBody);
-            throw new Exception("HTTP " + status + ": " + errorBody);
-        } finally {
-            conn.disconnect();
-        }
+    /**
+     * Asynchronous variant of {@link #getBytes}.
+     *
+     * @return future completed with the raw response bytes, or failed if the request fails
+     */
+    public CompletableFuture<byte[]> getAsync(String baseUrl, String apiKey, String endpoint) {
+        log.debug("GET request to: {}", baseUrl + endpoint);
+        HttpRequest request = newRequest(baseUrl, apiKey, endpoint, READ_TIMEOUT)
+                .GET()
+                .build();
+        return send(baseUrl, request);
     }
 
     /**
@@ -65,33 +118,21 @@ public class MoonrakerClient {
      * @throws Exception if request fails
      */
     public String postJson(String baseUrl, String apiKey, String endpoint, String bodyJson) throws Exception {
-        String fullUrl = baseUrl + endpoint;
-        log.debug("POST request to: {}", fullUrl);
-
-        HttpURLConnection conn = openConnection(fullUrl, apiKey);
-
-        try {
-            conn.setRequestMethod("POST");
-            conn.setDoOutput(true);
-            conn.setRequestProperty("Content-Type", "application/json");
-
-            try (OutputStream os = conn.getOutputStream()) {
-                os.write(bodyJson.getBytes(StandardCharsets.UTF_8));
-            }
-
-            int status = conn.getResponseCode();
-            
-            if (status >= 200 && status < 300) {
-                return readResponse(conn.getInputStream());
-            } else {
-                String errorBody = readResponse(conn.getErrorStream());
-                log.warn("HTTP {} from {}: {}", status, fullUrl, errorBody);
-                throw new Exception("HTTP " + status + ": " + errorBody);
-            }
+        return asString(await(postJsonAsync(baseUrl, apiKey, endpoint, bodyJson), READ_TIMEOUT));
+    }
 
-        } finally {
-            conn.disconnect();
-        }
+    /**
+     * Asynchronous variant of {@link #postJson}.
+     *
+     * @return future completed with the raw response bytes
+     */
+    public CompletableFuture<byte[]> postJsonAsync(String baseUrl, String apiKey, String endpoint, String bodyJson) {
+        log.debug("POST request to: {}", baseUrl + endpoint);
+        HttpRequest request = newRequest(baseUrl, apiKey, endpoint, READ_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(bodyJson, StandardCharsets.UTF_8))
+                .build();
+        return send(baseUrl, request);
     }
 
     /**
@@ -106,91 +147,190 @@ public class MoonrakerClient {
      * @throws Exception if request fails
      */
     public String post(String baseUrl, String apiKey, String endpoint) throws Exception {
-        String fullUrl = baseUrl + endpoint;
-        log.debug("POST request to: {}", fullUrl);
+        return asString(await(postAsync(baseUrl, apiKey, endpoint), COMMAND_READ_TIMEOUT));
+    }
+
+    /**
+     * Asynchronous variant of {@link #post}.
+     *
+     * @return future completed with the raw response bytes
+     */
+    public CompletableFuture<byte[]> postAsync(String baseUrl, String apiKey, String endpoint) {
+        log.debug("POST request to: {}", baseUrl + endpoint);
+        HttpRequest request = newRequest(baseUrl, apiKey, endpoint, COMMAND_READ_TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        return send(baseUrl, request);
+    }
 
-        URL url = new URL(fullUrl);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    /**
+     * Builder for a WebSocket sharing this client's connection settings and threads.
+     */
+    public WebSocket.Builder newWebSocketBuilder() {
+        return httpClient.newWebSocketBuilder()
+                .connectTimeout(CONNECT_TIMEOUT);
+    }
 
+    /**
+     * Test connectivity to a Moonraker instance.
+     *
+     * @param baseUrl Base URL of the printer
+     * @param apiKey  API key (optional)
+     * @return true if connection successful, false otherwise
+     */
+    public boolean testConnection(String baseUrl, String apiKey) {
         try {
-            conn.setRequestMethod("POST");
-            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
-            conn.setReadTimeout(COMMAND_READ_TIMEOUT_MS);
-            conn.setDoOutput(true);
+            byte[] response = getBytes(baseUrl, apiKey, "/server/info");
+            return response.length > 0;
+        } catch (Exception e) {
+            log.debug("Connection test failed for {}: {}", baseUrl, e.getMessage());
+            return false;
+        }
+    }
 
-            if (apiKey != null && !apiKey.isEmpty()) {
-                conn.setRequestProperty("X-Api-Key", apiKey);
-            }
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
 
-            conn.setRequestProperty("Accept", "application/json");
-            conn.setRequestProperty("Content-Length", "0");
-            conn.setRequestProperty("User-Agent", "FabLab-DigitalTwin/1.0");
+    private HttpRequest.Builder newRequest(String baseUrl, String apiKey, String endpoint, Duration timeout) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + endpoint))
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", "gzip")
+                .header("User-Agent", USER_AGENT);
 
-            int status = conn.getResponseCode();
+        if (apiKey != null && !apiKey.isEmpty()) {
+            builder.header("X-Api-Key", apiKey);
+        }
+        return builder;
+    }
 
-            if (status >= 200 && status < 300) {
-                return readResponse(conn.getInputStream());
-            }
+    /**
+     * Send a request once a per-printer permit is available.
+     * Waiting for the permit happens on a virtual thread, never on the caller,
+     * and fails after {@link #PERMIT_TIMEOUT}. The permit is released once the
+     * exchange completes, or right away when the request cannot even be sent.
+     */
+    private CompletableFuture<byte[]> send(String baseUrl, HttpRequest request) {
+        HostPermits host = hostPermits.compute(baseUrl, (url, existing) -> {
+            HostPermits permits = existing != null ? existing : new HostPermits(maxRequestsPerPrinter);
+            permits.users++;
+            return permits;
+        });
 
-            String errorBody = readResponse(conn.getErrorStream());
-            log.warn("HTTP {} from {}: {}", status, fullUrl, errorBody);
-            throw new Exception("HTTP " + status + ": " + errorBody);
-        } finally {
-            conn.disconnect();
+        CompletableFuture<Void> acquired;
+        try {
+            acquired = CompletableFuture.runAsync(() -> acquire(baseUrl, host.permits), executor);
+        } catch (RuntimeException e) {
+            leave(baseUrl, host);
+            throw e;
         }
+        return acquired
+                .thenCompose(ignored -> {
+                    CompletableFuture<HttpResponse<byte[]>> exchange;
+                    try {
+                        exchange = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+                    } catch (RuntimeException | Error e) {
+                        host.permits.release();
+                        throw e;
+                    }
+                    return exchange.whenComplete((response, error) -> host.permits.release());
+                })
+                .whenComplete((response, error) -> leave(baseUrl, host))
+                .thenApply(this::readBody);
     }
 
-    private HttpURLConnection openConnection(String fullUrl, String apiKey) throws Exception {
-        URL url = new URL(fullUrl);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
-        conn.setReadTimeout(READ_TIMEOUT_MS);
-
-        if (apiKey != null && !apiKey.isEmpty()) {
-            conn.setRequestProperty("X-Api-Key", apiKey);
+    private static void acquire(String baseUrl, Semaphore permits) {
+        try {
+            if (!permits.tryAcquire(PERMIT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new CompletionException(new IOException("Too many requests in flight to " + baseUrl));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
         }
+    }
 
-        conn.setRequestProperty("Accept", "application/json");
-        conn.setRequestProperty("User-Agent", "FabLab-DigitalTwin/1.0");
-        return conn;
+    /**
+     * One request of a printer is over: forget the printer once it has none
+     * left, so deleted or re-addressed printers do not stay in the map.
+     */
+    private void leave(String baseUrl, HostPermits host) {
+        hostPermits.computeIfPresent(baseUrl, (url, permits) -> {
+            if (permits != host) {
+                return permits;
+            }
+            return --permits.users == 0 ? null : permits;
+        });
     }
 
     /**
-     * Read response body from input stream.
+     * Check the status code and return the (decompressed) response body.
      */
-    private String readResponse(java.io.InputStream inputStream) throws Exception {
-        if (inputStream == null) {
-            return "";
+    private byte[] readBody(HttpResponse<byte[]> response) {
+        byte[] body;
+        try {
+            body = decode(response);
+        } catch (IOException e) {
+            throw new CompletionException(e);
         }
-        
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-            
-            StringBuilder response = new StringBuilder();
-            String line;
-            
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
-            }
-            
-            return response.toString();
+
+        int status = response.statusCode();
+        if (status >= 200 && status < 300) {
+            return body;
+        }
+
+        String errorBody = asString(body);
+        log.warn("HTTP {} from {}: {}", status, response.uri(), errorBody);
+        throw new CompletionException(new IOException("HTTP " + status + ": " + errorBody));
+    }
+
+    private byte[] decode(HttpResponse<byte[]> response) throws IOException {
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        if (!gzip) {
+            return response.body();
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            return in.readAllBytes();
         }
     }
 
     /**
-     * Test connectivity to a Moonraker instance.
-     *
-     * @param baseUrl Base URL of the printer
-     * @param apiKey  API key (optional)
-     * @return true if connection successful, false otherwise
+     * Wait for an asynchronous call, unwrapping its failure for blocking callers.
+     * The wait is bounded by the permit wait, the request timeout and a margin.
      */
-    public boolean testConnection(String baseUrl, String apiKey) {
+    private byte[] await(CompletableFuture<byte[]> future, Duration requestTimeout) throws Exception {
+        long timeoutMs = PERMIT_TIMEOUT.plus(requestTimeout).plus(AWAIT_MARGIN).toMillis();
         try {
-            String response = get(baseUrl, apiKey, "/server/info");
-            return response != null && !response.isEmpty();
-        } catch (Exception e) {
-            log.debug("Connection test failed for {}: {}", baseUrl, e.getMessage());
-            return false;
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IOException("No response within " + timeoutMs + " ms", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause()
+                    : e.getCause();
+            throw cause instanceof Exception exception ? exception : e;
+        }
+    }
+
+    private String asString(byte[] body) {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Request slots of one printer; {@code users} (guarded by the map's
+     * compute) counts the requests waiting for or holding a slot.
+     */
+    private static final class HostPermits {
+        private final Semaphore permits;
+        private int users;
+
+        private HostPermits(int maxRequests) {
+            this.permits = new Semaphore(maxRequests);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,156 @@
+package com.fablab.backend.printer.connector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Klipper objects available on one printer, as listed by {@code /printer/objects/list}.
+ * Connectors discover it once per printer (and again after a firmware restart)
+ * and only query or subscribe to the objects that actually exist, so missing
+ * sensors cost nothing.
+ * <p>
+ * Optional objects are given a {@link Role}: the chamber sensor and the hotend
+ * fan are found by name, and every other heater, temperature sensor or fan is
+ * reported as an auxiliary value.
+ */
+final class MoonrakerObjectCatalog {
+
+    /**
+     * What the status parser does with an optional object.
+     */
+    enum Role {
+        CHAMBER,
+        HOTEND_FAN,
+        FILAMENT_SENSOR,
+        AUX_TEMPERATURE,
+        AUX_FAN
+    }
+
+    // Objects always read when present, handled by name by the parser
+    private static final List<String> CORE_OBJECTS = MoonrakerStatusParser.STATUS_OBJECTS.stream()
+            .filter(object -> object.indexOf(' ') < 0)
+            .toList();
+
+    /**
+     * Catalog used while discovery is not possible (Klipper not ready, old
+     * Moonraker): the fixed object list, Moonraker leaves unknown ones out.
+     */
+    static final MoonrakerObjectCatalog DEFAULT = of(MoonrakerStatusParser.STATUS_OBJECTS);
+
+    private final List<String> objects;
+    private final Map<String, Role> roles;
+    private final String queryEndpoint;
+
+    private MoonrakerObjectCatalog(List<String> objects, Map<String, Role> roles) {
+        this.objects = objects;
+        this.roles = roles;
+        // e.g. /printer/objects/query?webhooks&print_stats&...&temperature_sensor%20chamber_temp
+        this.queryEndpoint = "/printer/objects/query?" + objects.stream()
+                .map(object -> object.replace(" ", "%20"))
+                .collect(Collectors.joining("&"));
+    }
+
+    /**
+     * Build the catalog from the objects reported by the printer.
+     */
+    static MoonrakerObjectCatalog of(Collection<String> available) {
+        List<String> objects = new ArrayList<>();
+        Map<String, Role> roles = new HashMap<>();
+
+        for (String object : CORE_OBJECTS) {
+            if (available.contains(object)) {
+                objects.add(object);
+            }
+        }
+
+        String chamber = null;
+        String hotendFan = null;
+        String filamentSensor = null;
+        for (String object : available) {
+            String type = typeOf(object);
+            String name = object.substring(type.length()).trim().toLowerCase(Locale.ROOT);
+            switch (type) {
+                case "temperature_sensor", "heater_generic", "temperature_fan" -> {
+                    if (chamber == null && name.contains("chamber")) {
+                        chamber = object;
+                        roles.put(object, Role.CHAMBER);
+                    } else {
+                        roles.put(object, Role.AUX_TEMPERATURE);
+                    }
+                }
+                case "heater_fan" -> {
+                    if (hotendFan == null && name.contains("hotend")) {
+                        hotendFan = object;
+                        roles.put(object, Role.HOTEND_FAN);
+                    } else {
+                        roles.put(object, Role.AUX_FAN);
+                    }
+                }
+                case "controller_fan", "fan_generic" -> roles.put(object, Role.AUX_FAN);
+                case "filament_switch_sensor", "filament_motion_sensor" -> {
+                    if (filamentSensor == null) {
+                        filamentSensor = object;
+                        roles.put(object, Role.FILAMENT_SENSOR);
+                    }
+                }
+                default -> {
+                    // Additional tools: extruder1, extruder2, ...
+                    if (type.matches("extruder\\d+")) {
+                        roles.put(object, Role.AUX_TEMPERATURE);
+                    }
+                }
+            }
+        }
+
+        // A single heater fan is the hotend fan whatever its name
+        if (hotendFan == null) {
+            List<String> heaterFans = available.stream()
+                    .filter(object -> typeOf(object).equals("heater_fan"))
+                    .toList();
+            if (heaterFans.size() == 1) {
+                roles.put(heaterFans.get(0), Role.HOTEND_FAN);
+            }
+        }
+
+        available.stream()
+                .filter(roles::containsKey)
+                .sorted()
+                .forEach(objects::add);
+        return new MoonrakerObjectCatalog(List.copyOf(objects), Collections.unmodifiableMap(roles));
+    }
+
+    /**
+     * Objects to query or subscribe to.
+     */
+    List<String> objects() {
+        return objects;
+    }
+
+    /**
+     * Role of an optional object, or null when the parser should skip it.
+     */
+    Role roleOf(String object) {
+        return roles.get(object);
+    }
+
+    /**
+     * {@code /printer/objects/query} endpoint for every object of the catalog.
+     */
+    String queryEndpoint() {
+        return queryEndpoint;
+    }
+
+    /**
+     * Klipper object type, e.g. "heater_fan" for "heater_fan hotend_fan".
+     */
+    private static String typeOf(String object) {
+        int space = object.indexOf(' ');
+        return space < 0 ? object : object.substring(0, space);
+    }
+}
@@ -5,25 +5,44 @@ import com.fablab.backend.models.printer.Printer;
 import com.fablab.backend.models.printer.PrinterType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Connector implementation for Moonraker/Klipper powered printers.
- * Fetches comprehensive printer data from multiple API endpoints.
+ * Fetches every printer object in a single {@code /printer/objects/query}
+ * round trip, so all fields of a state come from the same instant, and reads
+ * the reply with the streaming {@link MoonrakerStatusParser}.
+ * The objects queried come from the printer's {@link MoonrakerObjectCatalog},
+ * discovered on first contact and again whenever Klipper restarts.
+ * Host statistics ({@code /machine/proc_stats}) change slowly and are only
+ * fetched when due; in between, the last values are reused.
  */
 @Component
 public class MoonrakerPrinterConnector implements PrinterConnector {
 
     private static final Logger log = LoggerFactory.getLogger(MoonrakerPrinterConnector.class);
-    
+
+    private static final String MOTION_QUERY = "/printer/objects/query?motion_report=live_position,live_velocity";
+    private static final long MAX_MOTION_BACKOFF_MS = 5000;
+
     private final MoonrakerClient client;
+    private final long procStatsIntervalMs;
+
+    // Last host statistics per printer, refreshed every procStatsIntervalMs
+    private final Map<UUID, MoonrakerStatusParser.SystemInfo> systemInfo = new ConcurrentHashMap<>();
+    // Available Klipper objects per printer, dropped when Klipper is not ready
+    private final Map<UUID, MoonrakerObjectCatalog> catalogs = new ConcurrentHashMap<>();
 
-    public MoonrakerPrinterConnector(MoonrakerClient client) {
+    public MoonrakerPrinterConnector(MoonrakerClient client,
+            @Value("${moonraker.proc-stats-interval-ms:10000}") long procStatsIntervalMs) {
         this.client = client;
+        this.procStatsIntervalMs = procStatsIntervalMs;
     }
 
     @Override
@@ -39,52 +58,87 @@ public class MoonrakerPrinterConnector implements PrinterConnector {
         
         RawPrinterState.RawPrinterStateBuilder builder = RawPrinterState.builder()
                 .timestamp(timestamp);
+        MoonrakerStatus status = new MoonrakerStatus();
 
         try {
-            // Fetch printer state (high priority - 1Hz)
-            fetchPrinterInfo(baseUrl, apiKey, builder);
-            
-            // Fetch temperatures (high priority - 1-2Hz)
-            fetchExtruderData(baseUrl, apiKey, builder);
-            fetchBedData(baseUrl, apiKey, builder);
-            fetchChamberData(baseUrl, apiKey, builder);
-            
-            // Fetch toolhead position (CRITICAL - needs 5-10Hz in real implementation)
-            fetchToolheadData(baseUrl, apiKey, builder);
-            
-            // Fetch print statistics (medium priority - 1Hz)
-            fetchPrintStats(baseUrl, apiKey, builder);
-            fetchDisplayStatus(baseUrl, apiKey, builder);
-            
-            // Fetch motion report (high priority for smooth animation - 5-10Hz)
-            fetchMotionReport(baseUrl, apiKey, builder);
-            
-            // Fetch fan data (medium priority - 1Hz)
-            fetchFanData(baseUrl, apiKey, builder);
-            
-            // Fetch sensors (medium priority - 1Hz)
-            fetchFilamentSensor(baseUrl, apiKey, builder);
-            
-            // Fetch system info (low priority - 10s intervals)
-            fetchSystemInfo(baseUrl, apiKey, builder);
+            status.catalog = getCatalog(printer, baseUrl, apiKey);
 
-            // Fetch bed mesh (static data - only changes on recalibration)
-            fetchBedMesh(baseUrl, apiKey, builder);
-
-            // Fetch Z-tilt status
-            fetchZTilt(baseUrl, apiKey, builder);
+            // All printer objects in one round trip, parsed in a single pass
+            byte[] response = client.getBytes(baseUrl, apiKey, status.catalog.queryEndpoint());
+            MoonrakerStatusParser.parseQueryResult(response, status);
             
             log.debug("Successfully fetched state from printer {}", printer.getName());
             
         } catch (Exception e) {
-            log.warn("Failed to fetch complete state from printer {}: {}", 
+            log.warn("Failed to fetch state from printer {}: {}", 
                     printer.getName(), e.getMessage());
-            // Return partial state - some data is better than none
+            // Printer unreachable - no state, caller treats it as offline
+            catalogs.remove(printer.getId());
+            return builder.build();
+        }
+
+        // Klipper restarting or in error: its objects may change, discover them again
+        if (!"ready".equals(status.klippyState)) {
+            catalogs.remove(printer.getId());
         }
 
+        // Host statistics (low priority - 10s intervals)
+        status.systemInfo = getSystemInfo(printer, baseUrl, apiKey);
+
+        status.applyTo(builder);
         return builder.build();
     }
 
+    /**
+     * Moonraker answers {@code /server/info} even when Klipper is down,
+     * without touching the printer objects.
+     */
+    @Override
+    public boolean probe(Printer printer) {
+        return client.testConnection(buildBaseUrl(printer), printer.getApiKey());
+    }
+
+    /**
+     * Polls {@code motion_report} alone on a virtual thread: a reply of a few
+     * dozen bytes, cheap enough for 10-20 Hz. Failed polls back off up to
+     * {@link #MAX_MOTION_BACKOFF_MS} without closing the feed.
+     */
+    @Override
+    public MotionFeed openMotionFeed(Printer printer, long intervalMs, MotionListener listener) {
+        String baseUrl = buildBaseUrl(printer);
+        String apiKey = printer.getApiKey();
+        Thread thread = Thread.ofVirtual().name("motion-" + printer.getName()).start(() -> {
+            double[] sample = new double[5];
+            long backoffMs = intervalMs;
+            while (!Thread.currentThread().isInterrupted()) {
+                long started = System.currentTimeMillis();
+                long delay;
+                try {
+                    byte[] response = client.getBytes(baseUrl, apiKey, MOTION_QUERY);
+                    if (MoonrakerStatusParser.parseMotion(response, sample)) {
+                        listener.onMotion(started, sample[0], sample[1], sample[2], sample[3], sample[4]);
+                    }
+                    backoffMs = intervalMs;
+                    delay = intervalMs - (System.currentTimeMillis() - started);
+                } catch (InterruptedException e) {
+                    break;
+                } catch (Exception e) {
+                    log.debug("Motion poll failed for printer {}: {}", printer.getName(), e.getMessage());
+                    backoffMs = Math.min(backoffMs * 2, MAX_MOTION_BACKOFF_MS);
+                    delay = backoffMs;
+                }
+                if (delay > 0) {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+            }
+        });
+        return thread::interrupt;
+    }
+
     @Override
     public void sendCommand(Printer printer, PrinterCommandType type, String payload) {
         String baseUrl = buildBaseUrl(printer);
@@ -105,8 +159,14 @@ public class MoonrakerPrinterConnector implements PrinterConnector {
                 case PRINT_RESUME   -> client.post(baseUrl, apiKey, "/printer/print/resume");
                 case PRINT_CANCEL   -> client.post(baseUrl, apiKey, "/printer/print/cancel");
                 case EMERGENCY_STOP -> client.post(baseUrl, apiKey, "/printer/emergency_stop");
-                case FIRMWARE_RESTART -> client.post(baseUrl, apiKey, "/printer/firmware_restart");
-                case MACHINE_REBOOT -> client.post(baseUrl, apiKey, "/machine/reboot");
+                case FIRMWARE_RESTART -> {
+                    client.post(baseUrl, apiKey, "/printer/firmware_restart");
+                    catalogs.remove(printer.getId());
+                }
+                case MACHINE_REBOOT -> {
+                    client.post(baseUrl, apiKey, "/machine/reboot");
+                    catalogs.remove(printer.getId());
+                }
             }
             log.info("Sent {} command to printer {}{}", type,
                     printer.getName(), payload != null ? " [" + payload + "]" : "");
@@ -121,285 +181,58 @@ public class MoonrakerPrinterConnector implements PrinterConnector {
 
     // ===== PRIVATE HELPER METHODS =====
 
-    private String buildBaseUrl(Printer printer) {
+    String buildBaseUrl(Printer printer) {
         return String.format("http://%s:%d", printer.getIpAddress(), printer.getPort());
     }
 
     /**
-     * Fetch general printer info and state
+     * Objects available on the printer, listed by {@code /printer/objects/list}
+     * on first use. While Klipper cannot answer, the default object set is used
+     * and discovery is retried on the next fetch.
      */
-    private void fetchPrinterInfo(String baseUrl, String apiKey, 
-                                   RawPrinterState.RawPrinterStateBuilder builder) {
-        try {
-            String response = client.get(baseUrl, apiKey, "/printer/info");
-            String state = extract(response, "\"state\"\\s*:\\s*\"([^\"]+)\"");
-            builder.state(state);
-        } catch (Exception e) {
-            log.debug("Could not fetch printer info: {}", e.getMessage());
+    MoonrakerObjectCatalog getCatalog(Printer printer, String baseUrl, String apiKey) {
+        MoonrakerObjectCatalog catalog = catalogs.get(printer.getId());
+        if (catalog != null) {
+            return catalog;
         }
-    }
-
-    /**
-     * Fetch extruder/nozzle temperature data
-     */
-    private void fetchExtruderData(String baseUrl, String apiKey, 
-                                    RawPrinterState.RawPrinterStateBuilder builder) {
         try {
-            String response = client.get(baseUrl, apiKey, "/printer/objects/query?extruder");
-            builder.nozzleTemp(extractDouble(response, "\"temperature\"\\s*:\\s*([0-9.]+)"));
-            builder.targetNozzle(extractDouble(response, "\"target\"\\s*:\\s*([0-9.]+)"));
+            byte[] response = client.getBytes(baseUrl, apiKey, "/printer/objects/list");
+            catalog = MoonrakerObjectCatalog.of(MoonrakerStatusParser.parseObjectList(response));
+            catalogs.put(printer.getId(), catalog);
+            log.info("Discovered {} Klipper objects on printer {}", catalog.objects().size(), printer.getName());
+            return catalog;
         } catch (Exception e) {
-            log.debug("Could not fetch extruder data: {}", e.getMessage());
+            log.debug("Object discovery failed for printer {}: {}", printer.getName(), e.getMessage());
+            return MoonrakerObjectCatalog.DEFAULT;
         }
     }
 
     /**
-     * Fetch heated bed temperature data
+     * Forget the catalog of a printer so that it is discovered again.
      */
-    private void fetchBedData(String baseUrl, String apiKey, 
-                              RawPrinterState.RawPrinterStateBuilder builder) {
-        try {
-            String response = client.get(baseUrl, apiKey, "/printer/objects/query?heater_bed");
-            builder.bedTemp(extractDouble(response, "\"temperature\"\\s*:\\s*([0-9.]+)"));
-            builder.targetBed(extractDouble(response, "\"target\"\\s*:\\s*([0-9.]+)"));
-        } catch (Exception e) {
-            log.debug("Could not fetch bed data: {}", e.getMessage());
-        }
+    void forgetCatalog(UUID printerId) {
+        catalogs.remove(printerId);
     }
 
     /**
-     * Fetch chamber temperature (if available)
+     * Host statistics (CPU, memory, uptime), fetched from
+     * {@code /machine/proc_stats} only when the cached values are stale.
      */
-    private void fetchChamberData(String baseUrl, String apiKey, 
-                                   RawPrinterState.RawPrinterStateBuilder builder) {
-        try {
-            String response = client.get(baseUrl, apiKey, 
-                    "/printer/objects/query?temperature_sensor%20chamber_temp");
-            builder.chamberTemp(extractDouble(response, "\"temperature\"\\s*:\\s*([0-9.]+)"));
-        } catch (Exception e) {
-            // Chamber sensor may not exist - this is normal
-            log.trace("No chamber temperature sensor");
-        }
-    }
-
-    /**
-     * Fetch toolhead position and limits (CRITICAL for digital twin)
-     */
-    private void fetchToolheadData(String baseUrl, String apiKey, 
-                                    RawPrinterState.RawPrinterStateBuilder builder) {
-        try {
-            String response = client.get(baseUrl, apiKey, "/printer/objects/query?toolhead");
-            
-            // Position array: [x, y, z, e]
-            builder.posX(extractDouble(response, "\"position\"\\s*:\\s*\\[([0-9.]+)"));
-            builder.posY(extractDouble(response, "\"position\"\\s*:\\s*\\[[0-9.]+,\\s*([0-9.]+)"));
-            builder.posZ(extractDouble(response, "\"position\"\\s*:\\s*\\[[0-9.]+,\\s*[0-9.]+,\\s*([0-9.]+)"));
-            builder.posE(extractDouble(response, "\"position\"\\s*:\\s*\\[[0-9.]+,\\s*[0-9.]+,\\s*[0-9.]+,\\s*([0-9.]+)"));
-            
-            // Homed axes (string like "xyz")
-            builder.homedAxes(extract(response, "\"homed_axes\"\\s*:\\s*\"([^\"]+)\""));
-            
-            // Velocity and acceleration limits
-            builder.maxVelocity(extractDouble(response, "\"max_velocity\"\\s*:\\s*([0-9.]+)"));
-            builder.maxAccel(extractDouble(response, "\"max_accel\"\\s*:\\s*([0-9.]+)"));
-            
-        } catch (Exception e) {
-            log.debug("Could not fetch toolhead data: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Fetch print statistics (file, state, progress)
-     */
-    private void fetchPrintStats(String baseUrl, String apiKey, 
-                                  RawPrinterState.RawPrinterStateBuilder builder) {
-        try {
-            String response = client.get(baseUrl, apiKey, "/printer/objects/query?print_stats");
-            
-            builder.filename(extract(response, "\"filename\"\\s*:\\s*\"([^\"]+)\""));
-            builder.state(extract(response, "\"state\"\\s*:\\s*\"([^\"]+)\""));
-            
-            // Progress (0.0 to 1.0, convert to percentage)
-            Double progress = extractDouble(response, "\"print_duration\"\\s*:\\s*([0-9.]+)");
-            if (progress != null) {
-                builder.printDuration(progress.longValue());
-            }
-            
-            Double totalDuration = extractDouble(response, "\"total_duration\"\\s*:\\s*([0-9.]+)");
-            if (totalDuration != null) {
-                builder.totalDuration(totalDuration.longValue());
-            }
-            
-            builder.filamentUsed(extractDouble(response, "\"filament_used\"\\s*:\\s*([0-9.]+)"));
-            
-        } catch (Exception e) {
-            log.debug("Could not fetch print stats: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Fetch display progress percentage
-     */
-    private void fetchDisplayStatus(String baseUrl, String apiKey, 
-                                     RawPrinterState.RawPrinterStateBuilder builder) {
-        try {
-            String response = client.get(baseUrl, apiKey, 
-                    "/printer/objects/query?display_status");
-            
-            Double progress = extractDouble(response, "\"progress\"\\s*:\\s*([0-9.]+)");
-            if (progress != null) {
-                builder.displayProgress(progress * 100.0); // Convert to percentage
-                builder.progress(progress * 100.0); // Also set main progress field
-            }
-            
-        } catch (Exception e) {
-            log.debug("Could not fetch display status: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Fetch motion report (live velocity and position for smooth animation)
-     */
-    private void fetchMotionReport(String baseUrl, String apiKey, 
-                                    RawPrinterState.RawPrinterStateBuilder builder) {
-        try {
-            String response = client.get(baseUrl, apiKey, 
-                    "/printer/objects/query?motion_report");
-            
-            // Live position
-            builder.livePositionX(extractDouble(response, 
-                    "\"live_position\"\\s*:\\s*\\[([0-9.]+)"));
-            builder.livePositionY(extractDouble(response, 
-                    "\"live_position\"\\s*:\\s*\\[[0-9.]+,\\s*([0-9.]+)"));
-            builder.livePositionZ(extractDouble(response, 
-                    "\"live_position\"\\s*:\\s*\\[[0-9.]+,\\s*[0-9.]+,\\s*([0-9.]+)"));
-            
-            // Live velocity
-            builder.liveVelocity(extractDouble(response, "\"live_velocity\"\\s*:\\s*([0-9.]+)"));
-            
-        } catch (Exception e) {
-            log.debug("Could not fetch motion report: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Fetch fan data (speeds and RPM feedback)
-     */
-    private void fetchFanData(String baseUrl, String apiKey, 
-                              RawPrinterState.RawPrinterStateBuilder builder) {
-        try {
-            String response = client.get(baseUrl, apiKey, 
-                    "/printer/objects/query?fan_feedback");
-            
-            builder.partFanSpeed(extractDouble(response, "\"speed\"\\s*:\\s*([0-9.]+)"));
-            builder.partFanRPM(extractDouble(response, "\"rpm\"\\s*:\\s*([0-9.]+)"));
-            
-        } catch (Exception e) {
-            log.trace("Could not fetch fan feedback: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Fetch filament sensor state
-     */
-    private void fetchFilamentSensor(String baseUrl, String apiKey, 
-                                      RawPrinterState.RawPrinterStateBuilder builder) {
-        try {
-            String response = client.get(baseUrl, apiKey, 
-                    "/printer/objects/query?filament_switch_sensor%20filament_sensor");
-            
-            String enabled = extract(response, "\"enabled\"\\s*:\\s*(true|false)");
-            String detected = extract(response, "\"filament_detected\"\\s*:\\s*(true|false)");
-            
-            if ("true".equals(enabled) && detected != null) {
-                builder.filamentDetected("true".equals(detected));
-            }
-            
-        } catch (Exception e) {
-            log.trace("Could not fetch filament sensor: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Fetch system information (CPU, memory, uptime)
-     */
-    private void fetchSystemInfo(String baseUrl, String apiKey, 
-                                  RawPrinterState.RawPrinterStateBuilder builder) {
-        try {
-            String response = client.get(baseUrl, apiKey, "/machine/proc_stats");
-            
-            builder.cpuTemp(extractDouble(response, "\"cpu_temp\"\\s*:\\s*([0-9.]+)"));
-            builder.cpuUsage(extract(response, "\"cpu\"\\s*:\\s*([0-9.]+)"));
-            builder.memUsage(extract(response, "\"memory\"\\s*:\\s*\"([^\"]+)\""));
-            
-        } catch (Exception e) {
-            log.trace("Could not fetch system info: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Fetch bed mesh data (probed Z-offset matrix and mesh bounds).
-     * This data is static — it only changes when BED_MESH_CALIBRATE is run.
-     */
-    private void fetchBedMesh(String baseUrl, String apiKey,
-                              RawPrinterState.RawPrinterStateBuilder builder) {
-        try {
-            String response = client.get(baseUrl, apiKey, "/printer/objects/query?bed_mesh");
-
-            builder.bedMeshProfile(extract(response, "\"profile_name\"\\s*:\\s*\"([^\"]+)\""));
-
-            // Extract mesh_min and mesh_max arrays as JSON strings
-            builder.bedMeshMin(extract(response, "\"mesh_min\"\\s*:\\s*(\\[[0-9.,\\s]+\\])"));
-            builder.bedMeshMax(extract(response, "\"mesh_max\"\\s*:\\s*(\\[[0-9.,\\s]+\\])"));
-
-            // Extract probed_matrix — the raw 9x9 Z-offset grid
-            // Match from "probed_matrix": to the closing ]]
-            Matcher m = Pattern.compile("\"probed_matrix\"\\s*:\\s*(\\[\\[.+?\\]\\])").matcher(response);
-            if (m.find()) {
-                builder.bedMeshMatrix(m.group(1));
-            }
-
-        } catch (Exception e) {
-            log.trace("Could not fetch bed mesh: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Fetch Z-tilt adjustment status.
-     */
-    private void fetchZTilt(String baseUrl, String apiKey,
-                            RawPrinterState.RawPrinterStateBuilder builder) {
-        try {
-            String response = client.get(baseUrl, apiKey, "/printer/objects/query?z_tilt");
-            String applied = extract(response, "\"applied\"\\s*:\\s*(true|false)");
-            if (applied != null) {
-                builder.zTiltApplied("true".equals(applied));
+    private MoonrakerStatusParser.SystemInfo getSystemInfo(Printer printer, String baseUrl, String apiKey) {
+        long now = System.currentTimeMillis();
+        MoonrakerStatusParser.SystemInfo info = systemInfo.get(printer.getId());
+
+        if (info == null || now - info.fetchedAt() >= procStatsIntervalMs) {
+            try {
+                byte[] response = client.getBytes(baseUrl, apiKey, "/machine/proc_stats");
+                info = MoonrakerStatusParser.parseProcStats(response, now);
+                if (info != null) {
+                    systemInfo.put(printer.getId(), info);
+                }
+            } catch (Exception e) {
+                log.trace("Could not fetch system info: {}", e.getMessage());
             }
-        } catch (Exception e) {
-            log.trace("Could not fetch z_tilt: {}", e.getMessage());
-        }
-    }
-
-    // ===== REGEX EXTRACTION HELPERS =====
-
-    /**
-     * Extract a string value from JSON using regex
-     */
-    private String extract(String text, String regex) {
-        if (text == null) return null;
-        Matcher m = Pattern.compile(regex).matcher(text);
-        return m.find() ? m.group(1) : null;
-    }
-
-    /**
-     * Extract a double value from JSON using regex
-     */
-    private Double extractDouble(String text, String regex) {
-        try {
-            String result = extract(text, regex);
-            return (result != null) ? Double.parseDouble(result) : null;
-        } catch (NumberFormatException e) {
-            return null;
         }
+        return info;
     }
-}
\ No newline at end of file
+}
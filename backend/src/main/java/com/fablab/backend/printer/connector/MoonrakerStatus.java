@@ -0,0 +1,189 @@
+package com.fablab.backend.printer.connector;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Mutable accumulator for the Klipper objects of a Moonraker printer, filled by
+ * {@link MoonrakerStatusParser}. Numbers are kept as primitives with
+ * {@code NaN} meaning "not reported", so parsing allocates nothing for them.
+ * <p>
+ * The HTTP connector fills a fresh instance per fetch; the WebSocket connector
+ * keeps one per printer and lets each {@code notify_status_update} delta
+ * overwrite only the fields it carries.
+ * <p>
+ * The {@link MoonrakerObjectCatalog} of the printer tells the parser which
+ * optional objects are the chamber sensor, the hotend fan, the filament sensor
+ * or auxiliary heaters and fans.
+ */
+final class MoonrakerStatus {
+
+    // ===== STATE =====
+    String klippyState;      // webhooks.state (ready, startup, shutdown, error)
+    String printState;       // print_stats.state (standby, printing, paused, ...)
+    String filename;
+    double printDuration = Double.NaN;
+    double totalDuration = Double.NaN;
+    double filamentUsed = Double.NaN;
+    double totalLayers = Double.NaN;
+    double currentLayer = Double.NaN;
+    double progress = Double.NaN;    // display_status.progress (0.0 to 1.0)
+
+    // ===== HEATERS =====
+    double nozzleTemp = Double.NaN;
+    double targetNozzle = Double.NaN;
+    double nozzlePow = Double.NaN;
+    double bedTemp = Double.NaN;
+    double targetBed = Double.NaN;
+    double bedPow = Double.NaN;
+    double chamberTemp = Double.NaN;
+
+    // ===== TOOLHEAD & MOTION =====
+    final double[] position = nanVector();       // toolhead.position [x, y, z, e]
+    final double[] livePosition = nanVector();   // motion_report.live_position [x, y, z, e]
+    String homedAxes;
+    double maxVelocity = Double.NaN;
+    double maxAccel = Double.NaN;
+    double liveVelocity = Double.NaN;
+    double liveExtruderVelocity = Double.NaN;
+
+    // ===== FANS & SENSORS =====
+    double fanSpeed = Double.NaN;          // standard "fan" object
+    double fanRpm = Double.NaN;
+    double fanFeedbackSpeed = Double.NaN;  // "fan_feedback" object, preferred when present
+    double fanFeedbackRpm = Double.NaN;
+    double hotendFanSpeed = Double.NaN;
+    Boolean filamentSensorEnabled;
+    Boolean filamentDetected;
+
+    // ===== BED MESH & Z-TILT =====
+    String bedMeshProfile;
+    String bedMeshMin;       // JSON text, stored as is
+    String bedMeshMax;
+    String bedMeshMatrix;
+    Boolean zTiltApplied;
+
+    // ===== DISCOVERED OBJECTS =====
+    MoonrakerObjectCatalog catalog = MoonrakerObjectCatalog.DEFAULT;
+    final Map<String, Double> auxTemperatures = new TreeMap<>();  // extra heaters and sensors, by Klipper object
+    final Map<String, Double> auxFanSpeeds = new TreeMap<>();     // extra fans (0-1), by Klipper object
+
+    // ===== HOST =====
+    MoonrakerStatusParser.SystemInfo systemInfo;
+
+    /**
+     * True once at least one printer object has been read.
+     */
+    boolean reported;
+
+    /**
+     * Forget every printer object (host statistics and catalog are kept).
+     */
+    void clear() {
+        klippyState = null;
+        printState = null;
+        filename = null;
+        printDuration = totalDuration = filamentUsed = Double.NaN;
+        totalLayers = currentLayer = progress = Double.NaN;
+        nozzleTemp = targetNozzle = nozzlePow = Double.NaN;
+        bedTemp = targetBed = bedPow = chamberTemp = Double.NaN;
+        Arrays.fill(position, Double.NaN);
+        Arrays.fill(livePosition, Double.NaN);
+        homedAxes = null;
+        maxVelocity = maxAccel = liveVelocity = liveExtruderVelocity = Double.NaN;
+        fanSpeed = fanRpm = fanFeedbackSpeed = fanFeedbackRpm = hotendFanSpeed = Double.NaN;
+        filamentSensorEnabled = null;
+        filamentDetected = null;
+        bedMeshProfile = bedMeshMin = bedMeshMax = bedMeshMatrix = null;
+        zTiltApplied = null;
+        auxTemperatures.clear();
+        auxFanSpeeds.clear();
+        reported = false;
+    }
+
+    /**
+     * Copy the accumulated values onto a state builder.
+     */
+    void applyTo(RawPrinterState.RawPrinterStateBuilder builder) {
+        // Print state wins over the Klippy host state when available
+        builder.state(printState != null ? printState : klippyState);
+        builder.filename(filename);
+        builder.printDuration(toLong(printDuration));
+        builder.totalDuration(toLong(totalDuration));
+        builder.filamentUsed(box(filamentUsed));
+        builder.totalLayers(toInteger(totalLayers));
+        builder.currentLayer(toInteger(currentLayer));
+        if (!Double.isNaN(progress)) {
+            builder.displayProgress(progress * 100.0); // Convert to percentage
+            builder.progress(progress * 100.0); // Also set main progress field
+        }
+
+        builder.nozzleTemp(box(nozzleTemp));
+        builder.targetNozzle(box(targetNozzle));
+        builder.nozzlePow(box(nozzlePow));
+        builder.bedTemp(box(bedTemp));
+        builder.targetBed(box(targetBed));
+        builder.bedPow(box(bedPow));
+        builder.chamberTemp(box(chamberTemp));
+
+        builder.posX(box(position[0]));
+        builder.posY(box(position[1]));
+        builder.posZ(box(position[2]));
+        builder.posE(box(position[3]));
+        builder.homedAxes(homedAxes);
+        builder.maxVelocity(box(maxVelocity));
+        builder.maxAccel(box(maxAccel));
+
+        builder.livePositionX(box(livePosition[0]));
+        builder.livePositionY(box(livePosition[1]));
+        builder.livePositionZ(box(livePosition[2]));
+        builder.livePositionE(box(livePosition[3]));
+        builder.liveVelocity(box(liveVelocity));
+        builder.liveExtruderVelocity(box(liveExtruderVelocity));
+
+        builder.partFanSpeed(box(Double.isNaN(fanFeedbackSpeed) ? fanSpeed : fanFeedbackSpeed));
+        builder.partFanRPM(box(Double.isNaN(fanFeedbackRpm) ? fanRpm : fanFeedbackRpm));
+        builder.hotendFanSpeed(box(hotendFanSpeed));
+        // Filament sensor state is only meaningful when the sensor is enabled
+        if (Boolean.TRUE.equals(filamentSensorEnabled)) {
+            builder.filamentDetected(filamentDetected);
+        }
+
+        builder.bedMeshProfile(bedMeshProfile);
+        builder.bedMeshMin(bedMeshMin);
+        builder.bedMeshMax(bedMeshMax);
+        builder.bedMeshMatrix(bedMeshMatrix);
+        builder.zTiltApplied(zTiltApplied);
+
+        if (!auxTemperatures.isEmpty()) {
+            builder.auxTemperatures(Collections.unmodifiableMap(new TreeMap<>(auxTemperatures)));
+        }
+        if (!auxFanSpeeds.isEmpty()) {
+            builder.auxFanSpeeds(Collections.unmodifiableMap(new TreeMap<>(auxFanSpeeds)));
+        }
+
+        if (systemInfo != null) {
+            systemInfo.applyTo(builder);
+        }
+    }
+
+    private static double[] nanVector() {
+        double[] vector = new double[4];
+        Arrays.fill(vector, Double.NaN);
+        return vector;
+    }
+
+    private static Double box(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    private static Long toLong(double value) {
+        return Double.isNaN(value) ? null : (long) value;
+    }
+
+    private static Integer toInteger(double value) {
+        return Double.isNaN(value) ? null : (int) value;
+    }
+}
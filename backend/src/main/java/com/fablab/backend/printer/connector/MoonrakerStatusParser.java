@@ -0,0 +1,662 @@
+package com.fablab.backend.printer.connector;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Single-pass streaming parser for Moonraker replies and notifications.
+ * Walks the JSON tokens once and writes the fields it knows straight into a
+ * {@link MoonrakerStatus}; everything else is skipped without being materialized.
+ * Shared by the HTTP and WebSocket Moonraker connectors.
+ */
+final class MoonrakerStatusParser {
+
+    /**
+     * Klipper objects read by {@link #parseStatus} when the printer's object
+     * catalog is unknown. Objects missing on a printer (chamber sensor,
+     * filament sensor, ...) are simply absent from Moonraker's reply.
+     */
+    static final List<String> STATUS_OBJECTS = List.of(
+            "webhooks",
+            "print_stats",
+            "display_status",
+            "extruder",
+            "heater_bed",
+            "temperature_sensor chamber_temp",
+            "toolhead",
+            "motion_report",
+            "fan",
+            "fan_feedback",
+            "filament_switch_sensor filament_sensor",
+            "bed_mesh",
+            "z_tilt");
+
+    /**
+     * Kind of WebSocket message handled by {@link #parseMessage}.
+     */
+    enum MessageKind {
+        /** Subscription reply or status delta: the printer objects changed */
+        STATUS,
+        /** Host statistics notification */
+        PROC_STATS,
+        KLIPPY_READY,
+        KLIPPY_DISCONNECTED,
+        OTHER
+    }
+
+    private static final JsonFactory factory = new JsonFactory();
+
+    private MoonrakerStatusParser() {
+    }
+
+    /**
+     * Parse the reply of {@code /printer/objects/query}:
+     * {@code {"result": {"eventtime": ..., "status": {...}}}}.
+     */
+    static void parseQueryResult(byte[] json, MoonrakerStatus target) throws IOException {
+        try (JsonParser p = factory.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected Moonraker reply");
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken token = p.nextToken();
+                if ("result".equals(field) && token == JsonToken.START_OBJECT) {
+                    parseResult(p, target);
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+    }
+
+    /**
+     * Parse the reply of {@code /printer/objects/list}:
+     * {@code {"result": {"objects": ["webhooks", "extruder", ...]}}}.
+     */
+    static List<String> parseObjectList(byte[] json) throws IOException {
+        try (JsonParser p = factory.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected Moonraker reply");
+            }
+            List<String> objects = new ArrayList<>();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken token = p.nextToken();
+                if ("result".equals(field) && token == JsonToken.START_OBJECT) {
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = p.currentName();
+                        JsonToken value = p.nextToken();
+                        if ("objects".equals(name) && value == JsonToken.START_ARRAY) {
+                            JsonToken element;
+                            while ((element = p.nextToken()) != JsonToken.END_ARRAY) {
+                                String object = text(p, element);
+                                if (object != null) {
+                                    objects.add(object);
+                                }
+                            }
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return objects;
+        }
+    }
+
+    /**
+     * Parse the reply of {@code /machine/proc_stats}.
+     */
+    static SystemInfo parseProcStats(byte[] json, long fetchedAt) throws IOException {
+        try (JsonParser p = factory.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected Moonraker reply");
+            }
+            SystemInfo info = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken token = p.nextToken();
+                if ("result".equals(field) && token == JsonToken.START_OBJECT) {
+                    info = parseSystemInfo(p, fetchedAt);
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return info;
+        }
+    }
+
+    /**
+     * Parse the reply of {@code /printer/objects/query?motion_report=live_position,live_velocity}
+     * into {@code [x, y, z, e, velocity]}. Values missing from the reply are NaN.
+     *
+     * @return false when the reply carries no {@code motion_report}
+     */
+    static boolean parseMotion(byte[] json, double[] target) throws IOException {
+        Arrays.fill(target, Double.NaN);
+        try (JsonParser p = factory.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected Moonraker reply");
+            }
+            boolean found = false;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken token = p.nextToken();
+                if (("result".equals(field) || "status".equals(field)) && token == JsonToken.START_OBJECT) {
+                    // descend: result -> status -> motion_report
+                    continue;
+                }
+                if ("motion_report".equals(field) && token == JsonToken.START_OBJECT) {
+                    found = true;
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = p.currentName();
+                        JsonToken value = p.nextToken();
+                        switch (name) {
+                            case "live_position" -> vector(p, value, target);
+                            case "live_velocity" -> target[4] = number(p, value);
+                            default -> p.skipChildren();
+                        }
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Parse one WebSocket JSON-RPC message into the subscription status.
+     * The only request we send is the subscription, so any reply carrying a
+     * {@code result.status} is its full initial status and replaces the current one.
+     * Moonraker writes {@code method} before {@code params} in its notifications.
+     */
+    static MessageKind parseMessage(String json, MoonrakerStatus target) throws IOException {
+        try (JsonParser p = factory.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                return MessageKind.OTHER;
+            }
+            MessageKind kind = MessageKind.OTHER;
+            String method = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken token = p.nextToken();
+                switch (field) {
+                    case "method" -> {
+                        method = p.getText();
+                        kind = switch (method) {
+                            case "notify_status_update" -> MessageKind.STATUS;
+                            case "notify_proc_stat_update" -> MessageKind.PROC_STATS;
+                            case "notify_klippy_ready" -> MessageKind.KLIPPY_READY;
+                            case "notify_klippy_disconnected" -> MessageKind.KLIPPY_DISCONNECTED;
+                            default -> MessageKind.OTHER;
+                        };
+                    }
+                    case "params" -> {
+                        if (token == JsonToken.START_ARRAY && kind == MessageKind.STATUS) {
+                            parseFirstParam(p, target, false);
+                        } else if (token == JsonToken.START_ARRAY && kind == MessageKind.PROC_STATS) {
+                            parseFirstParam(p, target, true);
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                    case "result" -> {
+                        if (token == JsonToken.START_OBJECT && method == null) {
+                            target.clear();
+                            parseResult(p, target);
+                            kind = MessageKind.STATUS;
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+            return kind;
+        }
+    }
+
+    // ===== MESSAGE STRUCTURE =====
+
+    /**
+     * Inside {@code result}: find {@code status}, skip {@code eventtime}.
+     */
+    private static void parseResult(JsonParser p, MoonrakerStatus target) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            if ("status".equals(field) && token == JsonToken.START_OBJECT) {
+                parseStatus(p, target);
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Notification params are {@code [payload, eventtime]}: read the payload, skip the rest.
+     */
+    private static void parseFirstParam(JsonParser p, MoonrakerStatus target, boolean procStats) throws IOException {
+        JsonToken token = p.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            if (procStats) {
+                target.systemInfo = parseSystemInfo(p, System.currentTimeMillis());
+            } else {
+                parseStatus(p, target);
+            }
+        } else if (token == JsonToken.END_ARRAY) {
+            return;
+        } else {
+            p.skipChildren();
+        }
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            p.skipChildren();
+        }
+    }
+
+    /**
+     * Parse the Klipper object map ({@code {"extruder": {...}, "toolhead": {...}}}).
+     * Only the fields present are written, so a delta leaves the others untouched.
+     * Optional objects are dispatched according to their role in the catalog.
+     */
+    private static void parseStatus(JsonParser p, MoonrakerStatus s) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String object = p.currentName();
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                continue;
+            }
+            s.reported = true;
+            switch (object) {
+                case "webhooks" -> parseWebhooks(p, s);
+                case "print_stats" -> parsePrintStats(p, s);
+                case "display_status" -> parseDisplayStatus(p, s);
+                case "extruder" -> parseExtruder(p, s);
+                case "heater_bed" -> parseHeaterBed(p, s);
+                case "toolhead" -> parseToolhead(p, s);
+                case "motion_report" -> parseMotionReport(p, s);
+                case "fan" -> parseFan(p, s);
+                case "fan_feedback" -> parseFanFeedback(p, s);
+                case "bed_mesh" -> parseBedMesh(p, s);
+                case "z_tilt" -> parseZTilt(p, s);
+                default -> parseOptional(p, s, object);
+            }
+        }
+    }
+
+    private static void parseOptional(JsonParser p, MoonrakerStatus s, String object) throws IOException {
+        MoonrakerObjectCatalog.Role role = s.catalog.roleOf(object);
+        if (role == null) {
+            p.skipChildren();
+            return;
+        }
+        switch (role) {
+            case CHAMBER -> {
+                double temperature = readField(p, "temperature");
+                if (!Double.isNaN(temperature)) {
+                    s.chamberTemp = temperature;
+                }
+            }
+            case HOTEND_FAN -> {
+                double speed = readField(p, "speed");
+                if (!Double.isNaN(speed)) {
+                    s.hotendFanSpeed = speed;
+                }
+            }
+            case FILAMENT_SENSOR -> parseFilamentSensor(p, s);
+            case AUX_TEMPERATURE -> {
+                double temperature = readField(p, "temperature");
+                if (!Double.isNaN(temperature)) {
+                    s.auxTemperatures.put(object, temperature);
+                }
+            }
+            case AUX_FAN -> {
+                double speed = readField(p, "speed");
+                if (!Double.isNaN(speed)) {
+                    s.auxFanSpeeds.put(object, speed);
+                }
+            }
+        }
+    }
+
+    // ===== KLIPPER OBJECTS =====
+
+    private static void parseWebhooks(JsonParser p, MoonrakerStatus s) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            if ("state".equals(field)) {
+                s.klippyState = text(p, token);
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private static void parsePrintStats(JsonParser p, MoonrakerStatus s) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            switch (field) {
+                case "state" -> s.printState = text(p, token);
+                case "filename" -> s.filename = text(p, token);
+                case "print_duration" -> s.printDuration = number(p, token);
+                case "total_duration" -> s.totalDuration = number(p, token);
+                case "filament_used" -> s.filamentUsed = number(p, token);
+                case "info" -> parsePrintInfo(p, token, s);
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    private static void parsePrintInfo(JsonParser p, JsonToken token, MoonrakerStatus s) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "total_layer" -> s.totalLayers = number(p, value);
+                case "current_layer" -> s.currentLayer = number(p, value);
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    private static void parseDisplayStatus(JsonParser p, MoonrakerStatus s) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            if ("progress".equals(field)) {
+                s.progress = number(p, token);
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private static void parseExtruder(JsonParser p, MoonrakerStatus s) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            switch (field) {
+                case "temperature" -> s.nozzleTemp = number(p, token);
+                case "target" -> s.targetNozzle = number(p, token);
+                case "power" -> s.nozzlePow = number(p, token);
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    private static void parseHeaterBed(JsonParser p, MoonrakerStatus s) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            switch (field) {
+                case "temperature" -> s.bedTemp = number(p, token);
+                case "target" -> s.targetBed = number(p, token);
+                case "power" -> s.bedPow = number(p, token);
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Read one numeric field of the current object, NaN if absent (delta without it)
+     */
+    private static double readField(JsonParser p, String wanted) throws IOException {
+        double result = Double.NaN;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            if (wanted.equals(field)) {
+                result = number(p, token);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return result;
+    }
+
+    private static void parseToolhead(JsonParser p, MoonrakerStatus s) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            switch (field) {
+                case "position" -> vector(p, token, s.position);
+                case "homed_axes" -> s.homedAxes = text(p, token);
+                case "max_velocity" -> s.maxVelocity = number(p, token);
+                case "max_accel" -> s.maxAccel = number(p, token);
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    private static void parseMotionReport(JsonParser p, MoonrakerStatus s) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            switch (field) {
+                case "live_position" -> vector(p, token, s.livePosition);
+                case "live_velocity" -> s.liveVelocity = number(p, token);
+                case "live_extruder_velocity" -> s.liveExtruderVelocity = number(p, token);
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    private static void parseFan(JsonParser p, MoonrakerStatus s) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            switch (field) {
+                case "speed" -> s.fanSpeed = number(p, token);
+                case "rpm" -> s.fanRpm = number(p, token);
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    private static void parseFanFeedback(JsonParser p, MoonrakerStatus s) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            switch (field) {
+                case "speed" -> s.fanFeedbackSpeed = number(p, token);
+                case "rpm" -> s.fanFeedbackRpm = number(p, token);
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    private static void parseFilamentSensor(JsonParser p, MoonrakerStatus s) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            switch (field) {
+                case "enabled" -> s.filamentSensorEnabled = bool(token);
+                case "filament_detected" -> s.filamentDetected = bool(token);
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    private static void parseBedMesh(JsonParser p, MoonrakerStatus s) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            switch (field) {
+                case "profile_name" -> s.bedMeshProfile = text(p, token);
+                case "mesh_min" -> s.bedMeshMin = json(p, token);
+                case "mesh_max" -> s.bedMeshMax = json(p, token);
+                case "probed_matrix" -> s.bedMeshMatrix = json(p, token);
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    private static void parseZTilt(JsonParser p, MoonrakerStatus s) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            if ("applied".equals(field)) {
+                s.zTiltApplied = bool(token);
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Host statistics from {@code /machine/proc_stats} (or {@code notify_proc_stat_update}).
+     */
+    private static SystemInfo parseSystemInfo(JsonParser p, long fetchedAt) throws IOException {
+        double cpuTemp = Double.NaN;
+        double cpuUsage = Double.NaN;
+        double memUsed = Double.NaN;
+        double memTotal = Double.NaN;
+        double uptime = Double.NaN;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            switch (field) {
+                case "cpu_temp" -> cpuTemp = number(p, token);
+                case "system_uptime" -> uptime = number(p, token);
+                case "system_cpu_usage" -> {
+                    if (token != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        break;
+                    }
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String cpu = p.currentName();
+                        JsonToken value = p.nextToken();
+                        if ("cpu".equals(cpu)) {
+                            cpuUsage = number(p, value);
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                }
+                case "system_memory" -> {
+                    if (token != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        break;
+                    }
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String memory = p.currentName();
+                        JsonToken value = p.nextToken();
+                        switch (memory) {
+                            case "used" -> memUsed = number(p, value);
+                            case "total" -> memTotal = number(p, value);
+                            default -> p.skipChildren();
+                        }
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+        return new SystemInfo(
+                fetchedAt,
+                Double.isNaN(cpuTemp) ? null : cpuTemp,
+                Double.isNaN(cpuUsage) ? null : String.valueOf(cpuUsage),
+                memUsed >= 0 && memTotal > 0
+                        ? String.format(Locale.ROOT, "%.1f", memUsed * 100.0 / memTotal) : null,
+                Double.isNaN(uptime) ? null : (long) uptime);
+    }
+
+    /**
+     * Host statistics, cached by connectors between two refreshes.
+     */
+    record SystemInfo(long fetchedAt, Double cpuTemp, String cpuUsage,
+                      String memUsage, Long systemUptime) {
+
+        void applyTo(RawPrinterState.RawPrinterStateBuilder builder) {
+            builder.cpuTemp(cpuTemp);
+            builder.cpuUsage(cpuUsage);
+            builder.memUsage(memUsage);
+            builder.systemUptime(systemUptime);
+        }
+    }
+
+    // ===== VALUE HELPERS =====
+
+    /**
+     * Current value as a number, NaN if null or not a number
+     */
+    private static double number(JsonParser p, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_FLOAT || token == JsonToken.VALUE_NUMBER_INT) {
+            return p.getDoubleValue();
+        }
+        p.skipChildren();
+        return Double.NaN;
+    }
+
+    /**
+     * Current value as a non-empty string, or null
+     */
+    private static String text(JsonParser p, JsonToken token) throws IOException {
+        if (token != JsonToken.VALUE_STRING) {
+            p.skipChildren();
+            return null;
+        }
+        String value = p.getText();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Boolean bool(JsonToken token) {
+        if (token == JsonToken.VALUE_TRUE) {
+            return Boolean.TRUE;
+        }
+        return token == JsonToken.VALUE_FALSE ? Boolean.FALSE : null;
+    }
+
+    /**
+     * Read a numeric array such as [x, y, z, e] into the target vector
+     */
+    private static void vector(JsonParser p, JsonToken token, double[] target) throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return;
+        }
+        int index = 0;
+        JsonToken element;
+        while ((element = p.nextToken()) != JsonToken.END_ARRAY) {
+            double value = number(p, element);
+            if (index < target.length) {
+                target[index] = value;
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Copy an array value back to its JSON text (bed mesh fields are stored as JSON)
+     */
+    private static String json(JsonParser p, JsonToken token) throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return null;
+        }
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            generator.copyCurrentStructure(p);
+        }
+        String value = out.toString();
+        return "[]".equals(value) ? null : value;
+    }
+}
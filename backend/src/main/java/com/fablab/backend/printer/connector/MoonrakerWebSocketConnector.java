@@ -0,0 +1,318 @@
+package com.fablab.backend.printer.connector;
+
+import com.fablab.backend.dto.PrinterCommandType;
+import com.fablab.backend.models.printer.Printer;
+import com.fablab.backend.models.printer.PrinterType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.WebSocket;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Push-based connector for Moonraker/Klipper printers.
+ * Keeps one long-lived WebSocket JSON-RPC connection per printer, subscribes to
+ * the objects of the printer's {@link MoonrakerObjectCatalog} (shared with the
+ * HTTP connector) with {@code printer.objects.subscribe} and applies the
+ * {@code notify_status_update} deltas to the current state as they are parsed.
+ * <p>
+ * Every change is published as a {@link PrinterStateEvent} as soon as it arrives
+ * and ingested from there (board, listeners, storage); {@link #fetchState} only
+ * returns the latest merged state and costs no network call. The subscription
+ * of a deleted printer is closed by {@link #release}.
+ * Lost connections are reopened with exponential backoff. Commands go through
+ * the HTTP API like for {@link MoonrakerPrinterConnector}.
+ */
+@Component
+public class MoonrakerWebSocketConnector implements PrinterConnector {
+
+    private static final Logger log = LoggerFactory.getLogger(MoonrakerWebSocketConnector.class);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final int SUBSCRIBE_REQUEST_ID = 1;
+    private static final long MIN_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 60000;
+
+    private final MoonrakerClient client;
+    private final MoonrakerPrinterConnector httpConnector;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ScheduledExecutorService reconnectScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "moonraker-ws-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Object discovery is a blocking HTTP call, kept off the WebSocket listener callbacks
+    private final ExecutorService discoveryExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<UUID, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    public MoonrakerWebSocketConnector(MoonrakerClient client,
+                                       MoonrakerPrinterConnector httpConnector,
+                                       ApplicationEventPublisher eventPublisher) {
+        this.client = client;
+        this.httpConnector = httpConnector;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public PrinterType getType() {
+        return PrinterType.MOONRAKER_WS;
+    }
+
+    /**
+     * Returns the latest state pushed by the printer. The first call for a printer
+     * opens its subscription; until it is established the state is empty (offline).
+     */
+    @Override
+    public RawPrinterState fetchState(Printer printer) {
+        URI uri = buildWebSocketUri(printer);
+        Subscription subscription = subscriptions.compute(printer.getId(), (id, existing) -> {
+            if (existing != null && existing.uri.equals(uri)) {
+                return existing;
+            }
+            // First call, or the printer address changed
+            if (existing != null) {
+                existing.close();
+            }
+            Subscription created = new Subscription(printer, uri);
+            created.connect();
+            return created;
+        });
+        return subscription.latest;
+    }
+
+    @Override
+    public boolean pushesState() {
+        return true;
+    }
+
+    @Override
+    public void release(UUID printerId) {
+        Subscription subscription = subscriptions.remove(printerId);
+        if (subscription != null) {
+            subscription.close();
+            httpConnector.forgetCatalog(printerId);
+            log.info("WebSocket subscription closed for deleted printer {}", subscription.printerName);
+        }
+    }
+
+    @Override
+    public boolean probe(Printer printer) {
+        return httpConnector.probe(printer);
+    }
+
+    /**
+     * Klipper's subscription only notifies on change and is throttled by
+     * Moonraker, so fixed-rate motion goes through the HTTP poller.
+     */
+    @Override
+    public MotionFeed openMotionFeed(Printer printer, long intervalMs, MotionListener listener) {
+        return httpConnector.openMotionFeed(printer, intervalMs, listener);
+    }
+
+    @Override
+    public void sendCommand(Printer printer, PrinterCommandType type, String payload) {
+        httpConnector.sendCommand(printer, type, payload);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reconnectScheduler.shutdownNow();
+        discoveryExecutor.shutdownNow();
+        subscriptions.values().forEach(Subscription::close);
+        subscriptions.clear();
+    }
+
+    private URI buildWebSocketUri(Printer printer) {
+        return URI.create(String.format("ws://%s:%d/websocket", printer.getIpAddress(), printer.getPort()));
+    }
+
+    private static RawPrinterState emptyState() {
+        return RawPrinterState.builder().timestamp(Instant.now()).build();
+    }
+
+    /**
+     * One printer subscription: WebSocket connection, merged Klipper status
+     * and reconnection state. Messages are delivered one at a time by the
+     * WebSocket (see {@link WebSocket#request}), the lock only guards
+     * against a concurrent reconnect or subscription. Nothing blocking runs
+     * under it: the object discovery preceding a subscription runs on the
+     * discovery executor.
+     */
+    private final class Subscription implements WebSocket.Listener {
+
+        private final Printer printer;
+        private final UUID printerId;
+        private final String printerName;
+        private final String apiKey;
+        private final URI uri;
+
+        private final MoonrakerStatus status = new MoonrakerStatus();
+        private final StringBuilder partialMessage = new StringBuilder();
+        private long backoffMs = MIN_BACKOFF_MS;
+
+        private volatile WebSocket socket;
+        private volatile boolean closed;
+        private volatile RawPrinterState latest = emptyState();
+
+        private Subscription(Printer printer, URI uri) {
+            this.printer = printer;
+            this.printerId = printer.getId();
+            this.printerName = printer.getName();
+            this.apiKey = printer.getApiKey();
+            this.uri = uri;
+        }
+
+        private void connect() {
+            if (closed) {
+                return;
+            }
+            WebSocket.Builder builder = client.newWebSocketBuilder();
+            if (apiKey != null && !apiKey.isEmpty()) {
+                builder.header("X-Api-Key", apiKey);
+            }
+            builder.buildAsync(uri, this).whenComplete((webSocket, error) -> {
+                if (error != null) {
+                    log.debug("WebSocket connection to printer {} failed: {}", printerName, error.getMessage());
+                    scheduleReconnect();
+                }
+            });
+        }
+
+        private void close() {
+            closed = true;
+            WebSocket current = socket;
+            if (current != null) {
+                current.abort();
+            }
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            socket = webSocket;
+            backoffMs = MIN_BACKOFF_MS;
+            log.info("WebSocket subscription opened for printer {}", printerName);
+            subscribeLater(webSocket);
+            webSocket.request(1);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partialMessage.append(data);
+            if (last) {
+                String message = partialMessage.toString();
+                partialMessage.setLength(0);
+                try {
+                    handleMessage(message);
+                } catch (Exception e) {
+                    log.debug("Ignoring malformed message from printer {}: {}", printerName, e.getMessage());
+                }
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            log.info("WebSocket subscription closed for printer {} ({} {})", printerName, statusCode, reason);
+            scheduleReconnect();
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            log.warn("WebSocket error for printer {}: {}", printerName, error.getMessage());
+            scheduleReconnect();
+        }
+
+        private void subscribeLater(WebSocket webSocket) {
+            if (!discoveryExecutor.isShutdown()) {
+                discoveryExecutor.execute(() -> subscribe(webSocket));
+            }
+        }
+
+        /**
+         * Subscribe to all objects of the printer (null = every field of the object).
+         * The catalog is discovered first if the printer has none yet.
+         */
+        private void subscribe(WebSocket webSocket) {
+            MoonrakerObjectCatalog catalog = httpConnector.getCatalog(
+                    printer, httpConnector.buildBaseUrl(printer), apiKey);
+            synchronized (this) {
+                // Connection lost or replaced during discovery
+                if (closed || socket != webSocket) {
+                    return;
+                }
+                status.catalog = catalog;
+            }
+
+            ObjectNode request = mapper.createObjectNode()
+                    .put("jsonrpc", "2.0")
+                    .put("method", "printer.objects.subscribe")
+                    .put("id", SUBSCRIBE_REQUEST_ID);
+            ObjectNode objects = request.putObject("params").putObject("objects");
+            catalog.objects().forEach(objects::putNull);
+            webSocket.sendText(request.toString(), true);
+        }
+
+        private synchronized void handleMessage(String message) throws Exception {
+            switch (MoonrakerStatusParser.parseMessage(message, status)) {
+                // Subscription reply (full status) or notify_status_update delta
+                case STATUS -> publish();
+                case KLIPPY_READY -> {
+                    // Klipper restarted: its configuration, hence its objects, may have changed
+                    httpConnector.forgetCatalog(printerId);
+                    WebSocket current = socket;
+                    if (current != null) {
+                        subscribeLater(current);
+                    }
+                }
+                case KLIPPY_DISCONNECTED -> {
+                    // Klipper went away: subscription is lost until it is ready again
+                    httpConnector.forgetCatalog(printerId);
+                    status.clear();
+                    publish();
+                }
+                default -> { /* host statistics are kept for the next state, other notifications ignored */ }
+            }
+        }
+
+        private void publish() {
+            RawPrinterState.RawPrinterStateBuilder builder = RawPrinterState.builder()
+                    .timestamp(Instant.now());
+            if (status.reported) {
+                status.applyTo(builder);
+            }
+            RawPrinterState state = builder.build();
+            latest = state;
+            eventPublisher.publishEvent(new PrinterStateEvent(printer, state));
+        }
+
+        private synchronized void scheduleReconnect() {
+            socket = null;
+            status.clear();
+            latest = emptyState();
+            if (closed || reconnectScheduler.isShutdown()) {
+                return;
+            }
+            long delay = backoffMs;
+            backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            log.debug("Reconnecting to printer {} in {} ms", printerName, delay);
+            reconnectScheduler.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.fablab.backend.printer.connector;
+
+/**
+ * Live toolhead motion sampling opened by {@link PrinterConnector#openMotionFeed}.
+ * Samples are only pushed to the listener, never stored as snapshots.
+ */
+public interface MotionFeed extends AutoCloseable {
+
+    /**
+     * Stop sampling. Idempotent.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,19 @@
+package com.fablab.backend.printer.connector;
+
+/**
+ * Receives live toolhead samples from a {@link MotionFeed}.
+ * Called on the feed thread; implementations must return quickly.
+ */
+@FunctionalInterface
+public interface MotionListener {
+
+    /**
+     * @param timestampMillis sampling time
+     * @param x live X position in mm, NaN if unknown
+     * @param y live Y position in mm, NaN if unknown
+     * @param z live Z position in mm, NaN if unknown
+     * @param e live extruder position in mm, NaN if unknown
+     * @param velocity live toolhead velocity in mm/s, NaN if unknown
+     */
+    void onMotion(long timestampMillis, double x, double y, double z, double e, double velocity);
+}
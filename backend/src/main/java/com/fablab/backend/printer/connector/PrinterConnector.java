@@ -4,6 +4,8 @@ import com.fablab.backend.dto.PrinterCommandType;
 import com.fablab.backend.models.printer.Printer;
 import com.fablab.backend.models.printer.PrinterType;
 
+import java.util.UUID;
+
 /**
  * Contract for printer integrations so that connectors can be swapped per printer type.
  */
@@ -13,6 +15,32 @@ public interface PrinterConnector {
 
     RawPrinterState fetchState(Printer printer);
 
+    /**
+     * Cheap reachability check used while a printer is considered down.
+     * Defaults to a full fetch; connectors should override it with a lighter call.
+     *
+     * @return true if the printer answered
+     */
+    default boolean probe(Printer printer) {
+        return fetchState(printer).getState() != null;
+    }
+
+    /**
+     * Whether the connector publishes every state change itself as a
+     * {@link PrinterStateEvent}. The poller then leaves the states it fetches
+     * to that path and only keeps the printer status up to date.
+     */
+    default boolean pushesState() {
+        return false;
+    }
+
+    /**
+     * Release what the connector keeps for a printer that no longer exists
+     * (connections, caches). Does nothing by default.
+     */
+    default void release(UUID printerId) {
+    }
+
     /**
      * Send a command to the printer.
      *
@@ -21,4 +49,15 @@ public interface PrinterConnector {
      * @param payload optional data — the G-code string for GCODE type, null for action types
      */
     void sendCommand(Printer printer, PrinterCommandType type, String payload);
-}
\ No newline at end of file
+
+    /**
+     * Start sampling the live toolhead position of a printer at a fixed rate.
+     *
+     * @param intervalMs time between two samples
+     * @param listener   receives each sample on the feed thread
+     * @throws UnsupportedOperationException when the connector cannot sample motion
+     */
+    default MotionFeed openMotionFeed(Printer printer, long intervalMs, MotionListener listener) {
+        throw new UnsupportedOperationException("Live motion is not supported for " + getType());
+    }
+}
@@ -0,0 +1,19 @@
+package com.fablab.backend.printer.connector;
+
+import java.util.UUID;
+
+import com.fablab.backend.models.printer.Printer;
+
+/**
+ * Application event published by push-based connectors each time a printer
+ * reports a state change, without waiting for the next poll.
+ *
+ * @param printer the printer that changed
+ * @param state   the full printer state after applying the change
+ */
+public record PrinterStateEvent(Printer printer, RawPrinterState state) {
+
+    public UUID printerId() {
+        return printer.getId();
+    }
+}
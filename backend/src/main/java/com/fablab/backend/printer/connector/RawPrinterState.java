@@ -4,6 +4,7 @@ import lombok.Builder;
 import lombok.Value;
 
 import java.time.Instant;
+import java.util.Map;
 
 /**
  * Raw state returned by a connector before persistence or normalization.
@@ -23,6 +24,10 @@ public class RawPrinterState {
     Double targetNozzle;
     Double chamberTemp;  // NEW - chamber temperature (if available)
     
+    // ===== HEATER POWER =====
+    Double bedPow;       // heater_bed PWM duty (0-1)
+    Double nozzlePow;    // extruder PWM duty (0-1)
+    
     // ===== TOOLHEAD POSITION (Critical for real-time animation) =====
     Double posX;         // NEW - X position
     Double posY;         // NEW - Y position
@@ -39,6 +44,8 @@ public class RawPrinterState {
     Double livePositionX; // NEW - live position from motion_report
     Double livePositionY; // NEW
     Double livePositionZ; // NEW
+    Double livePositionE; // extruder live position
+    Double liveExtruderVelocity; // extruder live velocity
     
     // ===== PRINT STATS =====
     String state;        // printing, paused, standby, complete, error
@@ -58,6 +65,10 @@ public class RawPrinterState {
     Double partFanRPM;      // NEW - part fan actual RPM
     Double hotendFanSpeed;  // NEW - hotend fan speed
     
+    // ===== DISCOVERED HEATERS & FANS =====
+    Map<String, Double> auxTemperatures; // extra heaters/sensors by object name (e.g. "extruder1")
+    Map<String, Double> auxFanSpeeds;    // extra fans (0-1) by object name (e.g. "controller_fan mcu")
+    
     // ===== SENSORS =====
     Boolean filamentDetected; // NEW - filament sensor state
     
@@ -0,0 +1,36 @@
+package com.fablab.backend.printer.history;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Keyset position in a printer history stream: the {@code (ts, id)} of the
+ * last row received. Written as {@code <ISO-8601 ts>_<id>}, for example
+ * {@code 2025-03-01T10:15:30.123456Z_48213}.
+ *
+ * @param ts timestamp of the last row
+ * @param id id of the last row
+ */
+public record HistoryCursor(Instant ts, long id) {
+
+    /**
+     * @throws IllegalArgumentException when the value is not a valid cursor
+     */
+    public static HistoryCursor parse(String value) {
+        int separator = value.lastIndexOf('_');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + value);
+        }
+        try {
+            return new HistoryCursor(Instant.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ts + "_" + id;
+    }
+}
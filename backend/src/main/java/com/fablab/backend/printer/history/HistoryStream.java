@@ -0,0 +1,169 @@
+package com.fablab.backend.printer.history;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import com.fablab.backend.repositories.printer.PrinterTelemetryRepository;
+import com.fablab.backend.repositories.printer.SnapshotColumns;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Printer history written as NDJSON while rows come out of a database cursor.
+ * <p>
+ * One JSON object per line, oldest first. Every line carries {@code id} and
+ * {@code ts}, followed by the projected fields. To resume, pass the last line
+ * as {@code after=<ts>_<id>} (see {@link HistoryCursor}). Nothing is buffered
+ * beyond the cursor fetch and the generator buffer, whatever the range.
+ */
+public final class HistoryStream {
+
+    private static final JsonFactory factory = new JsonFactory();
+
+    // Rows written between two flushes to the client
+    private static final int FLUSH_EVERY = 500;
+
+    /** Left out when no projection is given: large or redundant with the request */
+    private static final Set<String> HEAVY_COLUMNS = Set.of("printer_id", "raw_payload", "bed_mesh_matrix");
+
+    private final PrinterTelemetryRepository repository;
+    private final UUID printerId;
+    private final Instant from;
+    private final Instant to;
+    private final HistoryCursor after;
+    private final int limit;
+    private final List<String> columns;
+    private final String[] fieldNames;
+    private final int[] sqlTypes;
+    private final boolean[] json;
+
+    /**
+     * @param fields comma-separated projection (camelCase or column names), null for all but the heavy columns
+     * @param limit maximum number of rows, 0 for no limit
+     * @throws IllegalArgumentException for an unknown field
+     */
+    public HistoryStream(PrinterTelemetryRepository repository, UUID printerId, Instant from, Instant to,
+                         String fields, HistoryCursor after, int limit) {
+        this.repository = repository;
+        this.printerId = printerId;
+        this.from = from;
+        this.to = to;
+        this.after = after;
+        this.limit = limit;
+        this.columns = resolveColumns(fields);
+        this.fieldNames = new String[columns.size()];
+        this.sqlTypes = new int[columns.size()];
+        this.json = new boolean[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            fieldNames[i] = SnapshotColumns.fieldName(columns.get(i));
+            sqlTypes[i] = SnapshotColumns.sqlTypeOf(columns.get(i));
+            json[i] = SnapshotColumns.isJson(columns.get(i));
+        }
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            // The servlet container owns the response stream
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            int[] rows = {0};
+            repository.streamRows(printerId, from, to, after != null ? after.ts() : null,
+                    after != null ? after.id() : 0, columns, limit, rs -> {
+                        try {
+                            writeRow(generator, rs);
+                            if (++rows[0] % FLUSH_EVERY == 0) {
+                                generator.flush();
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeRow(JsonGenerator generator, ResultSet rs) throws IOException, SQLException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", rs.getLong(1));
+        generator.writeStringField("ts", rs.getTimestamp(2).toInstant().toString());
+        for (int i = 0; i < fieldNames.length; i++) {
+            int index = i + 3;
+            generator.writeFieldName(fieldNames[i]);
+            switch (sqlTypes[i]) {
+                case Types.DOUBLE -> {
+                    double value = rs.getDouble(index);
+                    if (rs.wasNull()) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeNumber(value);
+                    }
+                }
+                case Types.INTEGER, Types.BIGINT -> {
+                    long value = rs.getLong(index);
+                    if (rs.wasNull()) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeNumber(value);
+                    }
+                }
+                case Types.BOOLEAN -> {
+                    boolean value = rs.getBoolean(index);
+                    if (rs.wasNull()) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeBoolean(value);
+                    }
+                }
+                default -> {
+                    String value = rs.getString(index);
+                    if (value == null) {
+                        generator.writeNull();
+                    } else if (json[i]) {
+                        generator.writeRawValue(value);
+                    } else {
+                        generator.writeString(value);
+                    }
+                }
+            }
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static List<String> resolveColumns(String fields) {
+        Set<String> columns = new LinkedHashSet<>();
+        if (fields == null || fields.isBlank()) {
+            for (String column : SnapshotColumns.columnNames()) {
+                if (!HEAVY_COLUMNS.contains(column)) {
+                    columns.add(column);
+                }
+            }
+        } else {
+            for (String field : fields.split(",")) {
+                String name = field.trim();
+                if (name.isEmpty() || name.equals("id")) {
+                    continue;
+                }
+                String column = SnapshotColumns.columnOf(name);
+                if (column == null) {
+                    throw new IllegalArgumentException("Unknown field: " + name);
+                }
+                columns.add(column);
+            }
+        }
+        // id and ts are always written first
+        columns.remove("ts");
+        return new ArrayList<>(columns);
+    }
+}
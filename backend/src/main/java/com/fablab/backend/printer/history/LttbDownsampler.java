@@ -0,0 +1,196 @@
+package com.fablab.backend.printer.history;
+
+import java.util.Arrays;
+
+/**
+ * Streaming Largest-Triangle-Three-Buckets downsampling of one metric.
+ * <p>
+ * The window is cut into {@code maxPoints - 2} equal time buckets; the first
+ * and last points are always kept and each bucket keeps the point forming the
+ * largest triangle with the previously kept point and the average of the next
+ * bucket, so peaks such as temperature overshoots survive.
+ * <p>
+ * The points are read twice, in time order both times: {@link #scan} first,
+ * which only sums each bucket to know its average, then {@link #add}, which
+ * keeps the best candidate of the current bucket. Memory is a few primitive
+ * arrays of {@code maxPoints} entries, whatever the number of points in the
+ * window, and the output never exceeds {@code maxPoints}.
+ */
+public final class LttbDownsampler {
+
+    private final long origin;
+    private final double bucketWidth;
+    private final int buckets;
+
+    // First pass: sums per bucket, then average of the next non-empty bucket
+    private final double[] nextX;
+    private final double[] nextY;
+    private final int[] counts;
+    private boolean scanning;
+    private boolean scanStarted;
+    private boolean scanHolding;
+    private long scanX;
+    private double scanY;
+
+    private final long[] outX;
+    private final double[] outY;
+    private int outCount;
+
+    // Second pass: best point of the current bucket
+    private int bucket = -1;
+    private long bestX;
+    private double bestY;
+    private double bestArea;
+
+    private boolean holding;
+    private long heldX;
+    private double heldY;
+
+    /**
+     * @param from start of the window (epoch millis)
+     * @param to end of the window (epoch millis)
+     * @param maxPoints maximum number of points kept, at least 3
+     */
+    public LttbDownsampler(long from, long to, int maxPoints) {
+        if (maxPoints < 3) {
+            throw new IllegalArgumentException("maxPoints must be at least 3");
+        }
+        this.origin = from;
+        this.buckets = maxPoints - 2;
+        this.bucketWidth = Math.max(1.0, (double) (to - from) / buckets);
+        this.nextX = new double[buckets];
+        this.nextY = new double[buckets];
+        this.counts = new int[buckets];
+        this.outX = new long[maxPoints];
+        this.outY = new double[maxPoints];
+    }
+
+    /**
+     * First pass: add the next point to its bucket average; NaN values are skipped.
+     */
+    public void scan(long x, double y) {
+        if (Double.isNaN(y)) {
+            return;
+        }
+        scanning = true;
+        // Like in the second pass, the first and last points belong to no bucket
+        if (!scanStarted) {
+            scanStarted = true;
+            return;
+        }
+        if (scanHolding) {
+            int index = bucketOf(scanX);
+            nextX[index] += scanX - origin;
+            nextY[index] += scanY;
+            counts[index]++;
+        }
+        scanX = x;
+        scanY = y;
+        scanHolding = true;
+    }
+
+    /**
+     * Second pass: add the next point; NaN values (missing readings) are skipped.
+     */
+    public void add(long x, double y) {
+        if (Double.isNaN(y)) {
+            return;
+        }
+        if (scanning) {
+            averageNextBuckets();
+        }
+        if (outCount == 0 && !holding) {
+            emit(x, y);
+            return;
+        }
+        // The newest point is held back: it is the last one until another arrives
+        if (holding) {
+            consider(heldX, heldY);
+        }
+        heldX = x;
+        heldY = y;
+        holding = true;
+    }
+
+    /**
+     * Keep the point of the last bucket and the last point.
+     */
+    public void finish() {
+        if (bucket >= 0) {
+            emit(bestX, bestY);
+            bucket = -1;
+        }
+        if (holding) {
+            emit(heldX, heldY);
+            holding = false;
+        }
+    }
+
+    public int size() {
+        return outCount;
+    }
+
+    /**
+     * Kept timestamps (epoch millis), valid after {@link #finish()}.
+     */
+    public long[] timestamps() {
+        return Arrays.copyOf(outX, outCount);
+    }
+
+    /**
+     * Kept values, valid after {@link #finish()}.
+     */
+    public double[] values() {
+        return Arrays.copyOf(outY, outCount);
+    }
+
+    private int bucketOf(long x) {
+        return (int) Math.min(buckets - 1, Math.max(0, (long) ((x - origin) / bucketWidth)));
+    }
+
+    /**
+     * Turn the bucket sums of the first pass into, for each bucket, the
+     * average of the next non-empty one; the last point follows the last bucket.
+     */
+    private void averageNextBuckets() {
+        scanning = false;
+        double followingX = scanX - origin;
+        double followingY = scanY;
+        for (int i = buckets - 1; i >= 0; i--) {
+            double sumX = nextX[i];
+            double sumY = nextY[i];
+            int count = counts[i];
+            nextX[i] = followingX;
+            nextY[i] = followingY;
+            if (count > 0) {
+                followingX = sumX / count;
+                followingY = sumY / count;
+            }
+        }
+    }
+
+    private void consider(long x, double y) {
+        int index = bucketOf(x);
+        if (index != bucket) {
+            if (bucket >= 0) {
+                emit(bestX, bestY);
+            }
+            bucket = index;
+            bestArea = -1;
+        }
+        double ax = outX[outCount - 1] - origin;
+        double ay = outY[outCount - 1];
+        double area = Math.abs((ax - nextX[index]) * (y - ay) - (ax - (x - origin)) * (nextY[index] - ay));
+        if (area > bestArea) {
+            bestArea = area;
+            bestX = x;
+            bestY = y;
+        }
+    }
+
+    private void emit(long x, double y) {
+        outX[outCount] = x;
+        outY[outCount] = y;
+        outCount++;
+    }
+}
@@ -0,0 +1,13 @@
+package com.fablab.backend.printer.ingest;
+
+/**
+ * What the snapshot writer does when its queue is full.
+ */
+public enum OverflowPolicy {
+    /** Wait for room: back-pressure reaches the caller (the poller). */
+    BLOCK,
+    /** Discard the oldest queued snapshot to make room for the new one. */
+    DROP_OLDEST,
+    /** Append the snapshot to a spill file on disk, replayed once the queue drains. */
+    SPILL
+}
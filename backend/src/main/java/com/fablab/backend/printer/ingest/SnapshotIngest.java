@@ -0,0 +1,147 @@
+package com.fablab.backend.printer.ingest;
+
+import java.time.Instant;
+import java.util.Map;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.fablab.backend.models.printer.Printer;
+import com.fablab.backend.models.printer.PrinterSnapshot;
+import com.fablab.backend.printer.board.PrinterStateBoard;
+import com.fablab.backend.printer.connector.PrinterStateEvent;
+import com.fablab.backend.printer.connector.RawPrinterState;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Entry point of printer states into the backend, whatever their source:
+ * polled by {@link com.fablab.backend.printer.polling.PrinterPollingService},
+ * pushed by a connector as a {@link PrinterStateEvent}, or fetched live for a
+ * request. A state is mapped to a full snapshot, published on the
+ * {@link PrinterStateBoard} (hence to its listeners) and handed to the
+ * {@link SnapshotWriter}.
+ */
+@Component
+public class SnapshotIngest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final PrinterStateBoard stateBoard;
+    private final SnapshotWriter snapshotWriter;
+
+    public SnapshotIngest(PrinterStateBoard stateBoard, SnapshotWriter snapshotWriter) {
+        this.stateBoard = stateBoard;
+        this.snapshotWriter = snapshotWriter;
+    }
+
+    /**
+     * Publish the snapshot of a state on the board and queue it for storage.
+     */
+    public PrinterSnapshot ingest(Printer printer, RawPrinterState state) {
+        PrinterSnapshot snapshot = toSnapshot(printer, state);
+        stateBoard.publishSnapshot(printer.getId(), snapshot);
+        snapshotWriter.enqueue(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * States pushed by a connector, ingested as they arrive. An empty state
+     * (connection lost, Klipper down) carries nothing to store; the poller
+     * reports the printer offline.
+     */
+    @EventListener
+    public void onStateEvent(PrinterStateEvent event) {
+        if (event.state().getState() != null) {
+            ingest(event.printer(), event.state());
+        }
+    }
+
+    /**
+     * Snapshot holding every field of a state.
+     */
+    public static PrinterSnapshot toSnapshot(Printer printer, RawPrinterState state) {
+        return PrinterSnapshot.builder()
+                .printer(printer)
+                .timestamp(state.getTimestamp() != null ? state.getTimestamp() : Instant.now())
+                // Temperatures
+                .bedTemp(state.getBedTemp())
+                .targetBed(state.getTargetBed())
+                .nozzleTemp(state.getNozzleTemp())
+                .targetNozzle(state.getTargetNozzle())
+                .chamberTemp(state.getChamberTemp())
+                // Heater power
+                .bedPow(state.getBedPow())
+                .nozzlePow(state.getNozzlePow())
+                // Position
+                .posX(state.getPosX())
+                .posY(state.getPosY())
+                .posZ(state.getPosZ())
+                .posE(state.getPosE())
+                .zHeight(state.getPosZ()) // Legacy field
+                // Motion
+                .homedAxes(state.getHomedAxes())
+                .maxVelocity(state.getMaxVelocity())
+                .maxAccel(state.getMaxAccel())
+                .liveVelocity(state.getLiveVelocity())
+                .livePositionX(state.getLivePositionX())
+                .livePositionY(state.getLivePositionY())
+                .livePositionZ(state.getLivePositionZ())
+                .livePositionE(state.getLivePositionE())
+                .liveExtruderVelocity(state.getLiveExtruderVelocity())
+                // Print stats
+                .state(state.getState())
+                .filename(state.getFilename())
+                .progress(state.getProgress())
+                .totalLayers(state.getTotalLayers())
+                .currentLayer(state.getCurrentLayer())
+                .printDuration(state.getPrintDuration())
+                .totalDuration(state.getTotalDuration())
+                .filamentUsed(state.getFilamentUsed())
+                .displayProgress(state.getDisplayProgress())
+                // Fans & sensors
+                .partFanSpeed(state.getPartFanSpeed())
+                .partFanRPM(state.getPartFanRPM())
+                .hotendFanSpeed(state.getHotendFanSpeed())
+                .auxSensors(auxSensors(state))
+                .filamentDetected(state.getFilamentDetected())
+                // System
+                .cpuTemp(state.getCpuTemp())
+                .cpuUsage(state.getCpuUsage())
+                .memUsage(state.getMemUsage())
+                .systemUptime(state.getSystemUptime())
+                // Bed mesh & tilt
+                .bedMeshProfile(state.getBedMeshProfile())
+                .bedMeshMin(state.getBedMeshMin())
+                .bedMeshMax(state.getBedMeshMax())
+                .bedMeshMatrix(state.getBedMeshMatrix())
+                .zTiltApplied(state.getZTiltApplied())
+                // Other
+                .rawPayload(state.getRawPayload())
+                .build();
+    }
+
+    /**
+     * Discovered heaters, sensors and fans as {@code {"temperatures": {...}, "fans": {...}}},
+     * null when the printer has none.
+     */
+    private static String auxSensors(RawPrinterState state) {
+        Map<String, Double> temperatures = state.getAuxTemperatures();
+        Map<String, Double> fans = state.getAuxFanSpeeds();
+        boolean hasTemperatures = temperatures != null && !temperatures.isEmpty();
+        boolean hasFans = fans != null && !fans.isEmpty();
+        if (!hasTemperatures && !hasFans) {
+            return null;
+        }
+        ObjectNode json = mapper.createObjectNode();
+        if (hasTemperatures) {
+            ObjectNode node = json.putObject("temperatures");
+            temperatures.forEach(node::put);
+        }
+        if (hasFans) {
+            ObjectNode node = json.putObject("fans");
+            fans.forEach(node::put);
+        }
+        return json.toString();
+    }
+}
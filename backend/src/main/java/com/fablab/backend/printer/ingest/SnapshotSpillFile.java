@@ -0,0 +1,156 @@
+package com.fablab.backend.printer.ingest;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fablab.backend.repositories.printer.SnapshotColumns;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Overflow storage of the snapshot writer: one JSON array per line.
+ * Rows are appended to {@code spill.ndjson}; to replay, the file is first
+ * renamed to {@code replay-<time>.ndjson} so new rows can keep coming in,
+ * and each replay file is deleted once all its rows are written. When a
+ * replay is interrupted by a database error, the file is rewritten with only
+ * the rows not written yet, so accepted batches are not sent twice. Only a
+ * crash in the middle of a replay can write some spilled rows again.
+ */
+final class SnapshotSpillFile {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotSpillFile.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Path directory;
+    private final Path current;
+    private BufferedWriter writer;
+
+    SnapshotSpillFile(Path directory) {
+        this.directory = directory;
+        this.current = directory.resolve("spill.ndjson");
+    }
+
+    synchronized void append(Object[] row) throws IOException {
+        if (writer == null) {
+            Files.createDirectories(directory);
+            writer = Files.newBufferedWriter(current, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        writer.write(mapper.writeValueAsString(SnapshotColumns.toJson(row)));
+        writer.newLine();
+        writer.flush();
+    }
+
+    /**
+     * Close the current file and hand back every file waiting to be replayed, oldest first.
+     */
+    synchronized List<Path> rotate() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        // Also picks up a file left by a previous run
+        if (Files.exists(current)) {
+            Path replay = directory.resolve("replay-" + System.currentTimeMillis() + ".ndjson");
+            Files.move(current, replay, StandardCopyOption.ATOMIC_MOVE);
+        }
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("replay-")
+                            && file.getFileName().toString().endsWith(".ndjson"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * True if rows are waiting on disk (current or replay files).
+     */
+    synchronized boolean hasPending() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.anyMatch(file -> file.getFileName().toString().endsWith(".ndjson"));
+        }
+    }
+
+    /**
+     * Read a replay file back in batches; the file is deleted once every batch was accepted.
+     * If the sink fails, the file keeps the rows the sink left in the batch and the unread lines.
+     */
+    static void replay(Path file, int batchSize, BatchSink sink) throws Exception {
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    batch.add(SnapshotColumns.fromJson(mapper.readValue(line, Object[].class)));
+                } catch (IOException | RuntimeException e) {
+                    // Truncated last line after a crash
+                    log.warn("Skipping unreadable spilled snapshot in {}: {}", file.getFileName(), e.getMessage());
+                }
+                if (batch.size() >= batchSize) {
+                    flush(file, reader, batch, sink);
+                }
+            }
+            if (!batch.isEmpty()) {
+                flush(file, reader, batch, sink);
+            }
+        }
+        Files.delete(file);
+    }
+
+    private static void flush(Path file, BufferedReader reader, List<Object[]> batch, BatchSink sink) throws Exception {
+        try {
+            sink.write(batch);
+            batch.clear();
+        } catch (Exception e) {
+            keepUnwritten(file, batch, reader);
+            throw e;
+        }
+    }
+
+    /**
+     * Replace the replay file with the rows of the failed batch followed by the unread lines.
+     */
+    private static void keepUnwritten(Path file, List<Object[]> batch, BufferedReader reader) throws IOException {
+        Path rewritten = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(rewritten, StandardCharsets.UTF_8)) {
+            for (Object[] row : batch) {
+                out.write(mapper.writeValueAsString(SnapshotColumns.toJson(row)));
+                out.newLine();
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                out.write(line);
+                out.newLine();
+            }
+        }
+        Files.move(rewritten, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes a batch of rows; when it fails, the rows left in the list are the ones not written.
+     */
+    @FunctionalInterface
+    interface BatchSink {
+        void write(List<Object[]> rows) throws Exception;
+    }
+}
@@ -0,0 +1,308 @@
+package com.fablab.backend.printer.ingest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import com.fablab.backend.models.printer.PrinterSnapshot;
+import com.fablab.backend.repositories.DataAccessErrors;
+import com.fablab.backend.repositories.printer.PrinterTelemetryRepository;
+import com.fablab.backend.repositories.printer.SnapshotColumns;
+
+/**
+ * Asynchronous ingest stage for printer snapshots.
+ * <p>
+ * Callers only enqueue: a snapshot is turned into a plain row and put in a
+ * bounded queue, so polling never waits on the database. A single writer
+ * thread drains the queue and inserts rows into TimescaleDB with multi-row
+ * {@code INSERT ... VALUES (...), (...)} statements, flushing when a batch is
+ * full or when the oldest queued row has waited {@code flush-interval-ms}.
+ * <p>
+ * When the queue is full the {@link OverflowPolicy} applies. If the database
+ * is unreachable (connection or other transient error), the writer keeps its
+ * batch and waits a growing delay before the next attempt; the queue then
+ * fills up and the overflow policy takes over. Any other error would fail
+ * again on retry: the batch is then written row by row and the rows that
+ * still fail are dropped and counted as rejected. On shutdown the queue is
+ * drained; rows that still cannot be written are spilled to disk when the
+ * SPILL policy is active.
+ */
+@Component
+public class SnapshotWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotWriter.class);
+    private static final long MAX_RETRY_DELAY_MS = 30000;
+
+    private final PrinterTelemetryRepository telemetryRepository;
+    private final BlockingQueue<Object[]> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long shutdownTimeoutMs;
+    private final OverflowPolicy overflowPolicy;
+    private final SnapshotSpillFile spillFile;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public SnapshotWriter(
+            PrinterTelemetryRepository telemetryRepository,
+            @Value("${printer.ingest.queue-capacity:10000}") int queueCapacity,
+            @Value("${printer.ingest.batch-size:500}") int batchSize,
+            @Value("${printer.ingest.flush-interval-ms:1000}") long flushIntervalMs,
+            @Value("${printer.ingest.overflow-policy:DROP_OLDEST}") OverflowPolicy overflowPolicy,
+            @Value("${printer.ingest.spill-dir:${java.io.tmpdir}/fablab-snapshot-spill}") String spillDir,
+            @Value("${printer.ingest.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+        this.telemetryRepository = telemetryRepository;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = flushIntervalMs;
+        this.overflowPolicy = overflowPolicy;
+        this.spillFile = new SnapshotSpillFile(Path.of(spillDir));
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+
+        this.writerThread = new Thread(this::run, "snapshot-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queue a snapshot for insertion. Returns immediately unless the
+     * queue is full and the overflow policy is BLOCK.
+     */
+    public void enqueue(PrinterSnapshot snapshot) {
+        Object[] row = SnapshotColumns.toRow(snapshot);
+        if (queue.offer(row)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    queue.put(row);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(row)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                log.debug("Snapshot queue full, dropped oldest ({} so far)", dropped.get());
+            }
+            case SPILL -> spill(row);
+        }
+    }
+
+    /**
+     * Rows waiting in memory.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Rows refused by the database (not retried).
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getSpilledCount() {
+        return spilled.get();
+    }
+
+    /**
+     * Stop the writer thread once it has drained the queue,
+     * waiting for it up to the shutdown timeout.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive() || !queue.isEmpty()) {
+            log.warn("Snapshot writer stopped with {} snapshots still queued", queue.size());
+        }
+        log.info("Snapshot writer stopped: {} written, {} dropped, {} rejected, {} spilled",
+                written.get(), dropped.get(), rejected.get(), spilled.get());
+    }
+
+    // ===== WRITER THREAD =====
+
+    private void run() {
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        long batchDeadline = 0;
+        long retryDelayMs = 0;
+        long retryAt = 0;
+
+        while (running) {
+            try {
+                long now = System.currentTimeMillis();
+                if (batch.size() < batchSize) {
+                    long wait = batch.isEmpty()
+                            ? Math.max(flushIntervalMs, retryAt - now)
+                            : Math.max(batchDeadline, retryAt) - now;
+                    Object[] row = queue.poll(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+                    if (row != null) {
+                        if (batch.isEmpty()) {
+                            batchDeadline = System.currentTimeMillis() + flushIntervalMs;
+                        }
+                        batch.add(row);
+                        queue.drainTo(batch, batchSize - batch.size());
+                    }
+                } else if (retryAt > now) {
+                    // Full batch during a backoff: rows arriving meanwhile wait in the queue
+                    Thread.sleep(retryAt - now);
+                }
+
+                now = System.currentTimeMillis();
+                if (now < retryAt) {
+                    continue;
+                }
+                if (batch.size() >= batchSize || (!batch.isEmpty() && now >= batchDeadline)) {
+                    writeBatch(batch);
+                    retryDelayMs = 0;
+                } else if (batch.isEmpty() && queue.isEmpty()) {
+                    replaySpill();
+                    retryDelayMs = 0;
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested: leave the loop and drain below
+            } catch (Exception e) {
+                retryDelayMs = Math.min(Math.max(retryDelayMs * 2, 1000), MAX_RETRY_DELAY_MS);
+                retryAt = System.currentTimeMillis() + retryDelayMs;
+                log.warn("Snapshot batch of {} rows failed, retrying in {} ms: {}",
+                        batch.size(), retryDelayMs, e.getMessage());
+            }
+        }
+        drainOnShutdown(batch);
+    }
+
+    /**
+     * Final flush: everything queued is written, or spilled if the database refuses it.
+     */
+    private void drainOnShutdown(List<Object[]> batch) {
+        // Clear the shutdown interrupt so the connection pool still hands out connections
+        Thread.interrupted();
+        queue.drainTo(batch);
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            writeBatch(batch);
+        } catch (Exception e) {
+            if (overflowPolicy == OverflowPolicy.SPILL) {
+                log.warn("Final snapshot flush failed, spilling {} rows: {}", batch.size(), e.getMessage());
+                batch.forEach(this::spill);
+            } else {
+                log.error("Final snapshot flush failed, {} snapshots lost: {}", batch.size(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Write a batch and clear it. Rows the database rejects are written one
+     * by one and the refused ones dropped. On a transient error the batch
+     * keeps exactly the rows not written yet, for the next attempt.
+     */
+    private void writeBatch(List<Object[]> rows) {
+        try {
+            write(rows);
+        } catch (RuntimeException e) {
+            if (DataAccessErrors.isTransient(e)) {
+                throw e;
+            }
+            log.warn("Snapshot batch of {} rows rejected, writing it row by row: {}", rows.size(), e.getMessage());
+            writeRowByRow(rows);
+        }
+        rows.clear();
+    }
+
+    /**
+     * Written and refused rows leave the batch; a transient error stops the
+     * walk and is rethrown, so the remaining rows are retried later.
+     */
+    private void writeRowByRow(List<Object[]> rows) {
+        int handled = 0;
+        int refused = 0;
+        try {
+            for (Object[] row : rows) {
+                try {
+                    write(List.<Object[]>of(row));
+                } catch (RuntimeException e) {
+                    if (DataAccessErrors.isTransient(e)) {
+                        throw e;
+                    }
+                    refused++;
+                    rejected.incrementAndGet();
+                    log.debug("Snapshot row rejected: {}", e.getMessage());
+                }
+                handled++;
+            }
+        } finally {
+            rows.subList(0, handled).clear();
+            if (refused > 0) {
+                log.warn("Dropped {} snapshots rejected by the database, {} rejected so far",
+                        refused, rejected.get());
+            }
+        }
+    }
+
+    private void write(List<Object[]> rows) {
+        telemetryRepository.insertBatch(rows);
+        written.addAndGet(rows.size());
+    }
+
+    private void spill(Object[] row) {
+        try {
+            spillFile.append(row);
+            spilled.incrementAndGet();
+        } catch (Exception e) {
+            dropped.incrementAndGet();
+            log.warn("Could not spill snapshot to disk: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Replay spilled rows once the in-memory queue is empty.
+     */
+    private void replaySpill() throws Exception {
+        if (overflowPolicy != OverflowPolicy.SPILL || !spillFile.hasPending()) {
+            return;
+        }
+        for (Path file : spillFile.rotate()) {
+            log.info("Replaying spilled snapshots from {}", file.getFileName());
+            SnapshotSpillFile.replay(file, batchSize, this::writeBatch);
+        }
+    }
+}
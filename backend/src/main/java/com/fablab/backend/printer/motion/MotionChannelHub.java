@@ -0,0 +1,235 @@
+package com.fablab.backend.printer.motion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import jakarta.annotation.PreDestroy;
+
+import com.fablab.backend.models.printer.Printer;
+import com.fablab.backend.printer.connector.ConnectorRegistry;
+import com.fablab.backend.printer.connector.MotionFeed;
+import com.fablab.backend.repositories.printer.PrinterRepository;
+
+/**
+ * Live toolhead motion pushed to WebSocket clients as compact binary frames
+ * (see {@link MotionFrameEncoder}).
+ * <p>
+ * One channel per printer: the connector's motion feed is opened when the
+ * first client joins and closed when the last one leaves, so printers nobody
+ * watches are not sampled. Samples go straight to the clients and are never
+ * stored.
+ * <p>
+ * Each session keeps only the latest sample: a client that cannot keep up
+ * skips positions instead of lagging behind. Its virtual thread encodes the
+ * sample into a pooled buffer, sends it and returns the buffer to the pool.
+ */
+@Component
+public class MotionChannelHub {
+
+    private static final Logger log = LoggerFactory.getLogger(MotionChannelHub.class);
+
+    /** 10 to 20 Hz: smooth enough for a viewer, light on the printer host */
+    private static final long MIN_INTERVAL_MS = 50;
+    private static final long MAX_INTERVAL_MS = 100;
+
+    private record Sample(long timestamp, double x, double y, double z, double e, double velocity) {
+    }
+
+    private final PrinterRepository printerRepository;
+    private final ConnectorRegistry connectorRegistry;
+    private final long intervalMs;
+    private final int keyframeEvery;
+
+    private final Map<UUID, Channel> channels = new ConcurrentHashMap<>();
+    private final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+
+    public MotionChannelHub(
+            PrinterRepository printerRepository,
+            ConnectorRegistry connectorRegistry,
+            @Value("${printer.motion.interval-ms:50}") long intervalMs,
+            @Value("${printer.motion.keyframe-every:20}") int keyframeEvery) {
+        this.printerRepository = printerRepository;
+        this.connectorRegistry = connectorRegistry;
+        this.intervalMs = Math.max(MIN_INTERVAL_MS, Math.min(MAX_INTERVAL_MS, intervalMs));
+        this.keyframeEvery = keyframeEvery;
+    }
+
+    /**
+     * Add a WebSocket session to the motion channel of a printer.
+     *
+     * @throws IllegalArgumentException when the printer does not exist
+     * @throws UnsupportedOperationException when its connector cannot sample motion
+     */
+    public synchronized MotionSession join(UUID printerId, WebSocketSession session) {
+        Channel channel = channels.get(printerId);
+        if (channel == null) {
+            Printer printer = printerRepository.findById(printerId)
+                    .orElseThrow(() -> new IllegalArgumentException("Printer not found: " + printerId));
+            channel = new Channel(printerId);
+            channel.feed = connectorRegistry.resolve(printer.getType())
+                    .openMotionFeed(printer, intervalMs, channel::publish);
+            channels.put(printerId, channel);
+            log.debug("Motion feed opened for printer {}", printer.getName());
+        }
+        MotionSession motionSession = new MotionSession(channel, session);
+        channel.sessions.add(motionSession);
+        motionSession.start();
+        return motionSession;
+    }
+
+    /**
+     * Remove a session; the printer's feed stops with its last session.
+     */
+    public synchronized void leave(MotionSession motionSession) {
+        motionSession.stop();
+        Channel channel = motionSession.channel;
+        channel.sessions.remove(motionSession);
+        if (channel.sessions.isEmpty() && channels.remove(channel.printerId, channel)) {
+            channel.feed.close();
+            log.debug("Motion feed closed for printer {}", channel.printerId);
+        }
+    }
+
+    public int getSessionCount() {
+        int count = 0;
+        for (Channel channel : channels.values()) {
+            count += channel.sessions.size();
+        }
+        return count;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        for (Channel channel : channels.values()) {
+            channel.feed.close();
+            for (MotionSession motionSession : channel.sessions) {
+                motionSession.stop();
+                try {
+                    motionSession.session.close(CloseStatus.GOING_AWAY);
+                } catch (IOException e) {
+                    // already gone
+                }
+            }
+        }
+        channels.clear();
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(MotionFrameEncoder.KEYFRAME_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        bufferPool.offer(buffer);
+    }
+
+    /**
+     * Sessions watching one printer and the feed sampling it.
+     */
+    private static final class Channel {
+        private final UUID printerId;
+        private final List<MotionSession> sessions = new CopyOnWriteArrayList<>();
+        private MotionFeed feed;
+
+        private Channel(UUID printerId) {
+            this.printerId = printerId;
+        }
+
+        /**
+         * Called on the feed thread: hand the sample to every session without blocking.
+         */
+        private void publish(long timestamp, double x, double y, double z, double e, double velocity) {
+            Sample sample = new Sample(timestamp, x, y, z, e, velocity);
+            for (MotionSession motionSession : sessions) {
+                motionSession.offer(sample);
+            }
+        }
+    }
+
+    /**
+     * One WebSocket client: latest-sample mailbox, frame encoder and writer thread.
+     */
+    public final class MotionSession {
+        private final Channel channel;
+        private final WebSocketSession session;
+        private final BlockingQueue<Sample> mailbox = new ArrayBlockingQueue<>(1);
+        private final MotionFrameEncoder encoder = new MotionFrameEncoder(keyframeEvery);
+        private volatile boolean closed;
+        private Thread writer;
+
+        private MotionSession(Channel channel, WebSocketSession session) {
+            this.channel = channel;
+            this.session = session;
+        }
+
+        /**
+         * Replace the pending sample, if any, with a newer one.
+         */
+        private void offer(Sample sample) {
+            while (!mailbox.offer(sample)) {
+                mailbox.poll();
+            }
+        }
+
+        private void start() {
+            writer = Thread.ofVirtual().name("motion-ws-" + session.getId()).start(this::run);
+        }
+
+        private void run() {
+            try {
+                while (!closed) {
+                    Sample sample = mailbox.take();
+                    ByteBuffer buffer = acquireBuffer();
+                    try {
+                        encoder.encode(sample.timestamp(), sample.x(), sample.y(), sample.z(), sample.e(),
+                                sample.velocity(), buffer);
+                        buffer.flip();
+                        session.sendMessage(new BinaryMessage(buffer));
+                    } finally {
+                        releaseBuffer(buffer);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | IllegalStateException e) {
+                // client went away
+            } finally {
+                if (!closed) {
+                    leave(this);
+                }
+            }
+        }
+
+        private void stop() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (writer != null && writer != Thread.currentThread()) {
+                writer.interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.fablab.backend.printer.motion;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary encoding of the motion samples sent to one WebSocket client.
+ * <p>
+ * All frames are little-endian. Positions are in hundredths of a millimetre,
+ * velocity in hundredths of mm/s.
+ * <pre>
+ * keyframe (32 bytes)            delta (16 bytes)
+ *  u8  type = 1                   u8  type = 2
+ *  u8  reserved                   u8  reserved
+ *  u16 seq                        u16 seq
+ *  i64 timestamp (epoch ms)       u16 dt since previous frame (ms)
+ *  i32 x, y, z, e, velocity       i16 dx, dy, dz, de, dvelocity
+ * </pre>
+ * A client starts from the first keyframe and adds each delta to the values
+ * it holds. A keyframe is sent every {@code keyframeEvery} frames, and
+ * whenever a change does not fit a delta. A missing (NaN) value repeats the
+ * previous one. Not thread-safe: one encoder per session.
+ */
+final class MotionFrameEncoder {
+
+    static final byte KEYFRAME = 1;
+    static final byte DELTA = 2;
+    static final int KEYFRAME_SIZE = 32;
+    static final int DELTA_SIZE = 16;
+
+    private static final double SCALE = 100.0;
+
+    private final int keyframeEvery;
+    private final int[] last = new int[5];
+    private final int[] next = new int[5];
+    private long lastTimestamp;
+    private int sinceKeyframe;
+    private int seq;
+    private boolean started;
+
+    MotionFrameEncoder(int keyframeEvery) {
+        this.keyframeEvery = Math.max(1, keyframeEvery);
+    }
+
+    /**
+     * Write the frame of one sample at the buffer position.
+     * The buffer must be little-endian with at least {@link #KEYFRAME_SIZE} bytes left.
+     */
+    void encode(long timestampMillis, double x, double y, double z, double e, double velocity, ByteBuffer out) {
+        next[0] = quantize(x, 0);
+        next[1] = quantize(y, 1);
+        next[2] = quantize(z, 2);
+        next[3] = quantize(e, 3);
+        next[4] = quantize(velocity, 4);
+        long dt = timestampMillis - lastTimestamp;
+
+        boolean keyframe = !started || sinceKeyframe >= keyframeEvery || dt < 0 || dt > 0xFFFF;
+        for (int i = 0; !keyframe && i < next.length; i++) {
+            int delta = next[i] - last[i];
+            keyframe = delta < Short.MIN_VALUE || delta > Short.MAX_VALUE;
+        }
+
+        out.put(keyframe ? KEYFRAME : DELTA);
+        out.put((byte) 0);
+        out.putShort((short) seq);
+        if (keyframe) {
+            out.putLong(timestampMillis);
+            for (int value : next) {
+                out.putInt(value);
+            }
+            sinceKeyframe = 1;
+        } else {
+            out.putShort((short) dt);
+            for (int i = 0; i < next.length; i++) {
+                out.putShort((short) (next[i] - last[i]));
+            }
+            sinceKeyframe++;
+        }
+        System.arraycopy(next, 0, last, 0, next.length);
+        lastTimestamp = timestampMillis;
+        seq = (seq + 1) & 0xFFFF;
+        started = true;
+    }
+
+    private int quantize(double value, int index) {
+        if (Double.isNaN(value)) {
+            return last[index];
+        }
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, Math.round(value * SCALE)));
+    }
+}
@@ -0,0 +1,80 @@
+package com.fablab.backend.printer.motion;
+
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+
+/**
+ * WebSocket endpoint {@code /api/printers/{id}/motion}: joins the session to
+ * the printer's motion channel. The channel only sends; client messages are
+ * ignored.
+ */
+@Component
+public class MotionWebSocketHandler extends BinaryWebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(MotionWebSocketHandler.class);
+    private static final String SESSION_KEY = "motionSession";
+
+    private final MotionChannelHub hub;
+
+    public MotionWebSocketHandler(MotionChannelHub hub) {
+        this.hub = hub;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        UUID printerId = parsePrinterId(session);
+        if (printerId == null) {
+            session.close(CloseStatus.BAD_DATA.withReason("Invalid printer id"));
+            return;
+        }
+        try {
+            session.getAttributes().put(SESSION_KEY, hub.join(printerId, session));
+        } catch (IllegalArgumentException e) {
+            session.close(CloseStatus.BAD_DATA.withReason(e.getMessage()));
+        } catch (UnsupportedOperationException e) {
+            session.close(CloseStatus.NOT_ACCEPTABLE.withReason(e.getMessage()));
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.debug("Motion session {} failed: {}", session.getId(), exception.getMessage());
+        leave(session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        leave(session);
+    }
+
+    private void leave(WebSocketSession session) {
+        Object motionSession = session.getAttributes().remove(SESSION_KEY);
+        if (motionSession instanceof MotionChannelHub.MotionSession joined) {
+            hub.leave(joined);
+        }
+    }
+
+    /**
+     * Printer id from the path {@code /api/printers/{id}/motion}
+     */
+    private static UUID parsePrinterId(WebSocketSession session) {
+        if (session.getUri() == null) {
+            return null;
+        }
+        String[] segments = session.getUri().getPath().split("/");
+        if (segments.length < 2) {
+            return null;
+        }
+        try {
+            return UUID.fromString(segments[segments.length - 2]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.fablab.backend.printer.polling;
+
+import com.fablab.backend.models.printer.PrinterStatus;
+import com.fablab.backend.printer.connector.RawPrinterState;
+
+/**
+ * Polling cadence of a printer, derived from the last state fetched from it.
+ * Each cadence has its own poll interval (see {@link PrinterPollingService}).
+ * <p>
+ * The cadence only decides how often the printer is polled; the status
+ * persisted on the printer comes from its state string alone
+ * (see {@link #statusOf}).
+ */
+public enum PollCadence {
+    OFFLINE,
+    IDLE,
+    HEATING,
+    PRINTING,
+    PAUSED;
+
+    /**
+     * Resolve the cadence from a freshly fetched state.
+     * No state received means the printer is not responding.
+     * A progress between 0 and 100 keeps the printing cadence even if the
+     * state string lags behind.
+     */
+    public static PollCadence of(RawPrinterState state) {
+        if (state == null || state.getState() == null) {
+            return OFFLINE;
+        }
+        String printerState = state.getState().toLowerCase();
+        if (printerState.contains("paused")) {
+            return PAUSED;
+        }
+        if (printerState.contains("printing")
+                || (state.getProgress() != null && state.getProgress() > 0 && state.getProgress() < 100)) {
+            return PRINTING;
+        }
+        if (isPositive(state.getTargetBed()) || isPositive(state.getTargetNozzle())) {
+            return HEATING;
+        }
+        return IDLE;
+    }
+
+    /**
+     * Status to persist for a freshly fetched state. Only the state string
+     * counts: Moonraker keeps the last progress after a cancel or an error.
+     */
+    public static PrinterStatus statusOf(RawPrinterState state) {
+        if (state == null || state.getState() == null) {
+            // No state received = printer not responding
+            return PrinterStatus.OFFLINE;
+        }
+        String printerState = state.getState().toLowerCase();
+        if (printerState.contains("printing")) {
+            return PrinterStatus.PRINTING;
+        }
+        if (printerState.contains("paused")) {
+            return PrinterStatus.PAUSED;
+        }
+        // ready, standby, idle, or unknown while the printer is responding
+        return PrinterStatus.IDLE;
+    }
+
+    private static boolean isPositive(Double value) {
+        return value != null && value > 0;
+    }
+}
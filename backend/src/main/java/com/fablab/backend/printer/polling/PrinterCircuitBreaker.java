@@ -0,0 +1,121 @@
+package com.fablab.backend.printer.polling;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import com.fablab.backend.dto.PrinterConnectionDTO;
+
+/**
+ * Circuit breaker guarding the polling of one printer.
+ * <p>
+ * CLOSED: the printer is polled normally. After {@code failureThreshold}
+ * consecutive failed polls the breaker OPENS: full fetches stop and only a
+ * cheap probe is sent, on an exponential backoff schedule. While a probe is
+ * running the breaker is HALF_OPEN; the first successful probe closes it again.
+ * <p>
+ * Only touched by the single poll in flight for the printer; methods are
+ * synchronized so the API can read a consistent view.
+ */
+final class PrinterCircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long minBackoffMs;
+    private final long maxBackoffMs;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long backoffMs;
+    private long openedAt;
+    private long nextProbeAt;
+    private long lastSuccessAt;
+    private String lastError;
+
+    PrinterCircuitBreaker(int failureThreshold, long minBackoffMs, long maxBackoffMs) {
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.minBackoffMs = minBackoffMs;
+        this.maxBackoffMs = Math.max(maxBackoffMs, minBackoffMs);
+        this.backoffMs = minBackoffMs;
+    }
+
+    /**
+     * True when the printer should only be probed instead of fully fetched.
+     */
+    synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    /**
+     * Mark the start of a probe.
+     */
+    synchronized void probing() {
+        state = State.HALF_OPEN;
+    }
+
+    /**
+     * A poll or probe succeeded: close the breaker and reset the backoff.
+     *
+     * @return true if the breaker was open
+     */
+    synchronized boolean recordSuccess(long now) {
+        boolean wasOpen = state != State.CLOSED;
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        backoffMs = minBackoffMs;
+        openedAt = 0;
+        nextProbeAt = 0;
+        lastSuccessAt = now;
+        lastError = null;
+        return wasOpen;
+    }
+
+    /**
+     * A poll or probe failed. Opens the breaker once the threshold is reached;
+     * every failed probe doubles the wait before the next one.
+     *
+     * @return true if this failure just opened the breaker
+     */
+    synchronized boolean recordFailure(String error, long now) {
+        consecutiveFailures++;
+        lastError = error;
+        if (state == State.CLOSED) {
+            if (consecutiveFailures < failureThreshold) {
+                return false;
+            }
+            state = State.OPEN;
+            openedAt = now;
+            backoffMs = minBackoffMs;
+            nextProbeAt = now + backoffMs;
+            return true;
+        }
+        // Failed probe
+        state = State.OPEN;
+        backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+        nextProbeAt = now + backoffMs;
+        return false;
+    }
+
+    /**
+     * Time of the next probe (epoch millis), only meaningful while open.
+     */
+    synchronized long nextProbeAt() {
+        return nextProbeAt;
+    }
+
+    synchronized PrinterConnectionDTO toDto(UUID printerId) {
+        return new PrinterConnectionDTO(
+                printerId,
+                state.name(),
+                consecutiveFailures,
+                lastSuccessAt > 0 ? Instant.ofEpochMilli(lastSuccessAt) : null,
+                openedAt > 0 ? Instant.ofEpochMilli(openedAt) : null,
+                state != State.CLOSED ? Instant.ofEpochMilli(nextProbeAt) : null,
+                state != State.CLOSED ? backoffMs : 0,
+                lastError);
+    }
+}
@@ -1,24 +1,55 @@
 package com.fablab.backend.printer.polling;
 
 import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
+
+import com.fablab.backend.dto.PrinterConnectionDTO;
 import com.fablab.backend.models.printer.Printer;
-import com.fablab.backend.models.printer.PrinterSnapshot;
+import com.fablab.backend.models.printer.PrinterStatus;
+import com.fablab.backend.printer.board.PrinterStateBoard;
 import com.fablab.backend.printer.connector.ConnectorRegistry;
 import com.fablab.backend.printer.connector.PrinterConnector;
 import com.fablab.backend.printer.connector.RawPrinterState;
+import com.fablab.backend.printer.ingest.SnapshotIngest;
 import com.fablab.backend.repositories.printer.PrinterRepository;
-import com.fablab.backend.repositories.printer.PrinterSnapshotRepository;
 
 /**
  * Background service that polls printers at intelligent intervals
  * and stores snapshots in the database.
+ * <p>
+ * A single scheduler tick walks the printer list and fetches only the printers
+ * that are due. Each printer keeps its own {@link PollCadence}: it is fetched
+ * exactly once per interval of that cadence and moves to another cadence as
+ * soon as its state changes (e.g. IDLE -> HEATING -> PRINTING).
+ * <p>
+ * Due printers are fetched concurrently, one virtual thread per printer, so a
+ * slow or unreachable printer never delays the others. The number of fetches
+ * running at once is capped, and the tick does not wait for them: a printer
+ * still in flight is skipped by the next ticks until its fetch completes.
+ * <p>
+ * Each printer has a {@link PrinterCircuitBreaker}: after a few failed polls
+ * an unreachable printer is only probed with {@link PrinterConnector#probe},
+ * less and less often, and its OFFLINE status is written once instead of at
+ * every attempt. The first successful probe resumes normal polling.
  */
 @Service
 public class PrinterPollingService {
@@ -26,173 +57,256 @@ public class PrinterPollingService {
     private static final Logger log = LoggerFactory.getLogger(PrinterPollingService.class);
 
     private final PrinterRepository printerRepository;
-    private final PrinterSnapshotRepository snapshotRepository;
+    private final SnapshotIngest snapshotIngest;
     private final ConnectorRegistry connectorRegistry;
+    private final PrinterStateBoard stateBoard;
+
+    private final Map<PollCadence, Long> intervals = new EnumMap<>(PollCadence.class);
+    private final Map<UUID, PollSchedule> schedules = new ConcurrentHashMap<>();
+
+    private final ExecutorService pollExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore fetchPermits;
+
+    private final int breakerFailureThreshold;
+    private final long breakerMinBackoffMs;
+    private final long breakerMaxBackoffMs;
 
     public PrinterPollingService(
             PrinterRepository printerRepository,
-            PrinterSnapshotRepository snapshotRepository,
-            ConnectorRegistry connectorRegistry) {
+            SnapshotIngest snapshotIngest,
+            ConnectorRegistry connectorRegistry,
+            PrinterStateBoard stateBoard,
+            @Value("${printer.polling.interval.offline-ms:10000}") long offlineIntervalMs,
+            @Value("${printer.polling.interval.idle-ms:10000}") long idleIntervalMs,
+            @Value("${printer.polling.interval.heating-ms:2000}") long heatingIntervalMs,
+            @Value("${printer.polling.interval.printing-ms:1000}") long printingIntervalMs,
+            @Value("${printer.polling.interval.paused-ms:5000}") long pausedIntervalMs,
+            @Value("${printer.polling.max-concurrency:32}") int maxConcurrency,
+            @Value("${printer.polling.breaker.failure-threshold:3}") int breakerFailureThreshold,
+            @Value("${printer.polling.breaker.min-backoff-ms:15000}") long breakerMinBackoffMs,
+            @Value("${printer.polling.breaker.max-backoff-ms:300000}") long breakerMaxBackoffMs) {
         this.printerRepository = printerRepository;
-        this.snapshotRepository = snapshotRepository;
+        this.snapshotIngest = snapshotIngest;
         this.connectorRegistry = connectorRegistry;
+        this.stateBoard = stateBoard;
+        intervals.put(PollCadence.OFFLINE, offlineIntervalMs);
+        intervals.put(PollCadence.IDLE, idleIntervalMs);
+        intervals.put(PollCadence.HEATING, heatingIntervalMs);
+        intervals.put(PollCadence.PRINTING, printingIntervalMs);
+        intervals.put(PollCadence.PAUSED, pausedIntervalMs);
+        this.fetchPermits = new Semaphore(maxConcurrency);
+        this.breakerFailureThreshold = breakerFailureThreshold;
+        this.breakerMinBackoffMs = breakerMinBackoffMs;
+        this.breakerMaxBackoffMs = breakerMaxBackoffMs;
     }
 
     /**
-     * Poll all printers at a base rate (every 10 seconds)
-     * This is for IDLE/OFFLINE printers - just checking if they're alive
+     * Scheduler tick (every second by default).
+     * Starts a fetch of every printer whose next poll is due, and only those,
+     * in parallel, without waiting for them. New printers are due immediately.
      */
-    @Scheduled(fixedDelay = 10000, initialDelay = 5000) // 10s for idle printers
-    public void pollIdlePrinters() {
+    @Scheduled(fixedDelayString = "${printer.polling.tick-ms:1000}", initialDelay = 5000)
+    public void pollDuePrinters() {
         List<Printer> printers = printerRepository.findAll();
-        
+        long now = System.currentTimeMillis();
+        Set<UUID> known = new HashSet<>();
+
         for (Printer printer : printers) {
-            try {
-                // Get the appropriate connector
-                PrinterConnector connector = connectorRegistry.resolve(printer.getType());
-                
-                // Fetch current state
-                RawPrinterState state = connector.fetchState(printer);
-                
-                // Determine if printer is printing
-                boolean isPrinting = isPrinting(state);
-                
-                // Only store snapshot for idle printers here
-                // Printing printers are handled by the fast polling task
-                if (!isPrinting) {
-                    storeSnapshot(printer, state);
-                    updatePrinterStatus(printer, state);
-                }
-                
-            } catch (Exception e) {
-                log.warn("Failed to poll printer {}: {}", printer.getName(), e.getMessage());
-                // Mark printer as offline if we can't reach it
-                printer.setStatus(com.fablab.backend.models.printer.PrinterStatus.OFFLINE);
-                printer.setLastHeartbeat(Instant.now());
-                printerRepository.save(printer);
+            known.add(printer.getId());
+            PollSchedule schedule = schedules.computeIfAbsent(printer.getId(), id -> newSchedule());
+            if (schedule.nextDueAt <= now && schedule.running.compareAndSet(false, true)) {
+                pollExecutor.execute(() -> runPoll(printer, schedule));
             }
         }
+
+        // Forget printers that have been deleted
+        for (UUID printerId : schedules.keySet()) {
+            if (!known.contains(printerId)) {
+                schedules.remove(printerId);
+                connectorRegistry.release(printerId);
+            }
+        }
+        stateBoard.retainAll(known);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pollExecutor.shutdownNow();
     }
 
     /**
-     * Fast polling for ACTIVE printers (every 1 second)
-     * Only polls printers that are currently printing
+     * Circuit breaker state of a printer, empty if it has not been polled yet.
      */
-    @Scheduled(fixedDelay = 1000, initialDelay = 5000) // 1s for printing printers
-    public void pollActivePrinters() {
-        List<Printer> printers = printerRepository.findAll();
-        
-        for (Printer printer : printers) {
+    public Optional<PrinterConnectionDTO> getConnection(UUID printerId) {
+        PollSchedule schedule = schedules.get(printerId);
+        return Optional.ofNullable(schedule).map(s -> s.breaker.toDto(printerId));
+    }
+
+    /**
+     * True while the breaker of a printer is open: it failed its last polls and
+     * is only probed, so live requests should not reach it either.
+     */
+    public boolean isUnreachable(UUID printerId) {
+        PollSchedule schedule = schedules.get(printerId);
+        return schedule != null && schedule.breaker.isOpen();
+    }
+
+    /**
+     * Circuit breaker state of every polled printer.
+     */
+    public List<PrinterConnectionDTO> getConnections() {
+        return schedules.entrySet().stream()
+                .map(entry -> entry.getValue().breaker.toDto(entry.getKey()))
+                .toList();
+    }
+
+    private PollSchedule newSchedule() {
+        return new PollSchedule(new PrinterCircuitBreaker(
+                breakerFailureThreshold, breakerMinBackoffMs, breakerMaxBackoffMs));
+    }
+
+    /**
+     * Body of a per-printer poll task: bounded by the concurrency cap,
+     * and always releases the printer for the next due tick.
+     */
+    private void runPoll(Printer printer, PollSchedule schedule) {
+        try {
+            fetchPermits.acquire();
             try {
-                PrinterConnector connector = connectorRegistry.resolve(printer.getType());
-                RawPrinterState state = connector.fetchState(printer);
-                
-                // Only store snapshots for printers that are actively printing
-                if (isPrinting(state)) {
-                    storeSnapshot(printer, state);
-                    updatePrinterStatus(printer, state);
-                    log.debug("Fast poll: {} - Progress: {}%", 
-                            printer.getName(), state.getProgress());
+                pollPrinter(printer, schedule);
+            } finally {
+                fetchPermits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Poll of {} failed: {}", printer.getName(), e.getMessage());
+        } finally {
+            schedule.running.set(false);
+        }
+    }
+
+    /**
+     * Fetch one printer, store its snapshot and reschedule it
+     * according to the cadence matching its new state.
+     * While its breaker is open, the printer is only probed.
+     */
+    private void pollPrinter(Printer printer, PollSchedule schedule) {
+        PrinterConnector connector = connectorRegistry.resolve(printer.getType());
+        PrinterCircuitBreaker breaker = schedule.breaker;
+
+        if (breaker.isOpen() && !probe(printer, connector, breaker)) {
+            schedule.nextDueAt = breaker.nextProbeAt();
+            return;
+        }
+
+        PollCadence cadence;
+        RawPrinterState state = null;
+        String error = null;
+        try {
+            state = connector.fetchState(printer);
+            cadence = PollCadence.of(state);
+
+            if (cadence != PollCadence.OFFLINE) {
+                // Push connectors already ingested every change as it arrived
+                if (!connector.pushesState()) {
+                    snapshotIngest.ingest(printer, state);
                 }
-                
-            } catch (Exception e) {
-                log.trace("Fast poll skipped for {}: {}", printer.getName(), e.getMessage());
+            } else {
+                error = "No state returned";
             }
+
+            if (cadence == PollCadence.PRINTING) {
+                log.debug("Poll: {} - Progress: {}%", printer.getName(), state.getProgress());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to poll printer {}: {}", printer.getName(), e.getMessage());
+            // Mark printer as offline if we can't reach it
+            cadence = PollCadence.OFFLINE;
+            error = e.getMessage();
         }
+
+        long now = System.currentTimeMillis();
+        if (cadence != PollCadence.OFFLINE) {
+            breaker.recordSuccess(now);
+            updatePrinterStatus(printer, PollCadence.statusOf(state));
+        } else {
+            markOffline(printer);
+            if (breaker.recordFailure(error, now)) {
+                log.info("Printer {} unreachable, switching to probes", printer.getName());
+            }
+        }
+
+        if (cadence != schedule.cadence) {
+            log.debug("Printer {} moved from {} to {} cadence", printer.getName(), schedule.cadence, cadence);
+        }
+        schedule.cadence = cadence;
+        schedule.nextDueAt = breaker.isOpen()
+                ? breaker.nextProbeAt()
+                : System.currentTimeMillis() + intervals.get(cadence);
     }
 
     /**
-     * Check if printer is currently printing
+     * Cheap reachability check of a printer whose breaker is open.
+     *
+     * @return true if the printer answered and the breaker is closed again
      */
-    private boolean isPrinting(RawPrinterState state) {
-        if (state == null || state.getState() == null) {
-            return false;
+    private boolean probe(Printer printer, PrinterConnector connector, PrinterCircuitBreaker breaker) {
+        breaker.probing();
+        boolean reachable;
+        String error = null;
+        try {
+            reachable = connector.probe(printer);
+        } catch (Exception e) {
+            reachable = false;
+            error = e.getMessage();
+        }
+
+        long now = System.currentTimeMillis();
+        if (reachable) {
+            breaker.recordSuccess(now);
+            log.info("Printer {} reachable again, resuming polling", printer.getName());
+            return true;
         }
-        String printerState = state.getState().toLowerCase();
-        return printerState.contains("printing") || 
-               printerState.contains("paused") ||
-               (state.getProgress() != null && state.getProgress() > 0 && state.getProgress() < 100);
+        breaker.recordFailure(error != null ? error : "Probe failed", now);
+        log.debug("Probe of printer {} failed, next in {} ms", printer.getName(), breaker.nextProbeAt() - now);
+        return false;
     }
 
     /**
-     * Store snapshot in database
+     * Update printer status based on the state string of the fetched state
      */
-    private void storeSnapshot(Printer printer, RawPrinterState state) {
-        PrinterSnapshot snapshot = PrinterSnapshot.builder()
-                .printer(printer)
-                .timestamp(state.getTimestamp() != null ? state.getTimestamp() : Instant.now())
-                // Temperatures
-                .bedTemp(state.getBedTemp())
-                .targetBed(state.getTargetBed())
-                .nozzleTemp(state.getNozzleTemp())
-                .targetNozzle(state.getTargetNozzle())
-                .chamberTemp(state.getChamberTemp())
-                // Position
-                .posX(state.getPosX())
-                .posY(state.getPosY())
-                .posZ(state.getPosZ())
-                .posE(state.getPosE())
-                .zHeight(state.getPosZ()) // Legacy field
-                // Motion
-                .homedAxes(state.getHomedAxes())
-                .maxVelocity(state.getMaxVelocity())
-                .maxAccel(state.getMaxAccel())
-                .liveVelocity(state.getLiveVelocity())
-                .livePositionX(state.getLivePositionX())
-                .livePositionY(state.getLivePositionY())
-                .livePositionZ(state.getLivePositionZ())
-                // Print stats
-                .state(state.getState())
-                .filename(state.getFilename())
-                .progress(state.getProgress())
-                .totalLayers(state.getTotalLayers())
-                .currentLayer(state.getCurrentLayer())
-                .printDuration(state.getPrintDuration())
-                .totalDuration(state.getTotalDuration())
-                .filamentUsed(state.getFilamentUsed())
-                .displayProgress(state.getDisplayProgress())
-                // Fans & sensors
-                .partFanSpeed(state.getPartFanSpeed())
-                .partFanRPM(state.getPartFanRPM())
-                .hotendFanSpeed(state.getHotendFanSpeed())
-                .filamentDetected(state.getFilamentDetected())
-                // System
-                .cpuTemp(state.getCpuTemp())
-                .cpuUsage(state.getCpuUsage())
-                .memUsage(state.getMemUsage())
-                .systemUptime(state.getSystemUptime())
-                // Other
-                .bedMeshProfile(state.getBedMeshProfile())
-                .rawPayload(state.getRawPayload())
-                .build();
-
-        snapshotRepository.save(snapshot);
+    private void updatePrinterStatus(Printer printer, PrinterStatus status) {
+        printer.setLastHeartbeat(Instant.now());
+        printer.setStatus(status);
+        printerRepository.save(printer);
+        stateBoard.publishStatus(printer.getId(), status);
     }
 
- /**
- * Update printer status based on fetched state
- */
-private void updatePrinterStatus(Printer printer, RawPrinterState state) {
-    printer.setLastHeartbeat(Instant.now());
-    
-    if (state.getState() != null) {
-        String stateStr = state.getState().toLowerCase();
-        if (stateStr.contains("printing")) {
-            printer.setStatus(com.fablab.backend.models.printer.PrinterStatus.PRINTING);
-        } else if (stateStr.contains("paused")) {
-            printer.setStatus(com.fablab.backend.models.printer.PrinterStatus.PAUSED);
-        } else if (stateStr.contains("ready") || stateStr.contains("standby") || stateStr.contains("idle")) {
-            printer.setStatus(com.fablab.backend.models.printer.PrinterStatus.IDLE);
-        } else {
-            // Default to IDLE if state is unknown but printer is responding
-            printer.setStatus(com.fablab.backend.models.printer.PrinterStatus.IDLE);
+    /**
+     * Mark an unreachable printer OFFLINE. Its heartbeat is left untouched
+     * (it is the last time it answered) and nothing is written if it already is.
+     */
+    private void markOffline(Printer printer) {
+        stateBoard.publishStatus(printer.getId(), PrinterStatus.OFFLINE);
+        if (printer.getStatus() != PrinterStatus.OFFLINE) {
+            printer.setStatus(PrinterStatus.OFFLINE);
+            printerRepository.save(printer);
         }
-    } else {
-        // No state received = printer not responding
-        printer.setStatus(com.fablab.backend.models.printer.PrinterStatus.OFFLINE);
     }
-    
-    printerRepository.save(printer);
-}
 
-}
\ No newline at end of file
+    /**
+     * Per-printer polling state: current cadence, next due time,
+     * whether a fetch is currently in flight and the circuit breaker.
+     */
+    private static final class PollSchedule {
+        private volatile PollCadence cadence;
+        private volatile long nextDueAt;
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final PrinterCircuitBreaker breaker;
+
+        private PollSchedule(PrinterCircuitBreaker breaker) {
+            this.breaker = breaker;
+        }
+    }
+}
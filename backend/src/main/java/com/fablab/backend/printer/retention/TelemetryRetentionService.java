@@ -0,0 +1,131 @@
+package com.fablab.backend.printer.retention;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fablab.backend.dto.HistoryGranularity;
+import com.fablab.backend.dto.TelemetryTierDTO;
+import com.fablab.backend.repositories.printer.TelemetryStorageRepository;
+
+/**
+ * Tiered retention of printer telemetry.
+ * <p>
+ * Raw snapshots stay uncompressed for {@code compress-after-days}, are then
+ * compressed in place (columnar chunks segmented by printer) and dropped
+ * after {@code raw-days}. Each rollup has its own retention, so old history
+ * is still served from the 10 s / 1 min / 15 min / 1 h continuous aggregates
+ * once the raw rows are gone. A value of 0 keeps a tier forever.
+ */
+@Service
+public class TelemetryRetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(TelemetryRetentionService.class);
+
+    /** Raw chunks must outlive the refresh window of every continuous aggregate (7 days for 1 h) */
+    static final int MIN_RAW_DAYS = 8;
+
+    private final TelemetryStorageRepository storageRepository;
+    private final boolean enabled;
+    private final int compressAfterDays;
+    private final Map<HistoryGranularity, Integer> retentionDays = new EnumMap<>(HistoryGranularity.class);
+
+    public TelemetryRetentionService(
+            TelemetryStorageRepository storageRepository,
+            @Value("${printer.retention.enabled:true}") boolean enabled,
+            @Value("${printer.retention.compress-after-days:7}") int compressAfterDays,
+            @Value("${printer.retention.raw-days:90}") int rawDays,
+            @Value("${printer.retention.rollup-10s-days:180}") int tenSecondsDays,
+            @Value("${printer.retention.rollup-1m-days:365}") int oneMinuteDays,
+            @Value("${printer.retention.rollup-15m-days:0}") int fifteenMinutesDays,
+            @Value("${printer.retention.rollup-1h-days:0}") int oneHourDays) {
+        this.storageRepository = storageRepository;
+        this.enabled = enabled;
+        this.compressAfterDays = Math.max(0, compressAfterDays);
+        if (rawDays > 0 && rawDays < Math.max(MIN_RAW_DAYS, this.compressAfterDays)) {
+            int adjusted = Math.max(MIN_RAW_DAYS, this.compressAfterDays);
+            log.warn("printer.retention.raw-days={} is too short, using {} days", rawDays, adjusted);
+            rawDays = adjusted;
+        }
+        retentionDays.put(HistoryGranularity.RAW, Math.max(0, rawDays));
+        retentionDays.put(HistoryGranularity.TEN_SECONDS, Math.max(0, tenSecondsDays));
+        retentionDays.put(HistoryGranularity.ONE_MINUTE, Math.max(0, oneMinuteDays));
+        retentionDays.put(HistoryGranularity.FIFTEEN_MINUTES, Math.max(0, fifteenMinutesDays));
+        retentionDays.put(HistoryGranularity.ONE_HOUR, Math.max(0, oneHourDays));
+    }
+
+    /**
+     * Compress and drop the chunks that left their tier.
+     */
+    @Scheduled(fixedDelayString = "${printer.retention.interval-ms:3600000}", initialDelay = 60000)
+    public void applyRetention() {
+        if (!enabled) {
+            return;
+        }
+        if (compressAfterDays > 0) {
+            try {
+                int compressed = storageRepository.compressChunksOlderThan(compressAfterDays);
+                if (compressed > 0) {
+                    log.info("Compressed {} telemetry chunks older than {} days", compressed, compressAfterDays);
+                }
+            } catch (Exception e) {
+                log.warn("Telemetry compression failed: {}", e.getMessage());
+            }
+        }
+        for (HistoryGranularity granularity : HistoryGranularity.values()) {
+            int days = retentionDays.get(granularity);
+            if (days == 0) {
+                continue;
+            }
+            String relation = granularity.getView() != null ? granularity.getView() : TelemetryStorageRepository.HYPERTABLE;
+            try {
+                int dropped = storageRepository.dropChunksOlderThan(relation, days);
+                if (dropped > 0) {
+                    log.info("Dropped {} chunks older than {} days from {}", dropped, days, relation);
+                }
+            } catch (Exception e) {
+                log.warn("Telemetry retention failed for {}: {}", relation, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Finest granularity, starting at {@code requested}, that still holds data at {@code from}.
+     */
+    public HistoryGranularity covering(HistoryGranularity requested, Instant from) {
+        HistoryGranularity[] granularities = HistoryGranularity.values();
+        for (int i = requested.ordinal(); i < granularities.length; i++) {
+            int days = retentionDays.get(granularities[i]);
+            if (days == 0 || !from.isBefore(Instant.now().minus(days, ChronoUnit.DAYS))) {
+                return granularities[i];
+            }
+        }
+        return granularities[granularities.length - 1];
+    }
+
+    /**
+     * Size and age of every tier, from the freshest to the coarsest.
+     */
+    public List<TelemetryTierDTO> getTierStats() {
+        int rawDays = retentionDays.get(HistoryGranularity.RAW);
+        List<TelemetryTierDTO> tiers = new ArrayList<>(storageRepository.findHypertableTiers(
+                compressAfterDays == 0 ? null : compressAfterDays,
+                rawDays == 0 ? null : rawDays));
+        for (HistoryGranularity granularity : HistoryGranularity.values()) {
+            if (granularity.getView() != null) {
+                int days = retentionDays.get(granularity);
+                tiers.add(storageRepository.findRollupTier(granularity, days == 0 ? null : days));
+            }
+        }
+        return tiers;
+    }
+}
@@ -0,0 +1,295 @@
+package com.fablab.backend.printer.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+
+import com.fablab.backend.models.printer.PrinterSnapshot;
+import com.fablab.backend.printer.board.PrinterStateBoard;
+import com.fablab.backend.repositories.printer.SnapshotColumns;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Server-Sent Events fan-out of live printer telemetry.
+ * <p>
+ * Fed by the {@link PrinterStateBoard}: each accepted snapshot is serialized
+ * once into a complete SSE frame ({@code id}, {@code event: state},
+ * {@code data}) and the same bytes are queued for every matching subscriber.
+ * Viewers never reach a printer or the database.
+ * <p>
+ * Each subscriber has a bounded queue drained by its own virtual thread; a
+ * slow client loses its oldest queued frames rather than slowing the others.
+ * Idle connections get a comment heartbeat. The last frames are kept in a
+ * replay ring so a client reconnecting with {@code Last-Event-ID} receives
+ * what it missed; when that id is no longer in the ring (or on a first
+ * connection) the latest frame of each printer is sent instead.
+ */
+@Component
+public class TelemetryStreamHub {
+
+    private static final Logger log = LoggerFactory.getLogger(TelemetryStreamHub.class);
+    private static final JsonFactory factory = new JsonFactory();
+
+    private static final byte[] HEARTBEAT = ": heartbeat\n\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Large or redundant columns left out of the live frames */
+    private static final Set<String> SKIPPED_COLUMNS = Set.of("printer_id", "raw_payload", "bed_mesh_matrix");
+
+    private record Frame(long id, UUID printerId, byte[] bytes) {
+    }
+
+    private final PrinterStateBoard stateBoard;
+    private final int clientBuffer;
+    private final long heartbeatMs;
+    private final byte[] retryFrame;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Map<UUID, Frame> latestFrames = new ConcurrentHashMap<>();
+    private final Frame[] replay;
+    private long lastId;
+
+    public TelemetryStreamHub(
+            PrinterStateBoard stateBoard,
+            @Value("${printer.stream.client-buffer:32}") int clientBuffer,
+            @Value("${printer.stream.heartbeat-ms:15000}") long heartbeatMs,
+            @Value("${printer.stream.replay-size:1024}") int replaySize,
+            @Value("${printer.stream.retry-ms:3000}") long retryMs) {
+        this.stateBoard = stateBoard;
+        this.clientBuffer = Math.max(1, clientBuffer);
+        this.heartbeatMs = heartbeatMs;
+        this.replay = new Frame[Math.max(1, replaySize)];
+        this.retryFrame = ("retry: " + retryMs + "\n\n").getBytes(StandardCharsets.UTF_8);
+
+        stateBoard.forEach((printerId, entry) -> {
+            if (entry.snapshot() != null) {
+                publish(printerId, entry.snapshot());
+            }
+        });
+        stateBoard.addSnapshotListener(this::publish);
+    }
+
+    /**
+     * Open a stream for one printer, or for the whole fleet when {@code printerId} is null.
+     *
+     * @param lastEventId value of the {@code Last-Event-ID} header, or null
+     */
+    public SseEmitter subscribe(UUID printerId, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(0L);
+        Subscriber subscriber;
+        synchronized (this) {
+            int capacity = clientBuffer + (printerId == null ? latestFrames.size() : 1);
+            subscriber = new Subscriber(printerId, emitter, capacity);
+            Long resumeFrom = parseEventId(lastEventId);
+            long oldest = Math.max(1, lastId - replay.length + 1);
+            if (resumeFrom != null && resumeFrom >= oldest - 1 && resumeFrom <= lastId) {
+                for (long id = resumeFrom + 1; id <= lastId; id++) {
+                    Frame frame = replay[(int) (id % replay.length)];
+                    if (subscriber.accepts(frame)) {
+                        subscriber.offer(frame);
+                    }
+                }
+            } else {
+                latestFrames.values().stream()
+                        .filter(subscriber::accepts)
+                        .filter(frame -> stateBoard.get(frame.printerId()).isPresent())
+                        .sorted((a, b) -> Long.compare(a.id(), b.id()))
+                        .forEach(subscriber::offer);
+            }
+            subscribers.add(subscriber);
+        }
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        subscriber.start();
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+            subscriber.close();
+        }
+    }
+
+    private void publish(UUID printerId, PrinterSnapshot snapshot) {
+        byte[] data;
+        try {
+            data = toJson(printerId, snapshot);
+        } catch (IOException e) {
+            log.warn("Could not serialize snapshot of printer {}: {}", printerId, e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            long id = ++lastId;
+            Frame frame = new Frame(id, printerId, encode(id, data));
+            replay[(int) (id % replay.length)] = frame;
+            latestFrames.put(printerId, frame);
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.accepts(frame)) {
+                    subscriber.offer(frame);
+                }
+            }
+        }
+    }
+
+    private static byte[] encode(long id, byte[] data) {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(data.length + 40);
+        frame.writeBytes(("id: " + id + "\nevent: state\ndata: ").getBytes(StandardCharsets.UTF_8));
+        frame.writeBytes(data);
+        frame.writeBytes(new byte[]{'\n', '\n'});
+        return frame.toByteArray();
+    }
+
+    /**
+     * Single-line JSON of a snapshot, with camelCase field names like the history stream.
+     */
+    private static byte[] toJson(UUID printerId, PrinterSnapshot snapshot) throws IOException {
+        Object[] row = SnapshotColumns.toRow(snapshot);
+        List<String> columns = SnapshotColumns.columnNames();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("printerId", printerId.toString());
+            if (snapshot.getId() != null) {
+                generator.writeNumberField("id", snapshot.getId());
+            }
+            for (int i = 0; i < row.length; i++) {
+                String column = columns.get(i);
+                if (SKIPPED_COLUMNS.contains(column)) {
+                    continue;
+                }
+                Object value = row[i];
+                generator.writeFieldName(SnapshotColumns.fieldName(column));
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof Double number) {
+                    generator.writeNumber(number);
+                } else if (value instanceof Integer number) {
+                    generator.writeNumber(number);
+                } else if (value instanceof Long number) {
+                    generator.writeNumber(number);
+                } else if (value instanceof Boolean bool) {
+                    generator.writeBoolean(bool);
+                } else if (value instanceof Instant instant) {
+                    generator.writeString(instant.toString());
+                } else if (SnapshotColumns.isJson(column)) {
+                    generator.writeRawValue(value.toString());
+                } else {
+                    generator.writeString(value.toString());
+                }
+            }
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    private static Long parseEventId(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * One SSE client: bounded frame queue and the virtual thread writing it out.
+     */
+    private final class Subscriber {
+        private final UUID printerId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Frame> queue;
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile boolean closed;
+        private Thread writer;
+
+        private Subscriber(UUID printerId, SseEmitter emitter, int capacity) {
+            this.printerId = printerId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        private boolean accepts(Frame frame) {
+            return frame != null && (printerId == null || printerId.equals(frame.printerId()));
+        }
+
+        /**
+         * Queue a frame without blocking; the oldest queued frame makes room when full.
+         */
+        private void offer(Frame frame) {
+            while (!queue.offer(frame)) {
+                if (queue.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+
+        private void start() {
+            writer = Thread.ofVirtual().name("sse-" + (printerId != null ? printerId : "fleet")).start(this::run);
+        }
+
+        private void run() {
+            try {
+                send(retryFrame);
+                while (!closed) {
+                    Frame frame = queue.poll(heartbeatMs, TimeUnit.MILLISECONDS);
+                    send(frame != null ? frame.bytes() : HEARTBEAT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | IllegalStateException e) {
+                // client went away
+            } finally {
+                close();
+                emitter.complete();
+                if (dropped.get() > 0) {
+                    log.debug("SSE client of {} dropped {} frames", printerId != null ? printerId : "fleet", dropped.get());
+                }
+            }
+        }
+
+        private void send(byte[] bytes) throws IOException {
+            emitter.send(Set.of(new DataWithMediaType(bytes, MediaType.TEXT_PLAIN)));
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscribers.remove(this);
+            if (writer != null && writer != Thread.currentThread()) {
+                writer.interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.fablab.backend.printer.thermal;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fablab.backend.dto.HeaterThermalDTO;
+import com.fablab.backend.models.Alert;
+import com.fablab.backend.models.printer.HeaterModelSample;
+import com.fablab.backend.models.printer.HeaterModelSample.Heater;
+import com.fablab.backend.models.printer.PrinterSnapshot;
+import com.fablab.backend.printer.board.PrinterStateBoard;
+import com.fablab.backend.repositories.printer.HeaterModelSampleRepository;
+import com.fablab.backend.services.AlertModuleService;
+
+/**
+ * Online thermal models of the nozzle and bed heaters of every printer.
+ * <p>
+ * Each snapshot reaching the {@link PrinterStateBoard} updates a
+ * {@link ThermalModel} per heater from its temperature and power, in constant
+ * time on the ingest thread. The fitted constants give the time to reach the
+ * target, the power needed to hold it and the margin left.
+ * <p>
+ * The constants are recorded every {@code printer.thermal.record-interval-ms}
+ * in {@code heater_model_samples}; their average over the baseline weeks is
+ * the reference for drift. A periodic check raises an alert, once until it
+ * clears, when a heater can no longer reach its target, heats much slower
+ * than its baseline, has lost heating power or reads too noisily. These show
+ * long before the temperature stops rising.
+ */
+@Component
+public class HeaterThermalService {
+
+    private static final Logger log = LoggerFactory.getLogger(HeaterThermalService.class);
+    private static final Heater[] HEATERS = Heater.values();
+
+    // A heater more than this below its target is heating up (°C)
+    private static final double HEATING_BAND = 2;
+    // Models without a sample for this long are not checked (printer off or offline)
+    private static final long STALE_MS = 60_000;
+    // Slow heating is only reported when it costs at least this much more than the baseline
+    private static final double SLOW_HEATING_MIN_SECONDS = 30;
+
+    private enum Check {
+        UNREACHABLE("0001", "Cible %s inatteignable : %.0f °C demandés, %.0f °C au maximum à pleine puissance"),
+        SLOW_HEATING("0002", "Chauffe %s lente : %.0f s prévues pour atteindre la cible contre %.0f s habituellement"),
+        GAIN_DROP("0003", "Puissance de chauffe %s en baisse de %.0f %% (cartouche chauffante ou alimentation)"),
+        NOISY("0004", "Mesure de température %s instable (résidu %.2f °C/s, thermistance mal fixée ?)");
+
+        private final String number;
+        private final String format;
+
+        Check(String number, String format) {
+            this.number = number;
+            this.format = format;
+        }
+    }
+
+    private record Baseline(double gain, double loss, double ambient) {
+    }
+
+    /**
+     * Values of a model read at once, so derived figures are consistent.
+     */
+    private record Fit(long ts, long samples, boolean valid, double temperature, double target, double power,
+                       double gain, double loss, double ambient, double residual) {
+    }
+
+    private static final class HeaterState {
+        private final ThermalModel model;
+        private volatile Baseline baseline;
+        private boolean baselineLoaded;
+        // Fitted samples at the last record, to skip heaters that did not run since
+        private long recordedSamples;
+        // Bit per Check already reported and still true (checker thread only)
+        private int reported;
+
+        private HeaterState(ThermalModel model) {
+            this.model = model;
+        }
+
+        private synchronized Fit fit() {
+            return new Fit(model.lastTimestamp(), model.samples(), model.isValid(), model.temperature(),
+                    model.target(), model.power(), model.gain(), model.loss(), model.ambient(), model.residual());
+        }
+    }
+
+    private final HeaterModelSampleRepository sampleRepository;
+    private final AlertModuleService alertService;
+    private final double forgetting;
+    private final int minSamples;
+    private final int baselineDays;
+    private final int recentDays;
+    private final double slowHeatingFactor;
+    private final double gainDropLimit;
+    private final double residualLimit;
+    private final Map<UUID, HeaterState[]> heaters = new ConcurrentHashMap<>();
+
+    public HeaterThermalService(
+            PrinterStateBoard stateBoard,
+            HeaterModelSampleRepository sampleRepository,
+            AlertModuleService alertService,
+            @Value("${printer.thermal.forgetting:0.999}") double forgetting,
+            @Value("${printer.thermal.min-samples:120}") int minSamples,
+            @Value("${printer.thermal.baseline-days:28}") int baselineDays,
+            @Value("${printer.thermal.recent-days:7}") int recentDays,
+            @Value("${printer.thermal.slow-heating-factor:1.5}") double slowHeatingFactor,
+            @Value("${printer.thermal.gain-drop:0.25}") double gainDropLimit,
+            @Value("${printer.thermal.residual-limit:2}") double residualLimit) {
+        this.sampleRepository = sampleRepository;
+        this.alertService = alertService;
+        this.forgetting = forgetting;
+        this.minSamples = minSamples;
+        this.baselineDays = baselineDays;
+        this.recentDays = recentDays;
+        this.slowHeatingFactor = slowHeatingFactor;
+        this.gainDropLimit = gainDropLimit;
+        this.residualLimit = residualLimit;
+        stateBoard.addSnapshotListener(this::onSnapshot);
+    }
+
+    /**
+     * Thermal models of a printer's heaters, empty until it has reported heater data.
+     */
+    public List<HeaterThermalDTO> getModels(UUID printerId) {
+        HeaterState[] states = heaters.get(printerId);
+        List<HeaterThermalDTO> models = new ArrayList<>(HEATERS.length);
+        if (states != null) {
+            for (Heater heater : HEATERS) {
+                HeaterState state = states[heater.ordinal()];
+                if (state.model.lastTimestamp() >= 0) {
+                    models.add(toDTO(printerId, heater, state.fit(), state.baseline));
+                }
+            }
+        }
+        return models;
+    }
+
+    /**
+     * Recorded constants of a heater, oldest first.
+     */
+    public List<HeaterModelSample> getHistory(UUID printerId, Heater heater, Instant from, Instant to) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(baselineDays, ChronoUnit.DAYS);
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        return sampleRepository.findByPrinterIdAndHeaterAndRecordedAtBetweenOrderByRecordedAt(printerId, heater, start, end);
+    }
+
+    /**
+     * Called on the ingest thread.
+     */
+    private void onSnapshot(UUID printerId, PrinterSnapshot snapshot) {
+        long ts = snapshot.getTimestamp() != null ? snapshot.getTimestamp().toEpochMilli() : System.currentTimeMillis();
+        HeaterState[] states = heaters.computeIfAbsent(printerId, id -> newStates());
+        update(states[Heater.NOZZLE.ordinal()], ts, snapshot.getNozzleTemp(), snapshot.getNozzlePow(), snapshot.getTargetNozzle());
+        update(states[Heater.BED.ordinal()], ts, snapshot.getBedTemp(), snapshot.getBedPow(), snapshot.getTargetBed());
+    }
+
+    private static void update(HeaterState state, long ts, Double temperature, Double power, Double target) {
+        if (temperature == null || power == null) {
+            return;
+        }
+        synchronized (state) {
+            state.model.update(ts, temperature, power, target != null ? target : 0);
+        }
+    }
+
+    private HeaterState[] newStates() {
+        HeaterState[] states = new HeaterState[HEATERS.length];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = new HeaterState(new ThermalModel(forgetting, minSamples));
+        }
+        return states;
+    }
+
+    /**
+     * Raise alerts on heaters whose model shows a degradation.
+     */
+    @Scheduled(fixedDelayString = "${printer.thermal.check-ms:5000}")
+    public void checkHeaters() {
+        long now = System.currentTimeMillis();
+        heaters.forEach((printerId, states) -> {
+            for (Heater heater : HEATERS) {
+                HeaterState state = states[heater.ordinal()];
+                Fit fit = state.fit();
+                if (!fit.valid() || now - fit.ts() > STALE_MS) {
+                    continue;
+                }
+                check(printerId, heater, state, fit);
+            }
+        });
+    }
+
+    private void check(UUID printerId, Heater heater, HeaterState state, Fit fit) {
+        String name = heater == Heater.NOZZLE ? "buse" : "lit";
+        boolean heating = fit.target() > 0 && fit.temperature() < fit.target() - HEATING_BAND;
+        double maxTemperature = ThermalModel.maxTemperature(fit.gain(), fit.loss(), fit.ambient());
+        report(printerId, heater, state, Check.UNREACHABLE, heating && fit.target() > maxTemperature,
+                name, fit.target(), maxTemperature);
+
+        Baseline baseline = state.baseline;
+        boolean slow = false;
+        double expected = Double.NaN;
+        double predicted = Double.NaN;
+        if (heating && baseline != null) {
+            predicted = ThermalModel.timeToTarget(fit.gain(), fit.loss(), fit.ambient(), fit.temperature(), fit.target());
+            expected = ThermalModel.timeToTarget(baseline.gain(), baseline.loss(), baseline.ambient(),
+                    fit.temperature(), fit.target());
+            slow = predicted > expected * slowHeatingFactor && predicted - expected > SLOW_HEATING_MIN_SECONDS;
+        }
+        report(printerId, heater, state, Check.SLOW_HEATING, slow, name, predicted, expected);
+
+        double gainDrift = baseline != null ? fit.gain() / baseline.gain() - 1 : 0;
+        report(printerId, heater, state, Check.GAIN_DROP, gainDrift < -gainDropLimit, name, -gainDrift * 100);
+        report(printerId, heater, state, Check.NOISY, fit.residual() > residualLimit, name, fit.residual());
+    }
+
+    private void report(UUID printerId, Heater heater, HeaterState state, Check check, boolean active, Object... args) {
+        int bit = 1 << check.ordinal();
+        if (!active) {
+            state.reported &= ~bit;
+            return;
+        }
+        if ((state.reported & bit) != 0) {
+            return;
+        }
+        state.reported |= bit;
+        String code = (heater == Heater.NOZZLE ? "TN" : "TB") + check.number;
+        alertService.recordAlertAndAudit(printerId, null, code, String.format(Locale.ROOT, check.format, args),
+                heater == Heater.NOZZLE ? "EXTRUDER AND TOOLHEAD" : "HEATBED", Alert.Severity.WARNING);
+    }
+
+    /**
+     * Record the constants of the heaters that ran since the last record and
+     * refresh their drift baselines.
+     */
+    @Scheduled(fixedDelayString = "${printer.thermal.record-interval-ms:900000}")
+    public void recordModels() {
+        Instant now = Instant.now();
+        heaters.forEach((printerId, states) -> {
+            for (Heater heater : HEATERS) {
+                HeaterState state = states[heater.ordinal()];
+                try {
+                    Fit fit = state.fit();
+                    if (fit.valid() && fit.samples() - state.recordedSamples >= minSamples) {
+                        sampleRepository.save(HeaterModelSample.builder()
+                                .printerId(printerId)
+                                .heater(heater)
+                                .recordedAt(now)
+                                .gain(fit.gain())
+                                .loss(fit.loss())
+                                .ambient(fit.ambient())
+                                .residual(fit.residual())
+                                .samples(fit.samples())
+                                .build());
+                        state.recordedSamples = fit.samples();
+                        state.baselineLoaded = false;
+                    }
+                    if (!state.baselineLoaded) {
+                        state.baseline = loadBaseline(printerId, heater, now);
+                        state.baselineLoaded = true;
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Thermal model of printer {} {} not recorded: {}", printerId, heater, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Average constants over the baseline weeks, leaving out the recent days the drift is measured on.
+     */
+    private Baseline loadBaseline(UUID printerId, Heater heater, Instant now) {
+        List<HeaterModelSample> samples = sampleRepository.findByPrinterIdAndHeaterAndRecordedAtBetweenOrderByRecordedAt(
+                printerId, heater, now.minus(baselineDays, ChronoUnit.DAYS), now.minus(recentDays, ChronoUnit.DAYS));
+        if (samples.isEmpty()) {
+            return null;
+        }
+        double gain = 0;
+        double loss = 0;
+        double ambient = 0;
+        for (HeaterModelSample sample : samples) {
+            gain += sample.getGain();
+            loss += sample.getLoss();
+            ambient += sample.getAmbient();
+        }
+        int count = samples.size();
+        return new Baseline(gain / count, loss / count, ambient / count);
+    }
+
+    private HeaterThermalDTO toDTO(UUID printerId, Heater heater, Fit fit, Baseline baseline) {
+        Instant updatedAt = Instant.ofEpochMilli(fit.ts());
+        if (!fit.valid()) {
+            return new HeaterThermalDTO(printerId, heater, updatedAt, fit.samples(), false, fit.temperature(),
+                    fit.target(), fit.power(), null, null, null, null, null, null, null, null, null, null, null);
+        }
+        Double timeToTarget = null;
+        Boolean reachable = null;
+        Double holdPower = null;
+        Double margin = null;
+        if (fit.target() > 0) {
+            double seconds = ThermalModel.timeToTarget(fit.gain(), fit.loss(), fit.ambient(), fit.temperature(), fit.target());
+            reachable = !Double.isNaN(seconds);
+            timeToTarget = reachable ? seconds : null;
+            holdPower = ThermalModel.holdPower(fit.gain(), fit.loss(), fit.ambient(), fit.target());
+            margin = 1 - holdPower;
+        }
+        return new HeaterThermalDTO(printerId, heater, updatedAt, fit.samples(), true, fit.temperature(),
+                fit.target(), fit.power(), fit.gain(), fit.loss(), fit.ambient(),
+                ThermalModel.maxTemperature(fit.gain(), fit.loss(), fit.ambient()), fit.residual(),
+                timeToTarget, reachable, holdPower, margin,
+                baseline != null ? fit.gain() / baseline.gain() - 1 : null,
+                baseline != null ? fit.loss() / baseline.loss() - 1 : null);
+    }
+}
@@ -0,0 +1,200 @@
+package com.fablab.backend.printer.thermal;
+
+import java.util.Arrays;
+
+/**
+ * First-order thermal model of one heater, fitted online by recursive least squares.
+ * <p>
+ * The heater is modelled as {@code dT/dt = gain * power - loss * (T - ambient)}:
+ * {@code gain} is the heating rate at full power (°C/s), {@code loss} the
+ * cooling rate per degree above ambient (1/s). Each pair of consecutive
+ * samples gives one observation of {@code dT/dt}, regressed on the mean power,
+ * the mean temperature and a constant. An update is a fixed number of
+ * operations on a 3x3 covariance; a forgetting factor lets the fit follow slow
+ * changes, and the covariance trace is bounded so long idle holds do not blow
+ * it up.
+ * <p>
+ * Not thread-safe: callers synchronize on the model.
+ */
+final class ThermalModel {
+
+    // Temperatures are divided by this in the regression so all regressors are of the same order
+    private static final double SCALE = 100;
+    private static final double INITIAL_COVARIANCE = 1000;
+    private static final double MAX_TRACE = 1e4;
+    // Weight of the latest squared prediction error in the residual average
+    private static final double RESIDUAL_ALPHA = 0.02;
+    // Gaps longer than this break the series: dT/dt over them means nothing
+    private static final long MAX_GAP_MS = 10_000;
+
+    private final double forgetting;
+    private final int minSamples;
+
+    // Parameters: gain, -loss * SCALE, loss * ambient
+    private final double[] theta = new double[3];
+    private final double[] covariance = new double[9];
+    private final double[] phi = new double[3];
+    private final double[] gainVector = new double[3];
+
+    private long samples;
+    private double residualSquare;
+    private long lastTs = -1;
+    private double lastTemperature;
+    private double lastPower;
+    private double target;
+
+    /**
+     * @param forgetting RLS forgetting factor, in (0, 1]
+     * @param minSamples updates before the fit is trusted
+     */
+    ThermalModel(double forgetting, int minSamples) {
+        this.forgetting = forgetting;
+        this.minSamples = minSamples;
+        reset();
+    }
+
+    /**
+     * Forget the fit, e.g. when the heater was replaced.
+     */
+    void reset() {
+        Arrays.fill(theta, 0);
+        Arrays.fill(covariance, 0);
+        covariance[0] = covariance[4] = covariance[8] = INITIAL_COVARIANCE;
+        samples = 0;
+        residualSquare = 0;
+        lastTs = -1;
+    }
+
+    /**
+     * Add a sample.
+     *
+     * @param ts sample time (epoch ms)
+     * @param temperature measured temperature (°C)
+     * @param power heater duty cycle, 0 to 1
+     * @param target target temperature (°C), 0 when off
+     */
+    void update(long ts, double temperature, double power, double target) {
+        this.target = target;
+        long dt = ts - lastTs;
+        if (lastTs < 0 || dt <= 0 || dt > MAX_GAP_MS) {
+            remember(ts, temperature, power);
+            return;
+        }
+        double seconds = dt / 1000.0;
+        double observed = (temperature - lastTemperature) / seconds;
+        phi[0] = (power + lastPower) / 2;
+        phi[1] = (temperature + lastTemperature) / 2 / SCALE;
+        phi[2] = 1;
+        remember(ts, temperature, power);
+
+        double[] p = covariance;
+        double[] k = gainVector;
+        double denominator = forgetting;
+        for (int i = 0; i < 3; i++) {
+            k[i] = p[i * 3] * phi[0] + p[i * 3 + 1] * phi[1] + p[i * 3 + 2] * phi[2];
+            denominator += phi[i] * k[i];
+        }
+        double error = observed - (theta[0] * phi[0] + theta[1] * phi[1] + theta[2] * phi[2]);
+        // P.phi is kept in k until the covariance is updated, then scaled into the gain
+        double trace = 0;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                p[i * 3 + j] = (p[i * 3 + j] - k[i] * k[j] / denominator) / forgetting;
+            }
+            trace += p[i * 3 + i];
+        }
+        for (int i = 0; i < 3; i++) {
+            theta[i] += k[i] / denominator * error;
+        }
+        if (trace > MAX_TRACE) {
+            double shrink = MAX_TRACE / trace;
+            for (int i = 0; i < 9; i++) {
+                p[i] *= shrink;
+            }
+        }
+        residualSquare += RESIDUAL_ALPHA * (error * error - residualSquare);
+        samples++;
+    }
+
+    private void remember(long ts, double temperature, double power) {
+        lastTs = ts;
+        lastTemperature = temperature;
+        lastPower = power;
+    }
+
+    /**
+     * True once enough samples were fitted and the constants are physical.
+     */
+    boolean isValid() {
+        return samples >= minSamples && gain() > 0 && loss() > 0;
+    }
+
+    long samples() {
+        return samples;
+    }
+
+    long lastTimestamp() {
+        return lastTs;
+    }
+
+    double temperature() {
+        return lastTemperature;
+    }
+
+    double power() {
+        return lastPower;
+    }
+
+    double target() {
+        return target;
+    }
+
+    /** Heating rate at full power (°C/s) */
+    double gain() {
+        return theta[0];
+    }
+
+    /** Cooling rate per degree above ambient (1/s) */
+    double loss() {
+        return -theta[1] / SCALE;
+    }
+
+    /** Temperature the heater settles at when off (°C) */
+    double ambient() {
+        return theta[2] / loss();
+    }
+
+    /** RMS of the recent prediction errors on dT/dt (°C/s) */
+    double residual() {
+        return Math.sqrt(residualSquare);
+    }
+
+    /**
+     * Temperature reached at full power.
+     */
+    static double maxTemperature(double gain, double loss, double ambient) {
+        return ambient + gain / loss;
+    }
+
+    /**
+     * Duty cycle needed to hold a temperature.
+     */
+    static double holdPower(double gain, double loss, double ambient, double temperature) {
+        return loss * (temperature - ambient) / gain;
+    }
+
+    /**
+     * Seconds to go from {@code temperature} to {@code target}, heating at full power
+     * or cooling with the heater off.
+     *
+     * @return the time, or NaN when the model never reaches the target
+     */
+    static double timeToTarget(double gain, double loss, double ambient, double temperature, double target) {
+        double settle = target >= temperature ? maxTemperature(gain, loss, ambient) : ambient;
+        double remaining = (settle - temperature) / (settle - target);
+        if (!(remaining >= 1) || Double.isInfinite(remaining)) {
+            return Double.NaN;
+        }
+        return Math.log(remaining) / loss;
+    }
+}
@@ -0,0 +1,62 @@
+package com.fablab.backend.repositories;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.fablab.backend.models.AuditLog;
+
+/**
+ * Multi-row inserts into {@code audit_log}, for the asynchronous audit appender.
+ */
+@Repository
+public class AuditLogBatchRepository {
+
+    private static final String INSERT_PREFIX = "INSERT INTO audit_log (user_id, action, details, log_time) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?)";
+    // PostgreSQL accepts at most 32767 bind parameters per statement
+    private static final int MAX_ROWS_PER_STATEMENT = 32767 / 4;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AuditLogBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insert the entries with {@code INSERT ... VALUES (...), (...)} statements,
+     * split to stay within the bind parameter limit.
+     */
+    public void insertBatch(List<AuditLog> entries) {
+        for (int from = 0; from < entries.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<AuditLog> rows = entries.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, entries.size()));
+            StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows.size() * (ROW_PLACEHOLDERS.length() + 2));
+            sql.append(INSERT_PREFIX);
+            for (int i = 0; i < rows.size(); i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(ROW_PLACEHOLDERS);
+            }
+            jdbcTemplate.update(sql.toString(), (PreparedStatement statement) -> {
+                int index = 1;
+                for (AuditLog entry : rows) {
+                    if (entry.getUserId() != null) {
+                        statement.setLong(index++, entry.getUserId());
+                    } else {
+                        statement.setNull(index++, Types.BIGINT);
+                    }
+                    statement.setString(index++, entry.getAction());
+                    statement.setString(index++, entry.getDetails());
+                    Instant logTime = entry.getLogTime() != null ? entry.getLogTime() : Instant.now();
+                    statement.setTimestamp(index++, Timestamp.from(logTime));
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.fablab.backend.repositories.printer;
+
+import com.fablab.backend.models.printer.HeaterModelSample;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface HeaterModelSampleRepository extends JpaRepository<HeaterModelSample, Long> {
+    List<HeaterModelSample> findByPrinterIdAndHeaterAndRecordedAtBetweenOrderByRecordedAt(
+            UUID printerId, HeaterModelSample.Heater heater, Instant from, Instant to);
+}
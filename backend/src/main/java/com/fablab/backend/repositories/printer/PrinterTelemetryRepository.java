@@ -0,0 +1,280 @@
+package com.fablab.backend.repositories.printer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import com.fablab.backend.config.TimescaleDataSourceConfig;
+import com.fablab.backend.dto.HistoryGranularity;
+import com.fablab.backend.dto.PrinterHistoryPointDTO;
+import com.fablab.backend.models.printer.PrinterSnapshot;
+
+/**
+ * Printer snapshots stored in the TimescaleDB {@code printer_snapshots} hypertable.
+ * Keeps the 1 Hz telemetry load off the main database; queries always filter on
+ * {@code printer_id} and {@code ts} so they hit the {@code (printer_id, ts DESC)} index.
+ * Long ranges are read from the continuous aggregates (10 s, 1 min, 15 min, 1 h).
+ */
+@Repository
+public class PrinterTelemetryRepository {
+
+    private static final RowMapper<PrinterSnapshot> SNAPSHOT_MAPPER = (rs, rowNum) -> SnapshotColumns.fromResultSet(rs);
+
+    private static final String SELECT = "SELECT id, "
+            + SnapshotColumns.COLUMNS.stream().map(SnapshotColumns.Column::name).collect(Collectors.joining(", "))
+            + " FROM printer_snapshots";
+
+    private static final RowMapper<PrinterHistoryPointDTO> POINT_MAPPER = (rs, rowNum) -> new PrinterHistoryPointDTO(
+            rs.getTimestamp("bucket").toInstant(),
+            rs.getLong("samples"),
+            stats(rs, "bed_temp"),
+            stats(rs, "nozzle_temp"),
+            stats(rs, "chamber_temp"),
+            stats(rs, "part_fan_speed"),
+            stats(rs, "hotend_fan_speed"),
+            stats(rs, "live_velocity"),
+            number(rs, "target_bed"),
+            number(rs, "target_nozzle"),
+            rs.getString("state"),
+            number(rs, "progress"));
+
+    // Rows per round trip when streaming; PostgreSQL only uses a cursor outside auto-commit
+    private static final int STREAM_FETCH_SIZE = 2000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PrinterTelemetryRepository(@Qualifier(TimescaleDataSourceConfig.QUALIFIER) JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insert rows built by {@link SnapshotColumns#toRow} with multi-row
+     * statements, split to stay within the bind parameter limit.
+     */
+    public void insertBatch(List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += SnapshotColumns.MAX_ROWS_PER_STATEMENT) {
+            int to = Math.min(from + SnapshotColumns.MAX_ROWS_PER_STATEMENT, rows.size());
+            int start = from;
+            jdbcTemplate.update(SnapshotColumns.insertSql(to - from),
+                    statement -> SnapshotColumns.bind(statement, rows, start, to));
+        }
+    }
+
+    /**
+     * Insert a single snapshot and set its generated id.
+     */
+    public PrinterSnapshot save(PrinterSnapshot snapshot) {
+        List<Object[]> rows = List.<Object[]>of(SnapshotColumns.toRow(snapshot));
+        Long id = jdbcTemplate.execute(SnapshotColumns.insertSql(1) + " RETURNING id", (PreparedStatement statement) -> {
+            SnapshotColumns.bind(statement, rows, 0, 1);
+            try (var rs = statement.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        });
+        snapshot.setId(id);
+        return snapshot;
+    }
+
+    public Optional<PrinterSnapshot> findLatest(UUID printerId) {
+        return jdbcTemplate.query(SELECT + " WHERE printer_id = ? ORDER BY ts DESC LIMIT 1",
+                SNAPSHOT_MAPPER, printerId).stream().findFirst();
+    }
+
+    /**
+     * Latest snapshot of every printer, in one {@code DISTINCT ON} pass over the
+     * {@code (printer_id, ts DESC)} index.
+     */
+    public List<PrinterSnapshot> findLatestPerPrinter() {
+        return jdbcTemplate.query("SELECT DISTINCT ON (printer_id) " + SELECT.substring("SELECT ".length())
+                + " ORDER BY printer_id, ts DESC", SNAPSHOT_MAPPER);
+    }
+
+    /**
+     * Snapshots of a printer between two instants (inclusive), newest first.
+     */
+    public List<PrinterSnapshot> findBetween(UUID printerId, Instant from, Instant to) {
+        return jdbcTemplate.query(SELECT + " WHERE printer_id = ? AND ts BETWEEN ? AND ? ORDER BY ts DESC",
+                SNAPSHOT_MAPPER, printerId, Timestamp.from(from), Timestamp.from(to));
+    }
+
+    /**
+     * Most recent snapshots of a printer, newest first.
+     */
+    public List<PrinterSnapshot> findRecent(UUID printerId, int limit) {
+        return jdbcTemplate.query(SELECT + " WHERE printer_id = ? ORDER BY ts DESC LIMIT ?",
+                SNAPSHOT_MAPPER, printerId, limit);
+    }
+
+    /**
+     * Stream numeric columns of a printer between two instants, oldest first,
+     * through a server-side cursor: rows are never held in memory.
+     *
+     * @param columns numeric snapshot columns, see {@link SnapshotColumns#isNumeric}
+     */
+    public void streamMetrics(UUID printerId, Instant from, Instant to, List<String> columns, MetricRowHandler handler) {
+        for (String column : columns) {
+            if (!SnapshotColumns.isNumeric(column)) {
+                throw new IllegalArgumentException("Unknown metric: " + column);
+            }
+        }
+        String sql = "SELECT ts, " + String.join(", ", columns)
+                + " FROM printer_snapshots WHERE printer_id = ? AND ts BETWEEN ? AND ? ORDER BY ts";
+        double[] values = new double[columns.size()];
+        stream(sql, statement -> {
+            statement.setObject(1, printerId);
+            statement.setTimestamp(2, Timestamp.from(from));
+            statement.setTimestamp(3, Timestamp.from(to));
+        }, rs -> {
+            long ts = rs.getTimestamp(1).getTime();
+            for (int i = 0; i < values.length; i++) {
+                double value = rs.getDouble(i + 2);
+                values[i] = rs.wasNull() ? Double.NaN : value;
+            }
+            handler.row(ts, values);
+        });
+    }
+
+    /**
+     * Stream {@code id}, {@code ts} and the given columns of a printer between two
+     * instants in {@code (ts, id)} order, through a server-side cursor.
+     * Rows strictly after the keyset {@code (afterTs, afterId)} are returned when
+     * {@code afterTs} is set; {@code limit} caps the row count when positive.
+     * The handler sees the result set positioned on each row, with {@code id}
+     * and {@code ts} as columns 1 and 2 followed by {@code columns}.
+     */
+    public void streamRows(UUID printerId, Instant from, Instant to, Instant afterTs, long afterId,
+                           List<String> columns, int limit, RowCallbackHandler handler) {
+        for (String column : columns) {
+            if (SnapshotColumns.sqlTypeOf(column) == null) {
+                throw new IllegalArgumentException("Unknown field: " + column);
+            }
+        }
+        StringBuilder sql = new StringBuilder("SELECT id, ts");
+        for (String column : columns) {
+            sql.append(", ").append(column);
+        }
+        sql.append(" FROM printer_snapshots WHERE printer_id = ? AND ts BETWEEN ? AND ?");
+        if (afterTs != null) {
+            sql.append(" AND (ts, id) > (?, ?)");
+        }
+        sql.append(" ORDER BY ts, id");
+        if (limit > 0) {
+            sql.append(" LIMIT ?");
+        }
+        stream(sql.toString(), statement -> {
+            int index = 1;
+            statement.setObject(index++, printerId);
+            statement.setTimestamp(index++, Timestamp.from(from));
+            statement.setTimestamp(index++, Timestamp.from(to));
+            if (afterTs != null) {
+                statement.setTimestamp(index++, Timestamp.from(afterTs));
+                statement.setLong(index++, afterId);
+            }
+            if (limit > 0) {
+                statement.setInt(index, limit);
+            }
+        }, handler);
+    }
+
+    /**
+     * Stream the snapshots of a printer between two instants (inclusive) in
+     * {@code (ts, id)} order, through a server-side cursor. {@code skipped}
+     * columns are not read and stay null; the printer is not set.
+     */
+    public void streamSnapshots(UUID printerId, Instant from, Instant to, Set<String> skipped,
+                                Consumer<PrinterSnapshot> handler) {
+        List<SnapshotColumns.Column> columns = SnapshotColumns.COLUMNS.stream()
+                .filter(column -> !skipped.contains(column.name()) && !column.name().equals("printer_id"))
+                .toList();
+        String sql = "SELECT id, " + columns.stream().map(SnapshotColumns.Column::name).collect(Collectors.joining(", "))
+                + " FROM printer_snapshots WHERE printer_id = ? AND ts BETWEEN ? AND ? ORDER BY ts, id";
+        stream(sql, statement -> {
+            statement.setObject(1, printerId);
+            statement.setTimestamp(2, Timestamp.from(from));
+            statement.setTimestamp(3, Timestamp.from(to));
+        }, rs -> handler.accept(SnapshotColumns.fromResultSet(rs, columns)));
+    }
+
+    private void stream(String sql, PreparedStatementSetter setter, RowCallbackHandler handler) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(STREAM_FETCH_SIZE);
+                setter.setValues(statement);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        handler.processRow(rs);
+                    }
+                }
+            } finally {
+                rollbackQuietly(connection);
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Rollup of a printer between two instants, newest bucket first.
+     * The bucket containing {@code from} is included.
+     */
+    public List<PrinterHistoryPointDTO> findAggregated(UUID printerId, Instant from, Instant to,
+                                                       HistoryGranularity granularity) {
+        if (granularity.getView() == null) {
+            throw new IllegalArgumentException("No rollup for granularity " + granularity.getParam());
+        }
+        long bucketMs = granularity.getBucket().toMillis();
+        Instant firstBucket = Instant.ofEpochMilli(Math.floorDiv(from.toEpochMilli(), bucketMs) * bucketMs);
+        return jdbcTemplate.query("SELECT * FROM " + granularity.getView()
+                        + " WHERE printer_id = ? AND bucket BETWEEN ? AND ? ORDER BY bucket DESC",
+                POINT_MAPPER, printerId, Timestamp.from(firstBucket), Timestamp.from(to));
+    }
+
+    private static void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException ignored) {
+            // read-only transaction, nothing to undo
+        }
+    }
+
+    private static PrinterHistoryPointDTO.Stats stats(ResultSet rs, String metric) throws SQLException {
+        Double avg = number(rs, metric + "_avg");
+        Double min = number(rs, metric + "_min");
+        Double max = number(rs, metric + "_max");
+        return avg == null && min == null && max == null ? null : new PrinterHistoryPointDTO.Stats(avg, min, max);
+    }
+
+    private static Double number(ResultSet rs, String column) throws SQLException {
+        Object value = rs.getObject(column);
+        return value instanceof Number number ? number.doubleValue() : null;
+    }
+
+    /**
+     * Receives one streamed row; {@code values} follows the requested column
+     * order, holds NaN for nulls and is reused for the next row.
+     */
+    @FunctionalInterface
+    public interface MetricRowHandler {
+        void row(long timestampMillis, double[] values);
+    }
+}
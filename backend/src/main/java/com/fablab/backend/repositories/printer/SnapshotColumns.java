@@ -0,0 +1,409 @@
+package com.fablab.backend.repositories.printer;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.fablab.backend.models.printer.Printer;
+import com.fablab.backend.models.printer.PrinterSnapshot;
+
+/**
+ * Column layout of the TimescaleDB {@code printer_snapshots} hypertable.
+ * A snapshot row is a plain {@code Object[]} in this order: the batched writer
+ * queues rows that hold no reference to the JPA entity or its printer and can
+ * be spilled as JSON, and {@link PrinterTelemetryRepository} maps them back.
+ */
+public final class SnapshotColumns {
+
+    record Column(String name, int sqlType,
+                  Function<PrinterSnapshot, Object> getter,
+                  BiConsumer<PrinterSnapshot, Object> setter) {
+    }
+
+    static final List<Column> COLUMNS = List.of(
+            new Column("printer_id", Types.OTHER,
+                    snapshot -> snapshot.getPrinter().getId(),
+                    (snapshot, value) -> snapshot.setPrinter(Printer.builder().id((UUID) value).build())),
+            new Column("ts", Types.TIMESTAMP,
+                    PrinterSnapshot::getTimestamp,
+                    (snapshot, value) -> snapshot.setTimestamp((Instant) value)),
+            new Column("bed_temp", Types.DOUBLE,
+                    PrinterSnapshot::getBedTemp,
+                    (snapshot, value) -> snapshot.setBedTemp((Double) value)),
+            new Column("nozzle_temp", Types.DOUBLE,
+                    PrinterSnapshot::getNozzleTemp,
+                    (snapshot, value) -> snapshot.setNozzleTemp((Double) value)),
+            new Column("target_bed", Types.DOUBLE,
+                    PrinterSnapshot::getTargetBed,
+                    (snapshot, value) -> snapshot.setTargetBed((Double) value)),
+            new Column("target_nozzle", Types.DOUBLE,
+                    PrinterSnapshot::getTargetNozzle,
+                    (snapshot, value) -> snapshot.setTargetNozzle((Double) value)),
+            new Column("chamber_temp", Types.DOUBLE,
+                    PrinterSnapshot::getChamberTemp,
+                    (snapshot, value) -> snapshot.setChamberTemp((Double) value)),
+            new Column("bed_pow", Types.DOUBLE,
+                    PrinterSnapshot::getBedPow,
+                    (snapshot, value) -> snapshot.setBedPow((Double) value)),
+            new Column("nozzle_pow", Types.DOUBLE,
+                    PrinterSnapshot::getNozzlePow,
+                    (snapshot, value) -> snapshot.setNozzlePow((Double) value)),
+            new Column("pos_x", Types.DOUBLE,
+                    PrinterSnapshot::getPosX,
+                    (snapshot, value) -> snapshot.setPosX((Double) value)),
+            new Column("pos_y", Types.DOUBLE,
+                    PrinterSnapshot::getPosY,
+                    (snapshot, value) -> snapshot.setPosY((Double) value)),
+            new Column("pos_z", Types.DOUBLE,
+                    PrinterSnapshot::getPosZ,
+                    (snapshot, value) -> snapshot.setPosZ((Double) value)),
+            new Column("pos_e", Types.DOUBLE,
+                    PrinterSnapshot::getPosE,
+                    (snapshot, value) -> snapshot.setPosE((Double) value)),
+            new Column("homed_axes", Types.VARCHAR,
+                    PrinterSnapshot::getHomedAxes,
+                    (snapshot, value) -> snapshot.setHomedAxes((String) value)),
+            new Column("max_velocity", Types.DOUBLE,
+                    PrinterSnapshot::getMaxVelocity,
+                    (snapshot, value) -> snapshot.setMaxVelocity((Double) value)),
+            new Column("max_accel", Types.DOUBLE,
+                    PrinterSnapshot::getMaxAccel,
+                    (snapshot, value) -> snapshot.setMaxAccel((Double) value)),
+            new Column("live_velocity", Types.DOUBLE,
+                    PrinterSnapshot::getLiveVelocity,
+                    (snapshot, value) -> snapshot.setLiveVelocity((Double) value)),
+            new Column("live_extruder_velocity", Types.DOUBLE,
+                    PrinterSnapshot::getLiveExtruderVelocity,
+                    (snapshot, value) -> snapshot.setLiveExtruderVelocity((Double) value)),
+            new Column("live_position_x", Types.DOUBLE,
+                    PrinterSnapshot::getLivePositionX,
+                    (snapshot, value) -> snapshot.setLivePositionX((Double) value)),
+            new Column("live_position_y", Types.DOUBLE,
+                    PrinterSnapshot::getLivePositionY,
+                    (snapshot, value) -> snapshot.setLivePositionY((Double) value)),
+            new Column("live_position_z", Types.DOUBLE,
+                    PrinterSnapshot::getLivePositionZ,
+                    (snapshot, value) -> snapshot.setLivePositionZ((Double) value)),
+            new Column("live_position_e", Types.DOUBLE,
+                    PrinterSnapshot::getLivePositionE,
+                    (snapshot, value) -> snapshot.setLivePositionE((Double) value)),
+            new Column("state", Types.VARCHAR,
+                    PrinterSnapshot::getState,
+                    (snapshot, value) -> snapshot.setState((String) value)),
+            new Column("filename", Types.VARCHAR,
+                    PrinterSnapshot::getFilename,
+                    (snapshot, value) -> snapshot.setFilename((String) value)),
+            new Column("progress", Types.DOUBLE,
+                    PrinterSnapshot::getProgress,
+                    (snapshot, value) -> snapshot.setProgress((Double) value)),
+            new Column("total_layers", Types.INTEGER,
+                    PrinterSnapshot::getTotalLayers,
+                    (snapshot, value) -> snapshot.setTotalLayers((Integer) value)),
+            new Column("current_layer", Types.INTEGER,
+                    PrinterSnapshot::getCurrentLayer,
+                    (snapshot, value) -> snapshot.setCurrentLayer((Integer) value)),
+            new Column("print_duration", Types.BIGINT,
+                    PrinterSnapshot::getPrintDuration,
+                    (snapshot, value) -> snapshot.setPrintDuration((Long) value)),
+            new Column("total_duration", Types.BIGINT,
+                    PrinterSnapshot::getTotalDuration,
+                    (snapshot, value) -> snapshot.setTotalDuration((Long) value)),
+            new Column("filament_used", Types.DOUBLE,
+                    PrinterSnapshot::getFilamentUsed,
+                    (snapshot, value) -> snapshot.setFilamentUsed((Double) value)),
+            new Column("display_progress", Types.DOUBLE,
+                    PrinterSnapshot::getDisplayProgress,
+                    (snapshot, value) -> snapshot.setDisplayProgress((Double) value)),
+            new Column("part_fan_speed", Types.DOUBLE,
+                    PrinterSnapshot::getPartFanSpeed,
+                    (snapshot, value) -> snapshot.setPartFanSpeed((Double) value)),
+            new Column("part_fan_rpm", Types.DOUBLE,
+                    PrinterSnapshot::getPartFanRPM,
+                    (snapshot, value) -> snapshot.setPartFanRPM((Double) value)),
+            new Column("hotend_fan_speed", Types.DOUBLE,
+                    PrinterSnapshot::getHotendFanSpeed,
+                    (snapshot, value) -> snapshot.setHotendFanSpeed((Double) value)),
+            new Column("filament_detected", Types.BOOLEAN,
+                    PrinterSnapshot::getFilamentDetected,
+                    (snapshot, value) -> snapshot.setFilamentDetected((Boolean) value)),
+            new Column("cpu_temp", Types.DOUBLE,
+                    PrinterSnapshot::getCpuTemp,
+                    (snapshot, value) -> snapshot.setCpuTemp((Double) value)),
+            new Column("cpu_usage", Types.VARCHAR,
+                    PrinterSnapshot::getCpuUsage,
+                    (snapshot, value) -> snapshot.setCpuUsage((String) value)),
+            new Column("mem_usage", Types.VARCHAR,
+                    PrinterSnapshot::getMemUsage,
+                    (snapshot, value) -> snapshot.setMemUsage((String) value)),
+            new Column("system_uptime", Types.BIGINT,
+                    PrinterSnapshot::getSystemUptime,
+                    (snapshot, value) -> snapshot.setSystemUptime((Long) value)),
+            new Column("bed_mesh_profile", Types.VARCHAR,
+                    PrinterSnapshot::getBedMeshProfile,
+                    (snapshot, value) -> snapshot.setBedMeshProfile((String) value)),
+            new Column("bed_mesh_min", Types.VARCHAR,
+                    PrinterSnapshot::getBedMeshMin,
+                    (snapshot, value) -> snapshot.setBedMeshMin((String) value)),
+            new Column("bed_mesh_max", Types.VARCHAR,
+                    PrinterSnapshot::getBedMeshMax,
+                    (snapshot, value) -> snapshot.setBedMeshMax((String) value)),
+            new Column("bed_mesh_matrix", Types.VARCHAR,
+                    PrinterSnapshot::getBedMeshMatrix,
+                    (snapshot, value) -> snapshot.setBedMeshMatrix((String) value)),
+            new Column("z_tilt_applied", Types.BOOLEAN,
+                    PrinterSnapshot::getZTiltApplied,
+                    (snapshot, value) -> snapshot.setZTiltApplied((Boolean) value)),
+            new Column("raw_payload", Types.VARCHAR,
+                    PrinterSnapshot::getRawPayload,
+                    (snapshot, value) -> snapshot.setRawPayload((String) value)),
+            new Column("z_height", Types.DOUBLE,
+                    PrinterSnapshot::getZHeight,
+                    (snapshot, value) -> snapshot.setZHeight((Double) value)),
+            // Appended last: rows spilled before it was added stay readable
+            new Column("aux_sensors", Types.VARCHAR,
+                    PrinterSnapshot::getAuxSensors,
+                    (snapshot, value) -> snapshot.setAuxSensors((String) value)));
+
+    static final int COUNT = COLUMNS.size();
+
+    private static final List<String> COLUMN_NAMES = COLUMNS.stream().map(Column::name).toList();
+
+    // PostgreSQL accepts at most 32767 bind parameters per statement
+    static final int MAX_ROWS_PER_STATEMENT = 32767 / COUNT;
+
+    private static final String INSERT_PREFIX = "INSERT INTO printer_snapshots ("
+            + COLUMNS.stream().map(Column::name).collect(Collectors.joining(", "))
+            + ") VALUES ";
+
+    // Stored as JSONB in the hypertable, bound as text
+    private static final Set<String> JSON_COLUMNS = Set.of("raw_payload", "aux_sensors");
+
+    private static final String ROW_PLACEHOLDERS = "("
+            + COLUMNS.stream()
+                    .map(column -> JSON_COLUMNS.contains(column.name()) ? "CAST(? AS jsonb)" : "?")
+                    .collect(Collectors.joining(", "))
+            + ")";
+
+    private SnapshotColumns() {
+    }
+
+    /**
+     * Column names in {@link #COLUMNS} order.
+     */
+    public static List<String> columnNames() {
+        return COLUMN_NAMES;
+    }
+
+    /**
+     * SQL type of a column ({@link Types}), null for an unknown column.
+     */
+    public static Integer sqlTypeOf(String name) {
+        for (Column column : COLUMNS) {
+            if (column.name().equals(name)) {
+                return column.sqlType();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Value getter of a column, null for an unknown column.
+     */
+    public static Function<PrinterSnapshot, Object> getterOf(String name) {
+        for (Column column : COLUMNS) {
+            if (column.name().equals(name)) {
+                return column.getter();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether a column holds JSON text (raw_payload, aux_sensors).
+     */
+    public static boolean isJson(String name) {
+        return JSON_COLUMNS.contains(name);
+    }
+
+    /**
+     * Column behind an API field name, given in camelCase ({@code nozzleTemp})
+     * or as the column itself ({@code nozzle_temp}); null when unknown.
+     */
+    public static String columnOf(String field) {
+        for (Column column : COLUMNS) {
+            if (column.name().equals(field) || fieldName(column.name()).equals(field)) {
+                return column.name();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * camelCase API field name of a column ({@code live_position_x} gives {@code livePositionX}).
+     */
+    public static String fieldName(String column) {
+        StringBuilder field = new StringBuilder(column.length());
+        boolean upper = false;
+        for (int i = 0; i < column.length(); i++) {
+            char c = column.charAt(i);
+            if (c == '_') {
+                upper = true;
+            } else {
+                field.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return field.toString();
+    }
+
+    /**
+     * Whether a column holds a number (usable as a chart metric).
+     */
+    public static boolean isNumeric(String name) {
+        Integer type = sqlTypeOf(name);
+        return type != null && (type == Types.DOUBLE || type == Types.INTEGER || type == Types.BIGINT);
+    }
+
+    /**
+     * Column values of a snapshot, in {@link #COLUMNS} order.
+     */
+    public static Object[] toRow(PrinterSnapshot snapshot) {
+        Object[] row = new Object[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            row[i] = COLUMNS.get(i).getter().apply(snapshot);
+        }
+        if (row[1] == null) {
+            row[1] = Instant.now();
+        }
+        return row;
+    }
+
+    /**
+     * Multi-row {@code INSERT ... VALUES (...), (...), ...} for the given number of rows.
+     */
+    static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * (ROW_PLACEHOLDERS.length() + 2));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDERS);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Bind the rows {@code [from, to)} of the batch to a statement built by {@link #insertSql}.
+     */
+    static void bind(PreparedStatement statement, List<Object[]> rows, int from, int to) throws SQLException {
+        int index = 1;
+        for (int r = from; r < to; r++) {
+            Object[] row = rows.get(r);
+            for (int c = 0; c < COUNT; c++) {
+                int sqlType = COLUMNS.get(c).sqlType();
+                Object value = row[c];
+                if (value == null) {
+                    statement.setNull(index++, sqlType);
+                } else if (value instanceof Instant instant) {
+                    statement.setTimestamp(index++, Timestamp.from(instant));
+                } else {
+                    statement.setObject(index++, value, sqlType);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restore Java types of a row read back from a JSON spill file
+     * (UUID and timestamp are written as text, numbers may have been narrowed).
+     */
+    public static Object[] fromJson(Object[] row) {
+        Object[] restored = new Object[COUNT];
+        for (int c = 0; c < COUNT && c < row.length; c++) {
+            Object value = row[c];
+            if (value == null) {
+                continue;
+            }
+            restored[c] = switch (COLUMNS.get(c).sqlType()) {
+                case Types.OTHER -> UUID.fromString(value.toString());
+                case Types.TIMESTAMP -> Instant.parse(value.toString());
+                case Types.DOUBLE -> ((Number) value).doubleValue();
+                case Types.INTEGER -> ((Number) value).intValue();
+                case Types.BIGINT -> ((Number) value).longValue();
+                default -> value;
+            };
+        }
+        return restored;
+    }
+
+    /**
+     * JSON-friendly copy of a row (UUID and timestamp as text).
+     */
+    public static Object[] toJson(Object[] row) {
+        Object[] json = row.clone();
+        for (int c = 0; c < COUNT; c++) {
+            if (json[c] instanceof UUID || json[c] instanceof Instant) {
+                json[c] = json[c].toString();
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Map the current result set row (every column plus {@code id}) to a snapshot.
+     * The printer is a reference carrying only its id.
+     */
+    static PrinterSnapshot fromResultSet(ResultSet rs) throws SQLException {
+        PrinterSnapshot snapshot = new PrinterSnapshot();
+        snapshot.setId(rs.getLong("id"));
+        for (Column column : COLUMNS) {
+            column.setter().accept(snapshot, read(rs, rs.findColumn(column.name()), column));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Map the current result set row to a snapshot, reading {@code id} from
+     * column 1 and the given columns from column 2 on, by position.
+     */
+    static PrinterSnapshot fromResultSet(ResultSet rs, List<Column> columns) throws SQLException {
+        PrinterSnapshot snapshot = new PrinterSnapshot();
+        snapshot.setId(rs.getLong(1));
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            column.setter().accept(snapshot, read(rs, i + 2, column));
+        }
+        return snapshot;
+    }
+
+    private static Object read(ResultSet rs, int index, Column column) throws SQLException {
+        Object value = switch (column.sqlType()) {
+            case Types.TIMESTAMP -> {
+                Timestamp timestamp = rs.getTimestamp(index);
+                yield timestamp != null ? timestamp.toInstant() : null;
+            }
+            case Types.VARCHAR -> rs.getString(index);
+            default -> rs.getObject(index);
+        };
+        // NUMERIC columns of older hypertables come back as BigDecimal
+        if (value instanceof Number number) {
+            value = switch (column.sqlType()) {
+                case Types.DOUBLE -> number.doubleValue();
+                case Types.INTEGER -> number.intValue();
+                case Types.BIGINT -> number.longValue();
+                default -> value;
+            };
+        }
+        return value;
+    }
+}
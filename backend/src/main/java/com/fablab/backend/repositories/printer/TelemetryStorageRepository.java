@@ -0,0 +1,117 @@
+package com.fablab.backend.repositories.printer;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.fablab.backend.config.TimescaleDataSourceConfig;
+import com.fablab.backend.dto.HistoryGranularity;
+import com.fablab.backend.dto.TelemetryTierDTO;
+
+/**
+ * Chunk maintenance and size statistics of the telemetry hypertable and its
+ * continuous aggregates (TimescaleDB functions only, no row access).
+ */
+@Repository
+public class TelemetryStorageRepository {
+
+    public static final String HYPERTABLE = "printer_snapshots";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TelemetryStorageRepository(@Qualifier(TimescaleDataSourceConfig.QUALIFIER) JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Compress the raw chunks older than the given number of days.
+     *
+     * @return number of chunks compressed by this call
+     */
+    public int compressChunksOlderThan(int days) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(compress_chunk(format('%I.%I', chunk_schema, chunk_name)::regclass))"
+                        + " FROM timescaledb_information.chunks"
+                        + " WHERE hypertable_name = '" + HYPERTABLE + "' AND NOT is_compressed"
+                        + " AND range_end < now() - make_interval(days => ?)",
+                Integer.class, days);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Drop the chunks of a hypertable or continuous aggregate older than the given number of days.
+     *
+     * @return number of chunks dropped
+     */
+    public int dropChunksOlderThan(String relation, int days) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM drop_chunks(?::regclass, older_than => make_interval(days => ?))",
+                Integer.class, relation, days);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Raw and compressed tiers of the hypertable.
+     *
+     * @param compressAfterDays age at which chunks are compressed (end of the raw tier), null when never
+     * @param dropAfterDays age at which chunks are dropped (end of the compressed tier), null when never
+     */
+    public List<TelemetryTierDTO> findHypertableTiers(Integer compressAfterDays, Integer dropAfterDays) {
+        return jdbcTemplate.query(
+                "SELECT count(*) FILTER (WHERE NOT c.is_compressed) AS raw_chunks,"
+                        + " count(*) FILTER (WHERE c.is_compressed) AS compressed_chunks,"
+                        + " min(c.range_start) FILTER (WHERE NOT c.is_compressed) AS raw_oldest,"
+                        + " min(c.range_start) FILTER (WHERE c.is_compressed) AS compressed_oldest,"
+                        + " coalesce(hypertable_size('" + HYPERTABLE + "'), 0) AS total_bytes,"
+                        + " (SELECT coalesce(sum(s.after_compression_total_bytes), 0)"
+                        + "  FROM hypertable_compression_stats('" + HYPERTABLE + "') s) AS compressed_bytes,"
+                        + " (SELECT coalesce(sum(s.before_compression_total_bytes), 0)"
+                        + "  FROM hypertable_compression_stats('" + HYPERTABLE + "') s) AS uncompressed_bytes"
+                        + " FROM timescaledb_information.chunks c WHERE c.hypertable_name = '" + HYPERTABLE + "'",
+                rs -> {
+                    rs.next();
+                    long compressedBytes = rs.getLong("compressed_bytes");
+                    return List.of(
+                            new TelemetryTierDTO("raw", HYPERTABLE, compressAfterDays,
+                                    rs.getLong("raw_chunks"),
+                                    Math.max(0, rs.getLong("total_bytes") - compressedBytes),
+                                    null, instant(rs, "raw_oldest")),
+                            new TelemetryTierDTO("compressed", HYPERTABLE, dropAfterDays,
+                                    rs.getLong("compressed_chunks"), compressedBytes,
+                                    rs.getLong("uncompressed_bytes"), instant(rs, "compressed_oldest")));
+                });
+    }
+
+    /**
+     * Size of the continuous aggregate holding a rollup.
+     */
+    public TelemetryTierDTO findRollupTier(HistoryGranularity granularity, Integer retentionDays) {
+        List<TelemetryTierDTO> tiers = jdbcTemplate.query(
+                "SELECT coalesce(hypertable_size(format('%I.%I', a.materialization_hypertable_schema,"
+                        + " a.materialization_hypertable_name)::regclass), 0) AS bytes,"
+                        + " count(c.chunk_name) AS chunks, min(c.range_start) AS oldest"
+                        + " FROM timescaledb_information.continuous_aggregates a"
+                        + " LEFT JOIN timescaledb_information.chunks c"
+                        + " ON c.hypertable_schema = a.materialization_hypertable_schema"
+                        + " AND c.hypertable_name = a.materialization_hypertable_name"
+                        + " WHERE a.view_name = ?"
+                        + " GROUP BY a.materialization_hypertable_schema, a.materialization_hypertable_name",
+                (rs, rowNum) -> new TelemetryTierDTO(granularity.getParam(), granularity.getView(), retentionDays,
+                        rs.getLong("chunks"), rs.getLong("bytes"), null, instant(rs, "oldest")),
+                granularity.getView());
+        return tiers.isEmpty()
+                ? new TelemetryTierDTO(granularity.getParam(), granularity.getView(), retentionDays, 0, 0, null, null)
+                : tiers.get(0);
+    }
+
+    private static Instant instant(ResultSet rs, String column) throws SQLException {
+        Timestamp value = rs.getTimestamp(column);
+        return value == null ? null : value.toInstant();
+    }
+}
@@ -14,6 +14,12 @@ import java.io.IOException;
 /**
  * Extracts JWT bearer tokens from incoming requests and populates the Spring
  * Security context when the token is valid.
+ * <p>
+ * Browsers cannot set headers on an {@code EventSource} or a {@code WebSocket},
+ * so the live streams ({@code .../stream} Server-Sent Events and the
+ * {@code .../motion} WebSocket handshake) also accept the token as an
+ * {@code access_token} query parameter. Every other endpoint only reads the
+ * header, keeping tokens out of ordinary URLs.
  */
 @Component
 public class JwtAuthenticationFilter extends GenericFilter {
@@ -24,8 +30,11 @@ public class JwtAuthenticationFilter extends GenericFilter {
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
+    private static final String TOKEN_PARAMETER = "access_token";
+
     /**
-     * Validates the JWT from the {@code Authorization} header and loads the
+     * Validates the JWT from the {@code Authorization} header (or the
+     * {@code access_token} parameter of a stream request) and loads the
      * associated user into the security context before continuing the filter
      * chain.
      *
@@ -40,22 +49,45 @@ public class JwtAuthenticationFilter extends GenericFilter {
             throws IOException, ServletException {
 
         HttpServletRequest request = (HttpServletRequest) req;
-        String authHeader = request.getHeader("Authorization");
+        String token = resolveToken(request);
 
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            String token = authHeader.substring(7);
-            if (tokenProvider.validateToken(token)) {
-                String username = tokenProvider.getUsernameFromToken(token);
-                var userDetails = userDetailsService.loadUserByUsername(username);
+        if (token != null && tokenProvider.validateToken(token)) {
+            String username = tokenProvider.getUsernameFromToken(token);
+            var userDetails = userDetailsService.loadUserByUsername(username);
 
-                var auth = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
+            var auth = new UsernamePasswordAuthenticationToken(
+                    userDetails, null, userDetails.getAuthorities());
 
-                auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(auth);
-            }
+            auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(auth);
         }
 
         chain.doFilter(req, res);
     }
+
+    /**
+     * Token of the {@code Authorization} header, else the {@code access_token}
+     * parameter of a stream request, else null.
+     */
+    private static String resolveToken(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+        if (isStreamRequest(request)) {
+            String token = request.getParameter(TOKEN_PARAMETER);
+            return token != null && !token.isEmpty() ? token : null;
+        }
+        return null;
+    }
+
+    /**
+     * SSE subscription or WebSocket handshake on a printer live stream.
+     */
+    private static boolean isStreamRequest(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return "GET".equals(request.getMethod())
+                && uri.startsWith(request.getContextPath() + "/api/printers/")
+                && (uri.endsWith("/stream") || uri.endsWith("/motion"));
+    }
 }
@@ -6,6 +6,8 @@ import com.fablab.backend.repositories.AuditLogRepository;
 import com.fablab.backend.repositories.PasswordResetTokenRepository;
 import com.fablab.backend.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,6 +19,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class AdminUserService {
 
+    private static final Logger log = LoggerFactory.getLogger(AdminUserService.class);
+
     private final UserRepository userRepository;
     private final PasswordResetTokenRepository passwordResetTokenRepository;
     private final AuditLogRepository auditLogRepository;
@@ -81,7 +85,10 @@ public class AdminUserService {
     }
 
     /**
-     * Deletes a user account after enforcing guardrails.
+     * Deletes a user account after enforcing guardrails. The user's queued
+     * audit entries are written first, so the purge removes them too; if they
+     * cannot be, the deletion is refused with 503 rather than leaving entries
+     * to reappear.
      *
      * @param userId        identifier of the user to delete
      * @param actorUsername username of the requesting super admin
@@ -102,6 +109,12 @@ public class AdminUserService {
         }
 
         passwordResetTokenRepository.deleteByUser_Id(user.getId());
+        // Entries of the user still queued would otherwise be written after the purge
+        if (!auditLogService.flush()) {
+            log.warn("Audit log not flushed, deletion of user {} aborted", user.getUsername());
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Audit log could not be flushed, retry later");
+        }
         auditLogRepository.deleteByUserId(user.getId());
         userRepository.delete(user);
         auditLogService.logAction(actor.getId(), "USER_DELETE",
@@ -0,0 +1,419 @@
+package com.fablab.backend.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import com.fablab.backend.models.AuditLog;
+import com.fablab.backend.repositories.AuditLogBatchRepository;
+import com.fablab.backend.repositories.DataAccessErrors;
+
+/**
+ * Asynchronous writer of audit entries.
+ * <p>
+ * Callers only put the entry in a bounded ring buffer; a single writer thread
+ * drains it and inserts entries with multi-row statements, flushing when a
+ * batch is full or when the oldest queued entry has waited
+ * {@code audit.flush-interval-ms}. When the buffer is full the entry is
+ * dropped and counted rather than making a request wait on the database.
+ * If the database is unreachable (connection or other transient error), the
+ * writer keeps its batch and waits a growing delay before the next attempt. Any other error
+ * (e.g. a constraint violation) would fail again on retry: the batch is then
+ * written row by row and the rows that still fail are dropped and counted as
+ * rejected. On shutdown the buffer is drained.
+ * <p>
+ * Noisy actions can be throttled per action code ({@code PREFIX*} matches a
+ * family): {@code audit.rate-limits} keeps at most N entries per window
+ * ({@code NEW_ALERT_LOG=1/1h}) and notes how many were skipped on the next
+ * kept one; {@code audit.sample-rates} keeps one entry in N
+ * ({@code PRINTER_POLL=100}).
+ */
+@Component
+public class AuditLogAppender {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLogAppender.class);
+    private static final long MAX_RETRY_DELAY_MS = 30000;
+    private static final long DROP_WARNING_INTERVAL_NS = TimeUnit.SECONDS.toNanos(10);
+
+    /** Throttling of one action code; shared by the calling threads. */
+    private static final class Throttle {
+        private final int limit;
+        private final long windowNanos;
+        private final int sampleEvery;
+        private long windowStart;
+        private long count;
+        private long suppressed;
+
+        private Throttle(int limit, long windowNanos, int sampleEvery) {
+            this.limit = limit;
+            this.windowNanos = windowNanos;
+            this.sampleEvery = sampleEvery;
+        }
+
+        /**
+         * @return -1 to skip the entry, otherwise the number of entries skipped since the last kept one
+         */
+        private synchronized long admit(long now) {
+            if (sampleEvery > 1) {
+                return count++ % sampleEvery == 0 ? 0 : -1;
+            }
+            if (count == 0 || now - windowStart >= windowNanos) {
+                windowStart = now;
+                count = 0;
+            }
+            if (count >= limit) {
+                suppressed++;
+                return -1;
+            }
+            count++;
+            long skipped = suppressed;
+            suppressed = 0;
+            return skipped;
+        }
+    }
+
+    private static final Throttle UNTHROTTLED = new Throttle(0, 0, 0);
+
+    private final AuditLogBatchRepository batchRepository;
+    private final BlockingQueue<AuditLog> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long shutdownTimeoutMs;
+    private final Map<String, Throttle> rules = new ConcurrentHashMap<>();
+    private final Map<String, Throttle> throttles = new ConcurrentHashMap<>();
+
+    // Entries accepted by append, and entries written or given up by the writer
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong lastDropWarning = new AtomicLong(System.nanoTime() - DROP_WARNING_INTERVAL_NS);
+
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public AuditLogAppender(
+            AuditLogBatchRepository batchRepository,
+            @Value("${audit.queue-capacity:8192}") int queueCapacity,
+            @Value("${audit.batch-size:500}") int batchSize,
+            @Value("${audit.flush-interval-ms:250}") long flushIntervalMs,
+            @Value("${audit.shutdown-timeout-ms:10000}") long shutdownTimeoutMs,
+            @Value("${audit.rate-limits:}") String rateLimits,
+            @Value("${audit.sample-rates:}") String sampleRates) {
+        this.batchRepository = batchRepository;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = flushIntervalMs;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        parseRules(rateLimits, true);
+        parseRules(sampleRates, false);
+
+        this.writerThread = new Thread(this::run, "audit-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queue an entry. Never blocks: the entry is dropped when the buffer is full
+     * and skipped when its action is throttled.
+     */
+    public void append(AuditLog entry) {
+        if (!rules.isEmpty()) {
+            Throttle throttle = throttleOf(entry.getAction());
+            long skipped = throttle == UNTHROTTLED ? 0 : throttle.admit(System.nanoTime());
+            if (skipped < 0) {
+                throttled.incrementAndGet();
+                return;
+            }
+            if (skipped > 0) {
+                String note = "(+" + skipped + " similar entries skipped)";
+                entry.setDetails(entry.getDetails() == null ? note : entry.getDetails() + " " + note);
+            }
+        }
+        // Counted before the offer so that flush() never misses an entry appended before it
+        appended.incrementAndGet();
+        if (!queue.offer(entry)) {
+            done(1);
+            dropped.incrementAndGet();
+            long now = System.nanoTime();
+            long last = lastDropWarning.get();
+            if (now - last >= DROP_WARNING_INTERVAL_NS && lastDropWarning.compareAndSet(last, now)) {
+                log.warn("Audit buffer full, dropped {} entries so far", dropped.get());
+            }
+        }
+    }
+
+    /**
+     * Wait until every entry appended before this call is written (or given up),
+     * at most the shutdown timeout.
+     *
+     * @return false on timeout
+     */
+    public boolean flush() {
+        long target = appended.get();
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMs;
+        synchronized (processed) {
+            while (processed.get() < target) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    return false;
+                }
+                try {
+                    processed.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Entries waiting in memory.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Entries refused by the database (not retried).
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    /**
+     * Stop the writer thread once it has drained the buffer,
+     * waiting for it up to the shutdown timeout.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive() || !queue.isEmpty()) {
+            log.warn("Audit writer stopped with {} entries still queued", queue.size());
+        }
+        log.info("Audit writer stopped: {} written, {} dropped, {} rejected, {} throttled",
+                written.get(), dropped.get(), rejected.get(), throttled.get());
+    }
+
+    // ===== THROTTLING =====
+
+    /**
+     * Parse {@code ACTION=N/window} (rate limits) or {@code ACTION=N} (sampling) entries, comma-separated.
+     */
+    private void parseRules(String value, boolean rateLimit) {
+        if (value == null || value.isBlank()) {
+            return;
+        }
+        for (String entry : value.split(",")) {
+            String rule = entry.trim();
+            int equals = rule.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Invalid audit throttle: " + rule);
+            }
+            String action = rule.substring(0, equals).trim();
+            String setting = rule.substring(equals + 1).trim();
+            try {
+                if (rateLimit) {
+                    int slash = setting.indexOf('/');
+                    Duration window = DurationStyle.detectAndParse(setting.substring(slash + 1).trim());
+                    rules.put(action, new Throttle(Integer.parseInt(setting.substring(0, slash).trim()),
+                            window.toNanos(), 0));
+                } else {
+                    rules.put(action, new Throttle(0, 0, Integer.parseInt(setting)));
+                }
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid audit throttle: " + rule, e);
+            }
+        }
+    }
+
+    /**
+     * Throttle state of an action: its own copy of the matching rule, so every
+     * action of a {@code PREFIX*} family is counted separately.
+     */
+    private Throttle throttleOf(String action) {
+        if (action == null) {
+            return UNTHROTTLED;
+        }
+        Throttle throttle = throttles.get(action);
+        if (throttle != null) {
+            return throttle;
+        }
+        return throttles.computeIfAbsent(action, key -> {
+            Throttle rule = rules.get(key);
+            if (rule == null) {
+                // Longest matching prefix wins
+                int longest = -1;
+                for (Map.Entry<String, Throttle> candidate : rules.entrySet()) {
+                    String pattern = candidate.getKey();
+                    String prefix = pattern.substring(0, pattern.length() - 1);
+                    if (pattern.endsWith("*") && key.startsWith(prefix) && prefix.length() > longest) {
+                        rule = candidate.getValue();
+                        longest = prefix.length();
+                    }
+                }
+            }
+            return rule == null ? UNTHROTTLED : new Throttle(rule.limit, rule.windowNanos, rule.sampleEvery);
+        });
+    }
+
+    // ===== WRITER THREAD =====
+
+    private void run() {
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        long batchDeadline = 0;
+        long retryDelayMs = 0;
+        long retryAt = 0;
+
+        while (running) {
+            try {
+                long now = System.currentTimeMillis();
+                if (batch.size() < batchSize) {
+                    long wait = batch.isEmpty()
+                            ? Math.max(flushIntervalMs, retryAt - now)
+                            : Math.max(batchDeadline, retryAt) - now;
+                    AuditLog entry = queue.poll(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+                    if (entry != null) {
+                        if (batch.isEmpty()) {
+                            batchDeadline = System.currentTimeMillis() + flushIntervalMs;
+                        }
+                        batch.add(entry);
+                        queue.drainTo(batch, batchSize - batch.size());
+                    }
+                } else if (retryAt > now) {
+                    // Full batch during a backoff: entries arriving meanwhile wait in the queue
+                    Thread.sleep(retryAt - now);
+                }
+
+                // No attempt before the end of the backoff, whatever arrives meanwhile
+                if (System.currentTimeMillis() >= retryAt && (batch.size() >= batchSize
+                        || (!batch.isEmpty() && System.currentTimeMillis() >= batchDeadline))) {
+                    writeBatch(batch);
+                    retryDelayMs = 0;
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested: leave the loop and drain below
+            } catch (Exception e) {
+                retryDelayMs = Math.min(Math.max(retryDelayMs * 2, 1000), MAX_RETRY_DELAY_MS);
+                retryAt = System.currentTimeMillis() + retryDelayMs;
+                log.warn("Audit batch of {} entries failed, retrying in {} ms: {}",
+                        batch.size(), retryDelayMs, e.getMessage());
+            }
+        }
+        drainOnShutdown(batch);
+    }
+
+    /**
+     * Write a batch and clear it. Entries the database rejects are written
+     * one by one and the refused ones dropped. On a transient error the
+     * batch keeps exactly the entries not written yet, for the next attempt.
+     */
+    private void writeBatch(List<AuditLog> batch) {
+        try {
+            write(batch);
+        } catch (RuntimeException e) {
+            if (DataAccessErrors.isTransient(e)) {
+                throw e;
+            }
+            log.warn("Audit batch of {} entries rejected, writing it row by row: {}", batch.size(), e.getMessage());
+            writeRowByRow(batch);
+        }
+        batch.clear();
+    }
+
+    /**
+     * Write a rejected batch one row at a time, dropping the rows the database
+     * refuses. Written and dropped rows leave the batch; a transient error
+     * stops the walk and is rethrown, so the remaining rows are retried later.
+     */
+    private void writeRowByRow(List<AuditLog> batch) {
+        int handled = 0;
+        int refused = 0;
+        try {
+            for (AuditLog entry : batch) {
+                try {
+                    write(List.of(entry));
+                } catch (RuntimeException e) {
+                    if (DataAccessErrors.isTransient(e)) {
+                        throw e;
+                    }
+                    refused++;
+                    rejected.incrementAndGet();
+                    done(1);
+                    log.debug("Audit entry {} rejected: {}", entry.getAction(), e.getMessage());
+                }
+                handled++;
+            }
+        } finally {
+            batch.subList(0, handled).clear();
+            if (refused > 0) {
+                log.warn("Dropped {} audit entries rejected by the database, {} rejected so far",
+                        refused, rejected.get());
+            }
+        }
+    }
+
+    private void drainOnShutdown(List<AuditLog> batch) {
+        // Clear the shutdown interrupt so the connection pool still hands out connections
+        Thread.interrupted();
+        queue.drainTo(batch);
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            writeBatch(batch);
+        } catch (Exception e) {
+            log.error("Final audit flush failed, {} entries lost: {}", batch.size(), e.getMessage());
+            done(batch.size());
+        }
+    }
+
+    private void write(List<AuditLog> entries) {
+        batchRepository.insertBatch(entries);
+        written.addAndGet(entries.size());
+        done(entries.size());
+    }
+
+    private void done(int entries) {
+        synchronized (processed) {
+            processed.addAndGet(entries);
+            processed.notifyAll();
+        }
+    }
+}
@@ -3,18 +3,22 @@ package com.fablab.backend.services;
 import org.springframework.stereotype.Service;
 
 import com.fablab.backend.models.AuditLog;
-import com.fablab.backend.repositories.AuditLogRepository;
 
 import lombok.RequiredArgsConstructor;
 
+/**
+ * Records audit entries through the asynchronous {@link AuditLogAppender}:
+ * logging an action never waits on the database.
+ */
 @Service
 @RequiredArgsConstructor
 public class AuditLogService {
 
-    private final AuditLogRepository auditRepo;
+    private final AuditLogAppender appender;
 
     /**
-     * Persists an audit entry describing an action performed by a user.
+     * Queues an audit entry describing an action performed by a user.
+     * The entry is timestamped now and written within the appender's flush interval.
      *
      * @param userId  identifier of the user who triggered the action
      * @param action  short action code to record
@@ -25,6 +29,16 @@ public class AuditLogService {
         log.setUserId(userId);
         log.setAction(action);
         log.setDetails(details);
-        auditRepo.save(log);
+        appender.append(log);
     }
-}
\ No newline at end of file
+
+    /**
+     * Waits until the entries logged so far are in the database, e.g. before
+     * deleting a user's entries.
+     *
+     * @return false when they could not be written in time
+     */
+    public boolean flush() {
+        return appender.flush();
+    }
+}
@@ -9,6 +9,7 @@ import com.fablab.backend.dto.DashboardCountsDTO;
 import com.fablab.backend.models.Alert;
 import com.fablab.backend.models.printer.Printer;
 import com.fablab.backend.models.printer.PrinterStatus;
+import com.fablab.backend.printer.board.PrinterStateBoard;
 import com.fablab.backend.repositories.AlertRepository;
 import com.fablab.backend.repositories.AuditLogRepository;
 import com.fablab.backend.repositories.UserRepository;
@@ -24,6 +25,7 @@ public class DashboardService {
     private final AuditLogRepository auditLogRepository;
     private final AlertRepository alertRepository;
     private final PrinterRepository printerRepository;
+    private final PrinterStateBoard stateBoard;
 
     public DashboardCountsDTO getCounts() {
         long userCount = userRepository.count();
@@ -32,8 +34,9 @@ public class DashboardService {
                 + auditLogRepository.countByActionContainingIgnoreCase("ALERT");*/
         long alertCount = alertRepository.findByStatus(Alert.Status.UNRESOLVED).size();
         
-        // Availability rule: a printer is considered available when its persisted status is IDLE.
-        long printerAvailableCount = printerRepository.countByStatus(PrinterStatus.IDLE);
+        // Availability rule: a printer is considered available when its status is IDLE.
+        // Statuses come from the state board, kept in sync with the persisted ones by polling.
+        long printerAvailableCount = stateBoard.countByStatus(PrinterStatus.IDLE);
 
         return new DashboardCountsDTO(userCount, alertCount, printerAvailableCount);
     }
@@ -1,26 +1,44 @@
 package com.fablab.backend.services.printer;
 
+import com.fablab.backend.dto.HistoryGranularity;
+import com.fablab.backend.dto.HistorySeriesDTO;
 import com.fablab.backend.dto.PrinterCommandType;
 import com.fablab.backend.models.User;
 import com.fablab.backend.models.printer.Printer;
 import com.fablab.backend.models.printer.PrinterSnapshot;
 import com.fablab.backend.models.printer.PrinterStatus;
 import com.fablab.backend.models.printer.PrinterType;
+import com.fablab.backend.printer.board.PrinterStateBoard;
 import com.fablab.backend.printer.connector.ConnectorRegistry;
 import com.fablab.backend.printer.connector.PrinterConnector;
 import com.fablab.backend.printer.connector.RawPrinterState;
+import com.fablab.backend.printer.history.HistoryCursor;
+import com.fablab.backend.printer.history.HistoryStream;
+import com.fablab.backend.printer.history.LttbDownsampler;
+import com.fablab.backend.printer.ingest.SnapshotIngest;
+import com.fablab.backend.printer.polling.PollCadence;
+import com.fablab.backend.printer.polling.PrinterPollingService;
+import com.fablab.backend.printer.retention.TelemetryRetentionService;
 import com.fablab.backend.repositories.printer.PrinterRepository;
-import com.fablab.backend.repositories.printer.PrinterSnapshotRepository;
+import com.fablab.backend.repositories.printer.PrinterTelemetryRepository;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Coordinates printer operations between repositories and connectors.
@@ -32,8 +50,17 @@ public class PrinterService {
     private static final Logger log = LoggerFactory.getLogger(PrinterService.class);
 
     private final PrinterRepository printerRepository;
-    private final PrinterSnapshotRepository snapshotRepository;
+    private final PrinterTelemetryRepository telemetryRepository;
     private final ConnectorRegistry connectorRegistry;
+    private final TelemetryRetentionService retentionService;
+    private final PrinterStateBoard stateBoard;
+    private final PrinterPollingService pollingService;
+
+    /** Live fetches in progress, shared by concurrent callers of the same printer */
+    private final Map<UUID, CompletableFuture<PrinterSnapshot>> liveFetches = new ConcurrentHashMap<>();
+
+    @Value("${printer.state.max-age-ms:2000}")
+    private long stateMaxAgeMs;
 
     public List<Printer> listPrinters() {
         return printerRepository.findAll();
@@ -56,45 +83,211 @@ public class PrinterService {
         return printerRepository.save(printer);
     }
 
-    @Transactional
+    /**
+     * Current state of a printer, fetched live unless the state board already
+     * holds a snapshot younger than {@code printer.state.max-age-ms}.
+     * Concurrent callers for the same printer share a single fetch. No
+     * transaction is held: the connector I/O runs between two short writes.
+     */
     public PrinterSnapshot fetchAndPersistSnapshot(UUID printerId) {
+        Optional<PrinterSnapshot> cached = stateBoard.getLatestSnapshot(printerId)
+                .filter(snapshot -> snapshot.getTimestamp() != null
+                        && snapshot.getTimestamp().isAfter(Instant.now().minusMillis(stateMaxAgeMs)));
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        CompletableFuture<PrinterSnapshot> fetch = new CompletableFuture<>();
+        CompletableFuture<PrinterSnapshot> inFlight = liveFetches.putIfAbsent(printerId, fetch);
+        if (inFlight == null) {
+            try {
+                fetch.complete(fetchLiveSnapshot(printerId));
+            } catch (Throwable e) {
+                // Errors too: waiters joined on this fetch must never be left blocked
+                fetch.completeExceptionally(e);
+            } finally {
+                liveFetches.remove(printerId, fetch);
+            }
+            inFlight = fetch;
+        }
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Fetch a printer, store its full snapshot and publish it on the state
+     * board like a polled one. A push connector already ingested its state
+     * as it arrived, and a printer that did not answer has no state to
+     * publish: the snapshot is then only returned, and the printer is marked
+     * OFFLINE like the poller does. A printer whose polling circuit breaker
+     * is open is not contacted at all: its last known state is returned.
+     */
+    private PrinterSnapshot fetchLiveSnapshot(UUID printerId) {
         Printer printer = getPrinter(printerId);
+        if (pollingService.isUnreachable(printerId)) {
+            return stateBoard.getLatestSnapshot(printerId)
+                    .orElseGet(() -> PrinterSnapshot.builder().printer(printer).timestamp(Instant.now()).build());
+        }
         PrinterConnector connector = connectorRegistry.resolve(printer.getType());
         RawPrinterState raw = connector.fetchState(printer);
 
+        PrinterSnapshot snapshot = SnapshotIngest.toSnapshot(printer, raw);
+        if (raw.getState() == null) {
+            // Heartbeat left untouched, nothing written if already OFFLINE
+            stateBoard.publishStatus(printerId, PrinterStatus.OFFLINE);
+            if (printer.getStatus() != PrinterStatus.OFFLINE) {
+                printer.setStatus(PrinterStatus.OFFLINE);
+                printerRepository.save(printer);
+            }
+            return snapshot;
+        }
         printer.setLastHeartbeat(raw.getTimestamp());
-        printer.setStatus(resolveStatus(raw.getState()));
+        printer.setStatus(PollCadence.statusOf(raw));
         printerRepository.save(printer);
+        stateBoard.publishStatus(printerId, printer.getStatus());
 
-        PrinterSnapshot snapshot = PrinterSnapshot.builder()
-                .printer(printer)
-                .timestamp(raw.getTimestamp())
-                .bedTemp(raw.getBedTemp())
-                .nozzleTemp(raw.getNozzleTemp())
-                .targetBed(raw.getTargetBed())
-                .targetNozzle(raw.getTargetNozzle())
-                .progress(raw.getProgress())
-                .zHeight(raw.getZHeight())
-                .state(raw.getState())
-                .bedMeshProfile(raw.getBedMeshProfile())
-                .bedMeshMin(raw.getBedMeshMin())
-                .bedMeshMax(raw.getBedMeshMax())
-                .bedMeshMatrix(raw.getBedMeshMatrix())
-                .zTiltApplied(raw.getZTiltApplied())
-                .rawPayload(raw.getRawPayload())
-                .build();
-        return snapshotRepository.save(snapshot);
+        if (connector.pushesState()) {
+            return stateBoard.getLatestSnapshot(printerId).orElse(snapshot);
+        }
+        telemetryRepository.save(snapshot);
+        stateBoard.publishSnapshot(printer.getId(), snapshot);
+        return snapshot;
     }
 
+    /**
+     * Stored snapshots of a printer, newest first, read from TimescaleDB.
+     * Without a time range, the 50 most recent ones.
+     */
     public List<PrinterSnapshot> getHistory(UUID printerId, Instant from, Instant to) {
         if (from != null && to != null) {
-            return snapshotRepository.findByPrinterIdAndTimestampBetweenOrderByTimestampDesc(printerId, from, to);
+            return telemetryRepository.findBetween(printerId, from, to);
         }
-        return snapshotRepository.findTop50ByPrinterIdOrderByTimestampDesc(printerId);
+        return telemetryRepository.findRecent(printerId, 50);
     }
 
+    /**
+     * History at a given resolution: raw snapshots, or one
+     * {@link com.fablab.backend.dto.PrinterHistoryPointDTO} per time bucket.
+     * A null granularity is chosen from the window size so that a chart never
+     * receives more than {@link HistoryGranularity#MAX_AUTO_POINTS} points.
+     * Rollups fall back to a coarser tier when {@code from} is older than their
+     * retention; explicit raw requests only return the snapshots still stored.
+     */
+    public List<?> getHistory(UUID printerId, Instant from, Instant to, HistoryGranularity granularity) {
+        if (from == null || to == null) {
+            if (granularity != null && granularity != HistoryGranularity.RAW) {
+                throw new IllegalArgumentException("from and to are required for granularity " + granularity.getParam());
+            }
+            return getHistory(printerId, from, to);
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        HistoryGranularity resolved = granularity != null
+                ? granularity
+                : HistoryGranularity.forWindow(Duration.between(from, to));
+        if (granularity != HistoryGranularity.RAW) {
+            resolved = retentionService.covering(resolved, from);
+        }
+        if (resolved == HistoryGranularity.RAW) {
+            return telemetryRepository.findBetween(printerId, from, to);
+        }
+        return telemetryRepository.findAggregated(printerId, from, to, resolved);
+    }
+
+    /** Metrics downsampled when the caller does not list any */
+    private static final List<String> DEFAULT_CHART_METRICS = List.of(
+            "bed_temp", "nozzle_temp", "target_bed", "target_nozzle", "chamber_temp",
+            "part_fan_speed", "hotend_fan_speed", "live_velocity", "progress");
+
+    private static final int MAX_DOWNSAMPLED_POINTS = 10000;
+
+    /**
+     * Raw history reduced to at most {@code maxPoints} points per metric with LTTB.
+     * Rows are streamed from the database twice (bucket averages, then point
+     * selection) and each metric is downsampled on the fly, so memory does not
+     * depend on the window size.
+     */
+    public List<HistorySeriesDTO> getDownsampledHistory(UUID printerId, Instant from, Instant to,
+                                                        HistoryGranularity granularity, int maxPoints,
+                                                        List<String> metrics) {
+        if (granularity != null && granularity != HistoryGranularity.RAW) {
+            throw new IllegalArgumentException("maxPoints only applies to raw history");
+        }
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("from and to are required with maxPoints");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (maxPoints < 3 || maxPoints > MAX_DOWNSAMPLED_POINTS) {
+            throw new IllegalArgumentException("maxPoints must be between 3 and " + MAX_DOWNSAMPLED_POINTS);
+        }
+        List<String> columns = metrics == null || metrics.isEmpty() ? DEFAULT_CHART_METRICS : List.copyOf(metrics);
+
+        LttbDownsampler[] samplers = new LttbDownsampler[columns.size()];
+        for (int i = 0; i < samplers.length; i++) {
+            samplers[i] = new LttbDownsampler(from.toEpochMilli(), to.toEpochMilli(), maxPoints);
+        }
+        telemetryRepository.streamMetrics(printerId, from, to, columns, (ts, values) -> {
+            for (int i = 0; i < samplers.length; i++) {
+                samplers[i].scan(ts, values[i]);
+            }
+        });
+        telemetryRepository.streamMetrics(printerId, from, to, columns, (ts, values) -> {
+            for (int i = 0; i < samplers.length; i++) {
+                samplers[i].add(ts, values[i]);
+            }
+        });
+
+        List<HistorySeriesDTO> series = new ArrayList<>(samplers.length);
+        for (int i = 0; i < samplers.length; i++) {
+            samplers[i].finish();
+            series.add(new HistorySeriesDTO(columns.get(i), samplers[i].timestamps(), samplers[i].values()));
+        }
+        return series;
+    }
+
+    /**
+     * Raw history as an NDJSON stream, validated here so that errors are
+     * reported before the response starts. {@code from} defaults to the
+     * oldest row and {@code to} to now.
+     *
+     * @param fields comma-separated projection, null for the default fields
+     * @param after keyset cursor returned by a previous page, or null
+     * @param limit maximum number of rows, null for no limit
+     */
+    public HistoryStream openHistoryStream(UUID printerId, Instant from, Instant to, String fields,
+                                           String after, Integer limit) {
+        Instant start = from != null ? from : Instant.EPOCH;
+        Instant end = to != null ? to : Instant.now();
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        HistoryCursor cursor = after == null || after.isBlank() ? null : HistoryCursor.parse(after);
+        return new HistoryStream(telemetryRepository, printerId, start, end, fields, cursor,
+                limit != null ? limit : 0);
+    }
+
+    /**
+     * Latest snapshot from the state board. The database is only queried
+     * when the board could not be warmed at startup.
+     */
     public PrinterSnapshot getLatestStoredSnapshot(UUID printerId) {
-        return snapshotRepository.findFirstByPrinterIdOrderByTimestampDesc(printerId)
+        return stateBoard.getLatestSnapshot(printerId)
+                .or(() -> stateBoard.isWarm() ? Optional.empty() : telemetryRepository.findLatest(printerId))
                 .orElseThrow();
     }
 
@@ -185,15 +378,4 @@ public class PrinterService {
                     "Command '" + command + "' is restricted to ADMIN and SUPER_ADMIN users");
         }
     }
-
-    private PrinterStatus resolveStatus(String rawState) {
-        if (rawState == null) {
-            return PrinterStatus.OFFLINE;
-        }
-        return switch (rawState.toUpperCase()) {
-            case "PRINTING" -> PrinterStatus.PRINTING;
-            case "PAUSED" -> PrinterStatus.PAUSED;
-            default -> PrinterStatus.IDLE;
-        };
-    }
 }
\ No newline at end of file
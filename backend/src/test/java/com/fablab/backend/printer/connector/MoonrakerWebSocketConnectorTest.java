@@ -0,0 +1,389 @@
+package com.fablab.backend.printer.connector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fablab.backend.models.printer.Printer;
+import com.fablab.backend.models.printer.PrinterType;
+
+/**
+ * Runs the WebSocket connector against a stand-in Moonraker: a loopback
+ * server speaking just enough HTTP and WebSocket (RFC 6455) to answer the
+ * object discovery and the {@code printer.objects.subscribe} call, then push
+ * {@code notify_status_update} deltas.
+ */
+class MoonrakerWebSocketConnectorTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private StandInMoonraker server;
+    private MoonrakerClient client;
+    private MoonrakerWebSocketConnector connector;
+    private final BlockingQueue<PrinterStateEvent> events = new LinkedBlockingQueue<>();
+    private Printer printer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StandInMoonraker();
+        client = new MoonrakerClient(4);
+        connector = new MoonrakerWebSocketConnector(client, new MoonrakerPrinterConnector(client, 10000),
+                event -> events.add((PrinterStateEvent) event));
+        printer = Printer.builder()
+                .id(UUID.randomUUID())
+                .name("stand-in")
+                .type(PrinterType.MOONRAKER_WS)
+                .ipAddress("127.0.0.1")
+                .port(server.port())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        connector.shutdown();
+        client.shutdown();
+        server.close();
+    }
+
+    @Test
+    void publishesSubscriptionStateAndDeltasAsTheyArrive() throws Exception {
+        assertNull(connector.fetchState(printer).getState(), "no state before the subscription is established");
+
+        StandInMoonraker.Connection connection = server.awaitConnection();
+        String subscribe = connection.awaitText();
+        assertTrue(subscribe.contains("\"printer.objects.subscribe\""));
+        assertTrue(subscribe.contains("\"extruder\"") && subscribe.contains("\"toolhead\""),
+                "subscribes to the discovered objects: " + subscribe);
+
+        connection.sendText(subscribeReply(subscribe));
+        PrinterStateEvent initial = awaitEvent();
+        assertEquals(printer.getId(), initial.printerId());
+        assertEquals("printing", initial.state().getState());
+        assertEquals(210.0, initial.state().getNozzleTemp());
+        assertEquals(60.0, initial.state().getBedTemp());
+
+        // Deltas only carry what changed, the rest of the state is kept; each
+        // one is published on its own, in order, without waiting for a poll
+        for (int i = 1; i <= 20; i++) {
+            connection.sendText("{\"jsonrpc\":\"2.0\",\"method\":\"notify_status_update\",\"params\":"
+                    + "[{\"toolhead\":{\"position\":[" + i + ",20.5,0.4,100]}},1234." + i + "]}");
+            PrinterStateEvent delta = awaitEvent();
+            assertEquals(i, delta.state().getPosX());
+            assertEquals(20.5, delta.state().getPosY());
+            assertEquals(210.0, delta.state().getNozzleTemp());
+            assertEquals("printing", delta.state().getState());
+        }
+        assertTrue(events.isEmpty(), "one event per delta");
+
+        // Polling only reads the merged state, no request reaches the printer
+        int requests = server.httpRequests();
+        assertEquals(20.0, connector.fetchState(printer).getPosX());
+        assertEquals(requests, server.httpRequests());
+    }
+
+    @Test
+    void resubscribesAfterTheConnectionIsLost() throws Exception {
+        connector.fetchState(printer);
+        StandInMoonraker.Connection first = server.awaitConnection();
+        String subscribe = first.awaitText();
+        first.sendText(subscribeReply(subscribe));
+        assertEquals("printing", awaitEvent().state().getState());
+
+        first.close();
+
+        StandInMoonraker.Connection second = server.awaitConnection();
+        String again = second.awaitText();
+        assertTrue(again.contains("\"printer.objects.subscribe\""));
+        second.sendText(subscribeReply(again));
+        PrinterStateEvent resumed = awaitEvent();
+        assertEquals(210.0, resumed.state().getNozzleTemp());
+    }
+
+    @Test
+    void resubscribesWhenKlippyRestarts() throws Exception {
+        connector.fetchState(printer);
+        StandInMoonraker.Connection connection = server.awaitConnection();
+        connection.sendText(subscribeReply(connection.awaitText()));
+        awaitEvent();
+        int requests = server.httpRequests();
+
+        connection.sendText("{\"jsonrpc\":\"2.0\",\"method\":\"notify_klippy_ready\"}");
+
+        // Objects discovered again, then subscribed on the same connection
+        String again = connection.awaitText();
+        assertTrue(again.contains("\"printer.objects.subscribe\""));
+        assertTrue(server.httpRequests() > requests, "objects listed again after the restart");
+        connection.sendText(subscribeReply(again));
+        assertEquals("printing", awaitEvent().state().getState());
+    }
+
+    @Test
+    void releaseClosesTheSubscriptionForGood() throws Exception {
+        connector.fetchState(printer);
+        StandInMoonraker.Connection connection = server.awaitConnection();
+        connection.sendText(subscribeReply(connection.awaitText()));
+        awaitEvent();
+
+        connector.release(printer.getId());
+
+        assertTrue(connection.awaitClosed(), "connection closed on release");
+        // The reconnect backoff starts at one second: nothing comes back after it
+        assertNull(server.pollConnection(2500), "no reconnection after release");
+    }
+
+    private PrinterStateEvent awaitEvent() throws InterruptedException {
+        PrinterStateEvent event = events.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event, "state event");
+        return event;
+    }
+
+    private static String subscribeReply(String request) {
+        String id = request.replaceAll("(?s).*\"id\"\\s*:\\s*(\\d+).*", "$1");
+        return "{\"jsonrpc\":\"2.0\",\"result\":{\"eventtime\":1234.0,\"status\":{"
+                + "\"webhooks\":{\"state\":\"ready\"},"
+                + "\"print_stats\":{\"state\":\"printing\",\"filename\":\"cube.gcode\"},"
+                + "\"extruder\":{\"temperature\":210.0,\"target\":210.0,\"power\":0.4},"
+                + "\"heater_bed\":{\"temperature\":60.0,\"target\":60.0,\"power\":0.2},"
+                + "\"toolhead\":{\"position\":[0,0,0,0],\"homed_axes\":\"xyz\"}"
+                + "}},\"id\":" + id + "}";
+    }
+
+    /**
+     * Minimal Moonraker on a loopback port: answers {@code /printer/objects/list}
+     * over HTTP and hands every WebSocket upgrade to the test as a {@link Connection}.
+     */
+    private static final class StandInMoonraker implements AutoCloseable {
+
+        private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+        private static final String OBJECT_LIST = "{\"result\":{\"objects\":"
+                + "[\"webhooks\",\"print_stats\",\"extruder\",\"heater_bed\",\"toolhead\"]}}";
+
+        private final ServerSocket serverSocket;
+        private final BlockingQueue<Connection> connections = new LinkedBlockingQueue<>();
+        private final Thread acceptThread;
+        private volatile int httpRequests;
+
+        private StandInMoonraker() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            acceptThread = new Thread(this::acceptLoop, "stand-in-moonraker");
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        int httpRequests() {
+            return httpRequests;
+        }
+
+        Connection awaitConnection() throws InterruptedException {
+            Connection connection = pollConnection(TIMEOUT_MS);
+            assertNotNull(connection, "WebSocket connection");
+            return connection;
+        }
+
+        Connection pollConnection(long timeoutMs) throws InterruptedException {
+            return connections.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    String request = readHeaders(socket.getInputStream());
+                    String key = header(request, "Sec-WebSocket-Key");
+                    if (key != null) {
+                        upgrade(socket, key);
+                    } else {
+                        answerHttp(socket, request);
+                    }
+                } catch (IOException e) {
+                    // Server closed, or a client went away mid-request
+                }
+            }
+        }
+
+        private void upgrade(Socket socket, String key) throws IOException {
+            String accept;
+            try {
+                accept = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1")
+                        .digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII)));
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            socket.getOutputStream().write(("HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Upgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+            connections.add(new Connection(socket));
+        }
+
+        private void answerHttp(Socket socket, String request) throws IOException {
+            try (socket) {
+                httpRequests++;
+                boolean objectList = request.startsWith("GET /printer/objects/list");
+                byte[] body = (objectList ? OBJECT_LIST : "{\"error\":{\"code\":404}}").getBytes(StandardCharsets.UTF_8);
+                OutputStream out = socket.getOutputStream();
+                out.write(((objectList ? "HTTP/1.1 200 OK" : "HTTP/1.1 404 Not Found") + "\r\n"
+                        + "Content-Type: application/json\r\nContent-Length: " + body.length + "\r\n"
+                        + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.write(body);
+                out.flush();
+            }
+        }
+
+        private static String readHeaders(InputStream in) throws IOException {
+            ByteArrayOutputStream headers = new ByteArrayOutputStream();
+            int matched = 0;
+            while (matched < 4) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new IOException("Connection closed before the end of the headers");
+                }
+                headers.write(b);
+                matched = (b == '\r' && matched % 2 == 0) || (b == '\n' && matched % 2 == 1) ? matched + 1 : 0;
+            }
+            return headers.toString(StandardCharsets.US_ASCII);
+        }
+
+        private static String header(String request, String name) {
+            for (String line : request.split("\r\n")) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase(name)) {
+                    return line.substring(colon + 1).trim();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Server side of one WebSocket: unmasked frames out, masked frames in.
+         */
+        private static final class Connection {
+
+            private final Socket socket;
+
+            private Connection(Socket socket) {
+                this.socket = socket;
+            }
+
+            synchronized void sendText(String text) throws IOException {
+                byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+                OutputStream out = socket.getOutputStream();
+                out.write(0x81);
+                if (payload.length < 126) {
+                    out.write(payload.length);
+                } else if (payload.length < 65536) {
+                    out.write(126);
+                    out.write(payload.length >>> 8);
+                    out.write(payload.length & 0xFF);
+                } else {
+                    out.write(127);
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        out.write((int) ((long) payload.length >>> shift) & 0xFF);
+                    }
+                }
+                out.write(payload);
+                out.flush();
+            }
+
+            /**
+             * Next text message from the client, answering pings and skipping other frames.
+             */
+            String awaitText() throws IOException {
+                socket.setSoTimeout((int) TIMEOUT_MS);
+                InputStream in = socket.getInputStream();
+                ByteArrayOutputStream message = new ByteArrayOutputStream();
+                while (true) {
+                    int first = readByte(in);
+                    int second = readByte(in);
+                    int opcode = first & 0x0F;
+                    long length = second & 0x7F;
+                    if (length == 126) {
+                        length = (readByte(in) << 8) | readByte(in);
+                    } else if (length == 127) {
+                        length = 0;
+                        for (int i = 0; i < 8; i++) {
+                            length = (length << 8) | readByte(in);
+                        }
+                    }
+                    byte[] mask = (second & 0x80) != 0 ? in.readNBytes(4) : null;
+                    byte[] payload = in.readNBytes((int) length);
+                    if (mask != null) {
+                        for (int i = 0; i < payload.length; i++) {
+                            payload[i] ^= mask[i % 4];
+                        }
+                    }
+                    if (opcode == 0x8) {
+                        throw new IOException("Client closed the WebSocket");
+                    }
+                    if (opcode == 0x1 || opcode == 0x0) {
+                        message.write(payload);
+                        if ((first & 0x80) != 0) {
+                            return message.toString(StandardCharsets.UTF_8);
+                        }
+                    }
+                }
+            }
+
+            /**
+             * Whether the client closed (or aborted) the connection within the timeout.
+             */
+            boolean awaitClosed() throws IOException {
+                socket.setSoTimeout((int) TIMEOUT_MS);
+                try {
+                    while (true) {
+                        awaitText();
+                    }
+                } catch (SocketTimeoutException e) {
+                    return false;
+                } catch (IOException e) {
+                    return true;
+                }
+            }
+
+            void close() throws IOException {
+                socket.close();
+            }
+
+            private static int readByte(InputStream in) throws IOException {
+                int b = in.read();
+                if (b < 0) {
+                    throw new IOException("Connection closed");
+                }
+                return b;
+            }
+        }
+    }
+}
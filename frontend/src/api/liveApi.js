@@ -0,0 +1,84 @@
+/**
+ * Live printer streams: Server-Sent Events telemetry and the binary motion WebSocket.
+ *
+ * Browsers cannot set an Authorization header on an EventSource or a WebSocket,
+ * so the persisted JWT is passed as the `access_token` query parameter, which the
+ * backend accepts on these endpoints only. An EventSource keeps the same URL when
+ * it reconnects and sends `Last-Event-ID` by itself, so missed states are replayed.
+ */
+
+const API_URL = import.meta.env.VITE_API_URL;
+
+const SCALE = 100;
+const KEYFRAME = 1;
+const DELTA = 2;
+
+/**
+ * Builds the URL of a stream endpoint, carrying the persisted JWT when available.
+ * @param {string} path - Path relative to the API base URL (e.g. `/printers/stream`).
+ * @returns {URL} Absolute URL of the endpoint.
+ */
+const streamUrl = (path) => {
+    const url = new URL(`${API_URL}${path}`, window.location.origin);
+    const token = localStorage.getItem('token');
+    if (token) {
+        url.searchParams.set('access_token', token);
+    }
+    return url;
+};
+
+/**
+ * Subscribes to live telemetry: one printer when `printerId` is given, the whole fleet otherwise.
+ * @param {string|null} printerId - Printer id, or null for every printer.
+ * @param {(snapshot: object) => void} onState - Called with each snapshot received.
+ * @param {(event: Event) => void} [onError] - Called when the connection fails; the browser retries by itself.
+ * @returns {() => void} Function closing the stream.
+ */
+export const subscribePrinterStream = (printerId, onState, onError) => {
+    const path = printerId ? `/printers/${printerId}/stream` : '/printers/stream';
+    const source = new EventSource(streamUrl(path));
+    source.addEventListener('state', (event) => onState(JSON.parse(event.data)));
+    if (onError) {
+        source.onerror = onError;
+    }
+    return () => source.close();
+};
+
+/**
+ * Opens the motion WebSocket of a printer and decodes its binary frames.
+ * Keyframes carry absolute values, deltas are added to the last values received.
+ * @param {string} printerId - Printer id.
+ * @param {(sample: {timestamp: number, x: number, y: number, z: number, e: number, velocity: number}) => void} onSample
+ *     Called with each decoded sample (positions in mm, velocity in mm/s).
+ * @param {(event: CloseEvent) => void} [onClose] - Called when the socket closes.
+ * @returns {() => void} Function closing the socket.
+ */
+export const subscribeMotion = (printerId, onSample, onClose) => {
+    const url = streamUrl(`/printers/${printerId}/motion`);
+    url.protocol = url.protocol === 'https:' ? 'wss:' : 'ws:';
+    const socket = new WebSocket(url);
+    socket.binaryType = 'arraybuffer';
+
+    let values = null;
+    let timestamp = 0;
+    socket.onmessage = (message) => {
+        const view = new DataView(message.data);
+        const type = view.getUint8(0);
+        if (type === KEYFRAME) {
+            timestamp = Number(view.getBigInt64(4, true));
+            values = [0, 1, 2, 3, 4].map((i) => view.getInt32(12 + i * 4, true));
+        } else if (type === DELTA && values) {
+            timestamp += view.getUint16(4, true);
+            values = values.map((value, i) => value + view.getInt16(6 + i * 2, true));
+        } else {
+            // Deltas before the first keyframe cannot be applied
+            return;
+        }
+        const [x, y, z, e, velocity] = values.map((value) => value / SCALE);
+        onSample({ timestamp, x, y, z, e, velocity });
+    };
+    if (onClose) {
+        socket.onclose = onClose;
+    }
+    return () => socket.close();
+};
@@ -291,6 +291,7 @@ export default function PrintersDashboard() {
                             className="w-full border border-gray-300 rounded px-3 py-2"
                         >
                             <option value="MOONRAKER">MOONRAKER</option>
+                            <option value="MOONRAKER_WS">MOONRAKER_WS</option>
                         </select>
                     </div>
 
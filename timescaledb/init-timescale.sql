@@ -1,21 +1,231 @@
 CREATE EXTENSION IF NOT EXISTS timescaledb;
 
-CREATE TABLE printer_snapshots
+-- Printer telemetry, one row per snapshot (same columns as the PrinterSnapshot entity).
+-- Written in batches by the backend (SnapshotWriter / PrinterTelemetryRepository).
+CREATE SEQUENCE IF NOT EXISTS printer_snapshots_id_seq;
+
+CREATE TABLE IF NOT EXISTS printer_snapshots
 (
-    id            BIGINT,
-    printer_id    UUID NOT NULL,
-    ts            TIMESTAMPTZ NOT NULL,
-    bed_temp      NUMERIC,
-    nozzle_temp   NUMERIC,
-    target_bed    NUMERIC,
-    target_nozzle NUMERIC,
-    progress      NUMERIC,
-    z_height      NUMERIC,
-    state         TEXT,
-    raw_payload   JSONB,
+    id                     BIGINT NOT NULL DEFAULT nextval('printer_snapshots_id_seq'),
+    printer_id             UUID NOT NULL,
+    ts                     TIMESTAMPTZ NOT NULL,
+    -- Temperatures
+    bed_temp               DOUBLE PRECISION,
+    nozzle_temp            DOUBLE PRECISION,
+    target_bed             DOUBLE PRECISION,
+    target_nozzle          DOUBLE PRECISION,
+    chamber_temp           DOUBLE PRECISION,
+    -- Heater power
+    bed_pow                DOUBLE PRECISION,
+    nozzle_pow             DOUBLE PRECISION,
+    -- Toolhead position and state
+    pos_x                  DOUBLE PRECISION,
+    pos_y                  DOUBLE PRECISION,
+    pos_z                  DOUBLE PRECISION,
+    pos_e                  DOUBLE PRECISION,
+    homed_axes             TEXT,
+    max_velocity           DOUBLE PRECISION,
+    max_accel              DOUBLE PRECISION,
+    -- Motion report
+    live_velocity          DOUBLE PRECISION,
+    live_extruder_velocity DOUBLE PRECISION,
+    live_position_x        DOUBLE PRECISION,
+    live_position_y        DOUBLE PRECISION,
+    live_position_z        DOUBLE PRECISION,
+    live_position_e        DOUBLE PRECISION,
+    -- Print stats
+    state                  TEXT,
+    filename               TEXT,
+    progress               DOUBLE PRECISION,
+    total_layers           INTEGER,
+    current_layer          INTEGER,
+    print_duration         BIGINT,
+    total_duration         BIGINT,
+    filament_used          DOUBLE PRECISION,
+    display_progress       DOUBLE PRECISION,
+    -- Fans and sensors
+    part_fan_speed         DOUBLE PRECISION,
+    part_fan_rpm           DOUBLE PRECISION,
+    hotend_fan_speed       DOUBLE PRECISION,
+    filament_detected      BOOLEAN,
+    -- Host
+    cpu_temp               DOUBLE PRECISION,
+    cpu_usage              TEXT,
+    mem_usage              TEXT,
+    system_uptime          BIGINT,
+    -- Bed mesh and Z-tilt
+    bed_mesh_profile       TEXT,
+    bed_mesh_min           TEXT,
+    bed_mesh_max           TEXT,
+    bed_mesh_matrix        TEXT,
+    z_tilt_applied         BOOLEAN,
+    -- Heaters, sensors and fans discovered beyond the standard ones
+    aux_sensors            JSONB,
+    -- Raw data and legacy field
+    raw_payload            JSONB,
+    z_height               DOUBLE PRECISION,
     PRIMARY KEY (id, ts)
 );
 
-SELECT create_hypertable('printer_snapshots', 'ts');
+-- Upgrade of the first, minimal hypertable (safe to re-run with psql on an existing volume)
+ALTER TABLE printer_snapshots ALTER COLUMN id SET DEFAULT nextval('printer_snapshots_id_seq');
+ALTER TABLE printer_snapshots
+    ADD COLUMN IF NOT EXISTS chamber_temp           DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS bed_pow                DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS nozzle_pow             DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS pos_x                  DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS pos_y                  DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS pos_z                  DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS pos_e                  DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS homed_axes             TEXT,
+    ADD COLUMN IF NOT EXISTS max_velocity           DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS max_accel              DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS live_velocity          DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS live_extruder_velocity DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS live_position_x        DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS live_position_y        DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS live_position_z        DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS live_position_e        DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS filename               TEXT,
+    ADD COLUMN IF NOT EXISTS total_layers           INTEGER,
+    ADD COLUMN IF NOT EXISTS current_layer          INTEGER,
+    ADD COLUMN IF NOT EXISTS print_duration         BIGINT,
+    ADD COLUMN IF NOT EXISTS total_duration         BIGINT,
+    ADD COLUMN IF NOT EXISTS filament_used          DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS display_progress       DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS part_fan_speed         DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS part_fan_rpm           DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS hotend_fan_speed       DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS filament_detected      BOOLEAN,
+    ADD COLUMN IF NOT EXISTS cpu_temp               DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS cpu_usage              TEXT,
+    ADD COLUMN IF NOT EXISTS mem_usage              TEXT,
+    ADD COLUMN IF NOT EXISTS system_uptime          BIGINT,
+    ADD COLUMN IF NOT EXISTS bed_mesh_profile       TEXT,
+    ADD COLUMN IF NOT EXISTS bed_mesh_min           TEXT,
+    ADD COLUMN IF NOT EXISTS bed_mesh_max           TEXT,
+    ADD COLUMN IF NOT EXISTS bed_mesh_matrix        TEXT,
+    ADD COLUMN IF NOT EXISTS z_tilt_applied         BOOLEAN,
+    ADD COLUMN IF NOT EXISTS aux_sensors            JSONB;
+
+SELECT create_hypertable('printer_snapshots', 'ts', if_not_exists => TRUE);
+
+CREATE INDEX IF NOT EXISTS printer_snapshots_printer_id_ts_idx ON printer_snapshots (printer_id, ts DESC);
+
+-- ============================================================
+-- Continuous aggregates (10 s, 1 min, 15 min, 1 h) read by GET /api/printers/{id}/history
+-- avg/min/max of temperatures, fans and velocity; last value of targets, state and progress.
+-- Real-time aggregation (materialized_only = false) adds the rows not yet materialized.
+-- ============================================================
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS printer_snapshots_10s
+WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS
+SELECT printer_id,
+       time_bucket(INTERVAL '10 seconds', ts) AS bucket,
+       count(*)                      AS samples,
+       avg(bed_temp)         AS bed_temp_avg, min(bed_temp) AS bed_temp_min, max(bed_temp) AS bed_temp_max,
+       avg(nozzle_temp)      AS nozzle_temp_avg, min(nozzle_temp) AS nozzle_temp_min, max(nozzle_temp) AS nozzle_temp_max,
+       avg(chamber_temp)     AS chamber_temp_avg, min(chamber_temp) AS chamber_temp_min, max(chamber_temp) AS chamber_temp_max,
+       avg(part_fan_speed)   AS part_fan_speed_avg, min(part_fan_speed) AS part_fan_speed_min, max(part_fan_speed) AS part_fan_speed_max,
+       avg(hotend_fan_speed) AS hotend_fan_speed_avg, min(hotend_fan_speed) AS hotend_fan_speed_min, max(hotend_fan_speed) AS hotend_fan_speed_max,
+       avg(live_velocity)    AS live_velocity_avg, min(live_velocity) AS live_velocity_min, max(live_velocity) AS live_velocity_max,
+       last(target_bed, ts)          AS target_bed,
+       last(target_nozzle, ts)       AS target_nozzle,
+       last(state, ts)               AS state,
+       last(progress, ts)            AS progress
+FROM printer_snapshots
+GROUP BY printer_id, bucket
+WITH NO DATA;
+
+SELECT add_continuous_aggregate_policy('printer_snapshots_10s',
+    start_offset => INTERVAL '1 hour', end_offset => INTERVAL '10 seconds',
+    schedule_interval => INTERVAL '30 seconds', if_not_exists => TRUE);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS printer_snapshots_1m
+WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS
+SELECT printer_id,
+       time_bucket(INTERVAL '1 minute', ts) AS bucket,
+       count(*)                      AS samples,
+       avg(bed_temp)         AS bed_temp_avg, min(bed_temp) AS bed_temp_min, max(bed_temp) AS bed_temp_max,
+       avg(nozzle_temp)      AS nozzle_temp_avg, min(nozzle_temp) AS nozzle_temp_min, max(nozzle_temp) AS nozzle_temp_max,
+       avg(chamber_temp)     AS chamber_temp_avg, min(chamber_temp) AS chamber_temp_min, max(chamber_temp) AS chamber_temp_max,
+       avg(part_fan_speed)   AS part_fan_speed_avg, min(part_fan_speed) AS part_fan_speed_min, max(part_fan_speed) AS part_fan_speed_max,
+       avg(hotend_fan_speed) AS hotend_fan_speed_avg, min(hotend_fan_speed) AS hotend_fan_speed_min, max(hotend_fan_speed) AS hotend_fan_speed_max,
+       avg(live_velocity)    AS live_velocity_avg, min(live_velocity) AS live_velocity_min, max(live_velocity) AS live_velocity_max,
+       last(target_bed, ts)          AS target_bed,
+       last(target_nozzle, ts)       AS target_nozzle,
+       last(state, ts)               AS state,
+       last(progress, ts)            AS progress
+FROM printer_snapshots
+GROUP BY printer_id, bucket
+WITH NO DATA;
+
+SELECT add_continuous_aggregate_policy('printer_snapshots_1m',
+    start_offset => INTERVAL '3 hours', end_offset => INTERVAL '1 minute',
+    schedule_interval => INTERVAL '1 minute', if_not_exists => TRUE);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS printer_snapshots_15m
+WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS
+SELECT printer_id,
+       time_bucket(INTERVAL '15 minutes', ts) AS bucket,
+       count(*)                      AS samples,
+       avg(bed_temp)         AS bed_temp_avg, min(bed_temp) AS bed_temp_min, max(bed_temp) AS bed_temp_max,
+       avg(nozzle_temp)      AS nozzle_temp_avg, min(nozzle_temp) AS nozzle_temp_min, max(nozzle_temp) AS nozzle_temp_max,
+       avg(chamber_temp)     AS chamber_temp_avg, min(chamber_temp) AS chamber_temp_min, max(chamber_temp) AS chamber_temp_max,
+       avg(part_fan_speed)   AS part_fan_speed_avg, min(part_fan_speed) AS part_fan_speed_min, max(part_fan_speed) AS part_fan_speed_max,
+       avg(hotend_fan_speed) AS hotend_fan_speed_avg, min(hotend_fan_speed) AS hotend_fan_speed_min, max(hotend_fan_speed) AS hotend_fan_speed_max,
+       avg(live_velocity)    AS live_velocity_avg, min(live_velocity) AS live_velocity_min, max(live_velocity) AS live_velocity_max,
+       last(target_bed, ts)          AS target_bed,
+       last(target_nozzle, ts)       AS target_nozzle,
+       last(state, ts)               AS state,
+       last(progress, ts)            AS progress
+FROM printer_snapshots
+GROUP BY printer_id, bucket
+WITH NO DATA;
+
+SELECT add_continuous_aggregate_policy('printer_snapshots_15m',
+    start_offset => INTERVAL '2 days', end_offset => INTERVAL '15 minutes',
+    schedule_interval => INTERVAL '15 minutes', if_not_exists => TRUE);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS printer_snapshots_1h
+WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS
+SELECT printer_id,
+       time_bucket(INTERVAL '1 hour', ts) AS bucket,
+       count(*)                      AS samples,
+       avg(bed_temp)         AS bed_temp_avg, min(bed_temp) AS bed_temp_min, max(bed_temp) AS bed_temp_max,
+       avg(nozzle_temp)      AS nozzle_temp_avg, min(nozzle_temp) AS nozzle_temp_min, max(nozzle_temp) AS nozzle_temp_max,
+       avg(chamber_temp)     AS chamber_temp_avg, min(chamber_temp) AS chamber_temp_min, max(chamber_temp) AS chamber_temp_max,
+       avg(part_fan_speed)   AS part_fan_speed_avg, min(part_fan_speed) AS part_fan_speed_min, max(part_fan_speed) AS part_fan_speed_max,
+       avg(hotend_fan_speed) AS hotend_fan_speed_avg, min(hotend_fan_speed) AS hotend_fan_speed_min, max(hotend_fan_speed) AS hotend_fan_speed_max,
+       avg(live_velocity)    AS live_velocity_avg, min(live_velocity) AS live_velocity_min, max(live_velocity) AS live_velocity_max,
+       last(target_bed, ts)          AS target_bed,
+       last(target_nozzle, ts)       AS target_nozzle,
+       last(state, ts)               AS state,
+       last(progress, ts)            AS progress
+FROM printer_snapshots
+GROUP BY printer_id, bucket
+WITH NO DATA;
+
+SELECT add_continuous_aggregate_policy('printer_snapshots_1h',
+    start_offset => INTERVAL '7 days', end_offset => INTERVAL '1 hour',
+    schedule_interval => INTERVAL '1 hour', if_not_exists => TRUE);
+
+-- ============================================================
+-- Native compression: columnar chunks segmented by printer, ordered by time.
+-- Compression and retention are run by the backend (TelemetryRetentionService,
+-- printer.retention.* properties) so the tiers stay configurable in one place.
+-- ============================================================
 
-CREATE INDEX ON printer_snapshots (printer_id, ts DESC);
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1
+                   FROM timescaledb_information.compression_settings
+                   WHERE hypertable_name = 'printer_snapshots') THEN
+        ALTER TABLE printer_snapshots SET (
+            timescaledb.compress,
+            timescaledb.compress_segmentby = 'printer_id',
+            timescaledb.compress_orderby = 'ts DESC'
+            );
+    END IF;
+END
+$$;